@@ -0,0 +1,129 @@
+package com.derf.wifiscanner;
+
+import android.content.Context;
+import android.net.wifi.ScanResult;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * Collecte d'arrière-plan, pilotée par {@link ScanCollectionService} : une session continue sur
+ * le {@link WifiScanner#shared scanner partagé} du process (même hub et même budget OS que le
+ * plugin), dont chaque scan est dédupliqué puis mis dans un {@link ScanBuffer}. Le buffer
+ * survit à la WebView : le plugin le vide par lots au resume.
+ */
+final class BackgroundCollector {
+
+    private static final String TAG = "BackgroundCollector";
+
+    static final int DEFAULT_MAX_SCANS = 1_000;
+    // Entrées par scan prévues pour dimensionner l'anneau des AP
+    private static final int ENTRIES_PER_SCAN = 100;
+    private static final int MAX_ENTRIES = 200_000;
+
+    private static BackgroundCollector instance;
+
+    private final Context appContext;
+    private final SsidPool ssidPool = new SsidPool();
+    private final ScanSnapshotStore store = new ScanSnapshotStore(ssidPool);
+    // Alloué au premier démarrage, conservé après l'arrêt jusqu'à ce que JS l'ait vidé
+    private volatile ScanBuffer buffer;
+    private int bufferCapacity = 0;
+    private WifiScanner.ContinuousSession session;
+    // Dernier échec de démarrage du service, effacé au prochain démarrage réussi
+    private volatile String lastError;
+    private volatile Listener listener;
+
+    /** Échecs signalés au plugin (le service démarre après la résolution de l'appel JS). */
+    interface Listener {
+        void onCollectionError(String error);
+    }
+
+    private BackgroundCollector(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    static synchronized BackgroundCollector get(Context context) {
+        if (instance == null) instance = new BackgroundCollector(context);
+        return instance;
+    }
+
+    /**
+     * Démarre (ou reconfigure) la collecte. Un changement de capacité redimensionne le buffer en
+     * gardant les scans non vidés les plus récents qui tiennent dans la nouvelle.
+     * @return l'intervalle effectif de la session
+     */
+    synchronized long start(long intervalMs, int mode, int maxScans) {
+        if (buffer == null || maxScans != bufferCapacity) {
+            int maxEntries = (int) Math.min(MAX_ENTRIES, (long) maxScans * ENTRIES_PER_SCAN);
+            // Sous le verrou du store : aucun scan livré pendant la copie
+            synchronized (store) {
+                buffer = buffer == null ? new ScanBuffer(maxScans, maxEntries) : buffer.resize(maxScans, maxEntries);
+            }
+            bufferCapacity = maxScans;
+        }
+        lastError = null;
+        WifiScanner scanner = WifiScanner.shared(appContext);
+        // Un service de premier plan bénéficie du budget de premier plan
+        scanner.setForegroundService(true);
+        WifiScanner.ContinuousSession previous = session;
+        session = scanner.startContinuousScan(intervalMs, mode, new WifiScanner.ScanResultListener() {
+            @Override
+            public void onScanResults(List<ScanResult> results) {
+                synchronized (store) {
+                    store.ingest(results);
+                    buffer.add(store, System.currentTimeMillis());
+                }
+            }
+
+            @Override
+            public void onScanError(String error) {
+                Log.w(TAG, "background scan error: " + error);
+            }
+        });
+        scanner.stopContinuousScan(previous);
+        long effective = session.intervalMs();
+        Log.d(TAG, "background collection → mode=" + mode + " intervalMs=" + effective + " maxScans=" + maxScans);
+        return effective;
+    }
+
+    synchronized void stop() {
+        if (session == null) return;
+        WifiScanner scanner = WifiScanner.shared(appContext);
+        scanner.stopContinuousScan(session);
+        scanner.setForegroundService(false);
+        session = null;
+        Log.d(TAG, "background collection stopped → buffered=" + bufferedCount());
+    }
+
+    synchronized boolean isRunning() {
+        return session != null;
+    }
+
+    /** Le service n'a pas pu démarrer : mémorisé pour getBufferedScans et transmis au plugin. */
+    void reportError(String error) {
+        lastError = error;
+        Log.w(TAG, "background collection failed → " + error);
+        Listener l = listener;
+        if (l != null) l.onCollectionError(error);
+    }
+
+    /** @return null si le dernier démarrage a réussi (ou n'a jamais été tenté) */
+    String lastError() {
+        return lastError;
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** @return null si la collecte n'a jamais été démarrée dans ce process */
+    ScanBuffer buffer() {
+        return buffer;
+    }
+
+    int bufferedCount() {
+        ScanBuffer b = buffer;
+        return b != null ? b.size() : 0;
+    }
+}
@@ -0,0 +1,144 @@
+package com.derf.wifiscanner;
+
+import java.util.Arrays;
+
+/**
+ * Occupation et congestion par canal de 20 MHz, calculées en une passe sur un snapshot dans des
+ * tableaux primitifs réutilisés.
+ * <p>
+ * Chaque AP occupe son bloc réel ({@code centerFreq0/1} ± largeur/2 pour 40/80/160/320 MHz et
+ * 80+80) ; chaque canal de la grille reçoit la part de ce bloc qui le recouvre (fraction de ses
+ * 20 MHz), ce qui rend aussi compte du chevauchement des canaux 2.4 GHz espacés de 5 MHz.
+ * <ul>
+ *   <li>{@code apCount} : AP dont le canal primaire est ce canal ;</li>
+ *   <li>{@code overlapCount} : AP dont le bloc recouvre ce canal ;</li>
+ *   <li>{@code score} : somme des recouvrements pondérés par le RSSI (-95 dBm → 0, -30 dBm → 1),
+ *       soit un nombre équivalent d'AP forts ;</li>
+ *   <li>{@code interferenceDbm} : puissance cumulée reçue sur le canal.</li>
+ * </ul>
+ * Non thread-safe : l'appelant synchronise.
+ */
+final class ChannelAnalyzer {
+
+    private static final int CHANNEL_HALF_WIDTH = 10;
+    private static final int WEIGHT_FLOOR_DBM = -95;
+    private static final int WEIGHT_CEIL_DBM = -30;
+
+    // Grille des canaux de 20 MHz, triée par fréquence centrale
+    private static final int[] FREQUENCY;
+    private static final int SLOTS;
+
+    static {
+        int[] f = new int[128];
+        int n = 0;
+        for (int ch = 1; ch <= 13; ch++) f[n++] = 2407 + 5 * ch;
+        f[n++] = 2484;
+        for (int ch = 32; ch <= 144; ch += 4) f[n++] = 5000 + 5 * ch;
+        for (int ch = 149; ch <= 177; ch += 4) f[n++] = 5000 + 5 * ch;
+        f[n++] = 5935;
+        for (int ch = 1; ch <= 233; ch += 4) f[n++] = 5950 + 5 * ch;
+        FREQUENCY = Arrays.copyOf(f, n);
+        SLOTS = n;
+    }
+
+    private final int[] apCount = new int[SLOTS];
+    private final int[] overlapCount = new int[SLOTS];
+    private final double[] score = new double[SLOTS];
+    private final double[] powerMw = new double[SLOTS];
+
+    // Segments de l'AP courant (80+80 : deux)
+    private final int[] segLow = new int[2];
+    private final int[] segHigh = new int[2];
+
+    void analyze(ScanSnapshotStore store) {
+        Arrays.fill(apCount, 0);
+        Arrays.fill(overlapCount, 0);
+        Arrays.fill(score, 0);
+        Arrays.fill(powerMw, 0);
+
+        for (int slot = 0, n = store.size(); slot < n; slot++) {
+            int freq = store.frequency(slot);
+            int primary = Arrays.binarySearch(FREQUENCY, freq);
+            if (primary >= 0) apCount[primary]++;
+
+            int rssi = store.rssi(slot);
+            double weight = Math.max(0.0, Math.min(1.0,
+                (rssi - WEIGHT_FLOOR_DBM) / (double) (WEIGHT_CEIL_DBM - WEIGHT_FLOOR_DBM)));
+            double mw = Math.pow(10.0, rssi / 10.0);
+
+            int segments = segmentsOf(freq, store.channelWidth(slot), store.centerFreq0(slot), store.centerFreq1(slot));
+            for (int s = 0; s < segments; s++) {
+                int lo = segLow[s];
+                int hi = segHigh[s];
+                // Premier canal dont le bord haut dépasse lo
+                int i = Arrays.binarySearch(FREQUENCY, lo - CHANNEL_HALF_WIDTH + 1);
+                if (i < 0) i = -i - 1;
+                for (; i < SLOTS && FREQUENCY[i] - CHANNEL_HALF_WIDTH < hi; i++) {
+                    int overlap = Math.min(hi, FREQUENCY[i] + CHANNEL_HALF_WIDTH)
+                        - Math.max(lo, FREQUENCY[i] - CHANNEL_HALF_WIDTH);
+                    if (overlap <= 0) continue;
+                    double fraction = overlap / (2.0 * CHANNEL_HALF_WIDTH);
+                    overlapCount[i]++;
+                    score[i] += weight * fraction;
+                    powerMw[i] += mw * fraction;
+                }
+            }
+        }
+    }
+
+    int slotCount() { return SLOTS; }
+
+    int frequency(int i) { return FREQUENCY[i]; }
+    int channel(int i) { return WifiChannels.channelOf(FREQUENCY[i]); }
+    int band(int i) { return WifiChannels.bandOf(FREQUENCY[i]); }
+    int apCount(int i) { return apCount[i]; }
+    int overlapCount(int i) { return overlapCount[i]; }
+    double score(int i) { return score[i]; }
+
+    /** Puissance cumulée en dBm ; {@code -Infinity} si aucun AP ne recouvre le canal. */
+    double interferenceDbm(int i) {
+        return powerMw[i] > 0 ? 10.0 * Math.log10(powerMw[i]) : Double.NEGATIVE_INFINITY;
+    }
+
+    /* ---------------- internes ---------------- */
+
+    /**
+     * Remplit {@link #segLow}/{@link #segHigh} avec le(s) bloc(s) occupé(s) par l'AP.
+     * Sans {@code centerFreq0} (certains pilotes), on retombe sur le bloc aligné de la bande.
+     */
+    private int segmentsOf(int freq, int channelWidth, int cf0, int cf1) {
+        int width = WifiChannels.widthMhz(channelWidth);
+        int half = width / 2;
+        if (width == 20) {
+            segLow[0] = freq - CHANNEL_HALF_WIDTH;
+            segHigh[0] = freq + CHANNEL_HALF_WIDTH;
+            return 1;
+        }
+        int center = cf0 > 0 ? cf0 : alignedCenter(freq, width);
+        segLow[0] = center - half;
+        segHigh[0] = center + half;
+        if (channelWidth == 4 && cf1 > 0) {
+            segLow[1] = cf1 - half;
+            segHigh[1] = cf1 + half;
+            return 2;
+        }
+        return 1;
+    }
+
+    private static int alignedCenter(int freq, int width) {
+        int base;
+        switch (WifiChannels.bandOf(freq)) {
+            case ScanQuery.BAND_5:
+                // Blocs alignés sur le ch 36 (5170) puis, en U-NII-3/4, sur le ch 149 (5735)
+                base = freq >= 5735 ? 5735 : 5170;
+                break;
+            case ScanQuery.BAND_6:
+                base = 5945;
+                break;
+            default:
+                // 2.4 GHz : côté du canal secondaire inconnu, bloc centré sur le primaire
+                return freq;
+        }
+        return base + Math.floorDiv(freq - base, width) * width + width / 2;
+    }
+}
@@ -0,0 +1,307 @@
+package com.derf.wifiscanner;
+
+import java.util.Arrays;
+
+/**
+ * Base d'empreintes Wi-Fi (vecteurs BSSID → RSSI de référence) et recherche des k plus proches
+ * voisins d'un scan.
+ * <p>
+ * Index inversé : BSSID packé → liste (id d'empreinte, RSSI quantifié sur 8 bits). Une requête ne
+ * parcourt que les listes des AP du scan, donc seules les empreintes partageant au moins un AP
+ * sont évaluées. La distance est euclidienne sur l'union des AP, un AP absent valant
+ * {@link #MISSING_RSSI} ; elle est décomposée en
+ * <pre>
+ *   d² = base(f) + base(q) + Σ_{a ∈ f ∩ q} [ (q_a - f_a)² - (M - f_a)² - (q_a - M)² ]
+ * </pre>
+ * avec {@code base(x) = Σ (x_a - M)²} : {@code base(f)} est calculé au chargement, la somme ne
+ * porte que sur les AP communs. Le résultat est exact sans toucher aux empreintes non candidates.
+ * Thread-safe (verrou sur l'instance, tampons de requête réutilisés).
+ */
+final class FingerprintIndex {
+
+    static final int MISSING_RSSI = -100;
+
+    // Empreintes
+    private String[] labels = new String[256];
+    private double[] baseline = new double[256];
+    private int count = 0;
+
+    // Index BSSID → liste (liste + 1, 0 = vide), sondage linéaire
+    private int[] table = new int[64];
+    private long[] keys = new long[32];
+    private int lists = 0;
+
+    // Listes : ids d'empreintes et RSSI quantifiés
+    private int[][] postingIds = new int[32][];
+    private byte[][] postingRssi = new byte[32][];
+    private int[] postingSize = new int[32];
+    private long postings = 0L;
+
+    // Tampons de requête (accumulateurs marqués par génération, pas de remise à zéro)
+    private int[] stamp = new int[256];
+    private int generation = 0;
+    private double[] acc = new double[256];
+    private int[] common = new int[256];
+    private int[] touched = new int[256];
+    private int candidates = 0;
+    private long[] scanBssids = new long[64];
+    private int[] scanRssi = new int[64];
+
+    // Tas max des k meilleurs (racine = le plus éloigné)
+    private int[] heapIds = new int[16];
+    private double[] heapDist = new double[16];
+
+    /** Résultat d'une requête, trié par distance croissante. Réutilisable. */
+    static final class Matches {
+        String[] ids = new String[0];
+        double[] distances = new double[0];
+        int[] commonAps = new int[0];
+        int size;
+        /** Empreintes partageant au moins un AP avec le scan. */
+        int candidates;
+    }
+
+    /**
+     * Ajoute une empreinte. Les BSSID en double ne sont comptés qu'une fois (la première valeur).
+     * @return l'id interne de l'empreinte
+     */
+    synchronized int add(String label, long[] bssids, int[] rssi, int n) {
+        int id = count;
+        ensureFingerprints(id + 1);
+        double base = 0;
+        for (int i = 0; i < n; i++) {
+            int list = listFor(bssids[i]);
+            int size = postingSize[list];
+            if (size > 0 && postingIds[list][size - 1] == id) continue;
+            int q = quantize(rssi[i]);
+            append(list, id, q);
+            double d = q - MISSING_RSSI;
+            base += d * d;
+        }
+        labels[id] = label;
+        baseline[id] = base;
+        count = id + 1;
+        return id;
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    synchronized int accessPointCount() {
+        return lists;
+    }
+
+    synchronized long postingCount() {
+        return postings;
+    }
+
+    synchronized void clear() {
+        Arrays.fill(labels, 0, count, null);
+        Arrays.fill(table, 0);
+        Arrays.fill(postingSize, 0, lists, 0);
+        count = 0;
+        lists = 0;
+        postings = 0L;
+    }
+
+    /** k plus proches empreintes du snapshot courant. */
+    synchronized void query(ScanSnapshotStore snapshot, int k, int minCommon, Matches out) {
+        int n = snapshot.size();
+        if (scanBssids.length < n) {
+            scanBssids = new long[Math.max(n, scanBssids.length * 2)];
+            scanRssi = new int[scanBssids.length];
+        }
+        for (int i = 0; i < n; i++) {
+            scanBssids[i] = snapshot.bssid(i);
+            scanRssi[i] = snapshot.rssi(i);
+        }
+        query(scanBssids, scanRssi, n, k, minCommon, out);
+    }
+
+    /**
+     * k plus proches empreintes du scan {@code (bssids, rssi)[0, n)}, parmi celles partageant au
+     * moins {@code minCommon} AP avec lui. Les BSSID du scan doivent être distincts.
+     */
+    synchronized void query(long[] bssids, int[] rssi, int n, int k, int minCommon, Matches out) {
+        if (++generation == 0) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        int gen = generation;
+        candidates = 0;
+        double queryBase = 0;
+        for (int i = 0; i < n; i++) {
+            int qa = quantize(rssi[i]);
+            double dq = qa - MISSING_RSSI;
+            queryBase += dq * dq;
+            int list = indexOf(bssids[i]);
+            if (list < 0) continue;
+            int[] ids = postingIds[list];
+            byte[] values = postingRssi[list];
+            for (int j = 0, size = postingSize[list]; j < size; j++) {
+                int fp = ids[j];
+                if (stamp[fp] != gen) {
+                    stamp[fp] = gen;
+                    acc[fp] = 0;
+                    common[fp] = 0;
+                    touched[candidates++] = fp;
+                }
+                int fa = values[j];
+                double d = qa - fa;
+                double df = fa - MISSING_RSSI;
+                acc[fp] += d * d - df * df - dq * dq;
+                common[fp]++;
+            }
+        }
+
+        // Top-k : tas max borné
+        k = Math.max(0, k);
+        if (heapIds.length < k) {
+            heapIds = new int[k];
+            heapDist = new double[k];
+        }
+        int heap = 0;
+        for (int c = 0; c < candidates; c++) {
+            int fp = touched[c];
+            if (common[fp] < minCommon) continue;
+            double d2 = Math.max(0, baseline[fp] + queryBase + acc[fp]);
+            if (heap < k) {
+                heapIds[heap] = fp;
+                heapDist[heap] = d2;
+                siftUp(heap++);
+            } else if (k > 0 && d2 < heapDist[0]) {
+                heapIds[0] = fp;
+                heapDist[0] = d2;
+                siftDown(0, heap);
+            }
+        }
+
+        // Extraction du plus éloigné au plus proche
+        if (out.ids.length < heap) {
+            out.ids = new String[k];
+            out.distances = new double[k];
+            out.commonAps = new int[k];
+        }
+        out.size = heap;
+        out.candidates = candidates;
+        for (int r = heap - 1; r >= 0; r--) {
+            int fp = heapIds[0];
+            out.ids[r] = labels[fp];
+            out.distances[r] = Math.sqrt(heapDist[0]);
+            out.commonAps[r] = common[fp];
+            heapIds[0] = heapIds[r];
+            heapDist[0] = heapDist[r];
+            siftDown(0, r);
+        }
+    }
+
+    /* ---------------- internes ---------------- */
+
+    private static int quantize(int rssi) {
+        return Math.max(-128, Math.min(127, rssi));
+    }
+
+    private int indexOf(long bssid) {
+        int mask = table.length - 1;
+        int i = mix(bssid) & mask;
+        int cur;
+        while ((cur = table[i]) != 0) {
+            if (keys[cur - 1] == bssid) return cur - 1;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int listFor(long bssid) {
+        int found = indexOf(bssid);
+        if (found >= 0) return found;
+        if (lists == keys.length) growLists();
+        if ((lists + 1) * 2 > table.length) rehash(table.length * 2);
+        int list = lists++;
+        keys[list] = bssid;
+        postingSize[list] = 0;
+        int mask = table.length - 1;
+        int i = mix(bssid) & mask;
+        while (table[i] != 0) i = (i + 1) & mask;
+        table[i] = list + 1;
+        return list;
+    }
+
+    private void append(int list, int id, int rssi) {
+        int size = postingSize[list];
+        int[] ids = postingIds[list];
+        if (ids == null || ids.length == size) {
+            int cap = ids == null ? 4 : size * 2;
+            postingIds[list] = ids = ids == null ? new int[cap] : Arrays.copyOf(ids, cap);
+            postingRssi[list] = postingRssi[list] == null ? new byte[cap] : Arrays.copyOf(postingRssi[list], cap);
+        }
+        ids[size] = id;
+        postingRssi[list][size] = (byte) rssi;
+        postingSize[list] = size + 1;
+        postings++;
+    }
+
+    private void growLists() {
+        int cap = keys.length * 2;
+        keys = Arrays.copyOf(keys, cap);
+        postingIds = Arrays.copyOf(postingIds, cap);
+        postingRssi = Arrays.copyOf(postingRssi, cap);
+        postingSize = Arrays.copyOf(postingSize, cap);
+    }
+
+    private void rehash(int tableSize) {
+        table = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int list = 0; list < lists; list++) {
+            int i = mix(keys[list]) & mask;
+            while (table[i] != 0) i = (i + 1) & mask;
+            table[i] = list + 1;
+        }
+    }
+
+    private void ensureFingerprints(int n) {
+        if (labels.length >= n) return;
+        int cap = Math.max(n, labels.length * 2);
+        labels = Arrays.copyOf(labels, cap);
+        baseline = Arrays.copyOf(baseline, cap);
+        stamp = Arrays.copyOf(stamp, cap);
+        acc = Arrays.copyOf(acc, cap);
+        common = Arrays.copyOf(common, cap);
+        touched = Arrays.copyOf(touched, cap);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapDist[parent] >= heapDist[i]) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int size) {
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= size) break;
+            int largest = l + 1 < size && heapDist[l + 1] > heapDist[l] ? l + 1 : l;
+            if (heapDist[i] >= heapDist[largest]) break;
+            swap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = heapIds[a];
+        heapIds[a] = heapIds[b];
+        heapIds[b] = id;
+        double d = heapDist[a];
+        heapDist[a] = heapDist[b];
+        heapDist[b] = d;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,466 @@
+package com.derf.wifiscanner;
+
+import android.net.wifi.ScanResult;
+import android.os.Build;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Décodage à la demande des éléments d'information 802.11 d'un AP ({@code getInformationElements()},
+ * API 30+), avec cache par BSSID.
+ * <p>
+ * Les éléments sont lus en place dans les {@code ByteBuffer} du {@link ScanResult} (lectures
+ * absolues, aucune copie des octets). Seuls les groupes demandés sont décodés ; une signature des
+ * octets (FNV-1a par mots de 8 octets, plus {@code capabilities}) est recalculée à chaque
+ * résolution et invalide le cache quand les éléments changent (BSS Load en particulier). Sans
+ * éléments (API &lt; 30), la sécurité est déduite de {@code capabilities}. Au-delà de
+ * {@link #MAX_APS}, le quart le moins récemment résolu est évincé. Thread-safe (verrou sur
+ * l'instance).
+ */
+final class InformationElements {
+
+    static final int MAX_APS = 2048;
+    static final int MAX_VENDOR_ELEMENTS = 16;
+
+    // Groupes décodables
+    static final int SECURITY = 1;
+    static final int STANDARD = 1 << 1;
+    static final int BSS_LOAD = 1 << 2;
+    static final int COUNTRY = 1 << 3;
+    static final int VENDOR = 1 << 4;
+
+    // Protocole de sécurité
+    static final int PROTO_OPEN = 0;
+    static final int PROTO_WEP = 1;
+    static final int PROTO_WPA = 2;
+    static final int PROTO_WPA2 = 3;
+    static final int PROTO_WPA3 = 4;
+    static final int PROTO_OWE = 5;
+    private static final String[] PROTOCOL_NAMES = { "open", "wep", "wpa", "wpa2", "wpa3", "owe" };
+
+    // PMF (RSN capabilities, bits MFPC / MFPR)
+    static final int PMF_DISABLED = 0;
+    static final int PMF_CAPABLE = 1;
+    static final int PMF_REQUIRED = 2;
+    private static final String[] PMF_NAMES = { "disabled", "capable", "required" };
+
+    // Suites AKM et chiffrements : bit = type de suite 00-0F-AC (WPA : 00-50-F2 ramené au même type)
+    private static final String[] AKM_NAMES = new String[32];
+    private static final String[] CIPHER_NAMES = new String[32];
+    private static final int AKM_ENTERPRISE = 1 << 1 | 1 << 3 | 1 << 5 | 1 << 11 | 1 << 12 | 1 << 13;
+    private static final int AKM_WPA3 = 1 << 8 | 1 << 9 | 1 << 12 | 1 << 24 | 1 << 25;
+    private static final int AKM_OWE = 1 << 18;
+
+    static {
+        AKM_NAMES[1] = "eap";
+        AKM_NAMES[2] = "psk";
+        AKM_NAMES[3] = "ft-eap";
+        AKM_NAMES[4] = "ft-psk";
+        AKM_NAMES[5] = "eap-sha256";
+        AKM_NAMES[6] = "psk-sha256";
+        AKM_NAMES[8] = "sae";
+        AKM_NAMES[9] = "ft-sae";
+        AKM_NAMES[11] = "eap-suite-b";
+        AKM_NAMES[12] = "eap-suite-b-192";
+        AKM_NAMES[13] = "ft-eap-sha384";
+        AKM_NAMES[18] = "owe";
+        AKM_NAMES[24] = "sae-ext-key";
+        AKM_NAMES[25] = "ft-sae-ext-key";
+        CIPHER_NAMES[1] = "wep40";
+        CIPHER_NAMES[2] = "tkip";
+        CIPHER_NAMES[4] = "ccmp";
+        CIPHER_NAMES[5] = "wep104";
+        CIPHER_NAMES[8] = "gcmp";
+        CIPHER_NAMES[9] = "gcmp-256";
+        CIPHER_NAMES[10] = "ccmp-256";
+    }
+
+    // Identifiants d'éléments
+    private static final int EID_COUNTRY = 7;
+    private static final int EID_BSS_LOAD = 11;
+    private static final int EID_HT_CAPABILITIES = 45;
+    private static final int EID_RSN = 48;
+    private static final int EID_VHT_CAPABILITIES = 191;
+    private static final int EID_VENDOR = 221;
+    private static final int EID_EXTENSION = 255;
+    private static final int EID_EXT_HE_CAPABILITIES = 35;
+    private static final int EID_EXT_EHT_CAPABILITIES = 108;
+    private static final int OUI_IEEE = 0x000FAC;
+    private static final int OUI_MICROSOFT = 0x0050F2;
+
+    // Index BSSID → slot (slot + 1, 0 = vide), sondage linéaire avec suppression par décalage
+    private final int[] table = new int[MAX_APS * 2];
+    private final long[] keys = new long[MAX_APS];
+    private int size = 0;
+    private final int[] freeSlots = new int[MAX_APS];
+    private int freeCount = 0;
+    private long tick = 0L;
+
+    // Par slot
+    private final long[] lastUsed = new long[MAX_APS];
+    private final long[] signature = new long[MAX_APS];
+    private final int[] parsed = new int[MAX_APS];
+    private final byte[] protocol = new byte[MAX_APS];
+    private final int[] akms = new int[MAX_APS];
+    private final int[] pairwise = new int[MAX_APS];
+    private final int[] groupCipher = new int[MAX_APS];
+    private final byte[] pmf = new byte[MAX_APS];
+    private final byte[] standard = new byte[MAX_APS];
+    private final int[] stationCount = new int[MAX_APS];
+    private final int[] utilization = new int[MAX_APS];
+    private final String[] country = new String[MAX_APS];
+    private final int[] vendorCount = new int[MAX_APS];
+    // OUI << 8 | type, slot * MAX_VENDOR_ELEMENTS + i
+    private final int[] vendorElements = new int[MAX_APS * MAX_VENDOR_ELEMENTS];
+
+    // Éléments du ScanResult en cours (références, pas de copie)
+    private int[] ids = new int[32];
+    private int[] idExts = new int[32];
+    private ByteBuffer[] bodies = new ByteBuffer[32];
+
+    InformationElements() {
+        for (int i = 0; i < MAX_APS; i++) freeSlots[i] = MAX_APS - 1 - i;
+        freeCount = MAX_APS;
+    }
+
+    /**
+     * Décode les groupes {@code fields} manquants pour l'AP {@code r}.
+     * @return le slot à lire via les accesseurs (sous le verrou de l'instance)
+     */
+    synchronized int resolve(long bssid, ScanResult r, int fields) {
+        int n = 0;
+        int fallbackStandard = 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            List<ScanResult.InformationElement> elements = r.getInformationElements();
+            if (elements != null) {
+                n = elements.size();
+                ensureElements(n);
+                for (int i = 0; i < n; i++) {
+                    ScanResult.InformationElement e = elements.get(i);
+                    ids[i] = e.getId();
+                    idExts[i] = e.getIdExt();
+                    bodies[i] = e.getBytes();
+                }
+            }
+            fallbackStandard = r.getWifiStandard();
+        }
+        int slot = resolve(bssid, r.capabilities, r.frequency, fallbackStandard, ids, idExts, bodies, n, fields);
+        Arrays.fill(bodies, 0, n, null);
+        return slot;
+    }
+
+    /** Cœur de {@link #resolve(long, ScanResult, int)}, sur les éléments {@code [0, n)}. */
+    synchronized int resolve(long bssid, String capabilities, int frequency, int fallbackStandard,
+                             int[] ids, int[] idExts, ByteBuffer[] bodies, int n, int fields) {
+        long sig = signature(capabilities, ids, idExts, bodies, n);
+        int slot = slotFor(bssid);
+        lastUsed[slot] = ++tick;
+        if (signature[slot] != sig) {
+            signature[slot] = sig;
+            parsed[slot] = 0;
+            country[slot] = null;
+        }
+        int missing = fields & ~parsed[slot];
+        if (missing == 0) return slot;
+
+        if ((missing & SECURITY) != 0) {
+            protocol[slot] = PROTO_OPEN;
+            akms[slot] = pairwise[slot] = groupCipher[slot] = 0;
+            pmf[slot] = PMF_DISABLED;
+        }
+        if ((missing & STANDARD) != 0) standard[slot] = 0;
+        if ((missing & BSS_LOAD) != 0) stationCount[slot] = utilization[slot] = -1;
+        if ((missing & COUNTRY) != 0) country[slot] = null;
+        if ((missing & VENDOR) != 0) vendorCount[slot] = 0;
+
+        boolean rsn = false, wpa = false;
+        int generation = 0;
+        for (int i = 0; i < n; i++) {
+            ByteBuffer b = bodies[i];
+            if (b == null) continue;
+            int id = ids[i];
+            int off = b.position(), len = b.remaining();
+            if (id == EID_RSN && (missing & SECURITY) != 0) {
+                rsn = parseSuites(slot, b, off, len, OUI_IEEE, true);
+            } else if (id == EID_VENDOR && len >= 4) {
+                int oui = u8(b, off) << 16 | u8(b, off + 1) << 8 | u8(b, off + 2);
+                int type = u8(b, off + 3);
+                if ((missing & SECURITY) != 0 && !rsn && oui == OUI_MICROSOFT && type == 1) {
+                    // WPA1 : même structure que RSN après le type OUI, sans capabilities
+                    wpa = parseSuites(slot, b, off + 4, len - 4, OUI_MICROSOFT, false);
+                }
+                if ((missing & VENDOR) != 0 && vendorCount[slot] < MAX_VENDOR_ELEMENTS) {
+                    vendorElements[slot * MAX_VENDOR_ELEMENTS + vendorCount[slot]++] = oui << 8 | type;
+                }
+            } else if ((missing & STANDARD) != 0) {
+                if (id == EID_HT_CAPABILITIES) generation = Math.max(generation, 4);
+                // Comme le framework : VHT sur 2.4 GHz (« 256-QAM » propriétaire) ne compte pas
+                else if (id == EID_VHT_CAPABILITIES && frequency > 4900) generation = Math.max(generation, 5);
+                else if (id == EID_EXTENSION && idExts[i] == EID_EXT_HE_CAPABILITIES) generation = Math.max(generation, 6);
+                else if (id == EID_EXTENSION && idExts[i] == EID_EXT_EHT_CAPABILITIES) generation = 7;
+            }
+            if (id == EID_BSS_LOAD && (missing & BSS_LOAD) != 0 && len >= 3) {
+                stationCount[slot] = u8(b, off) | u8(b, off + 1) << 8;
+                utilization[slot] = u8(b, off + 2);
+            } else if (id == EID_COUNTRY && (missing & COUNTRY) != 0 && len >= 2) {
+                country[slot] = countryCode(b, off);
+            }
+        }
+
+        if ((missing & SECURITY) != 0) {
+            if (rsn) {
+                int a = akms[slot];
+                protocol[slot] = (byte) ((a & AKM_OWE) != 0 && (a & ~AKM_OWE) == 0 ? PROTO_OWE
+                    : (a & AKM_WPA3) != 0 ? PROTO_WPA3 : PROTO_WPA2);
+            } else if (wpa) {
+                protocol[slot] = PROTO_WPA;
+            } else {
+                securityFromCapabilities(slot, capabilities);
+            }
+        }
+        if ((missing & STANDARD) != 0) {
+            standard[slot] = (byte) (n > 0 ? standardOf(generation) : fallbackStandard);
+        }
+        parsed[slot] |= missing;
+        return slot;
+    }
+
+    synchronized void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(country, null);
+        size = 0;
+        for (int i = 0; i < MAX_APS; i++) freeSlots[i] = MAX_APS - 1 - i;
+        freeCount = MAX_APS;
+    }
+
+    synchronized int size() { return size; }
+
+    /* ---------------- Accesseurs (slot renvoyé par resolve) ---------------- */
+
+    String protocol(int slot) { return PROTOCOL_NAMES[protocol[slot]]; }
+    String pmf(int slot) { return PMF_NAMES[pmf[slot]]; }
+    boolean enterprise(int slot) { return (akms[slot] & AKM_ENTERPRISE) != 0; }
+    int akms(int slot) { return akms[slot]; }
+    int pairwiseCiphers(int slot) { return pairwise[slot]; }
+    int groupCipher(int slot) { return groupCipher[slot]; }
+    /** {@code ScanResult.WIFI_STANDARD_*}, 0 si inconnu. */
+    int wifiStandard(int slot) { return standard[slot]; }
+    /** -1 sans élément BSS Load. */
+    int stationCount(int slot) { return stationCount[slot]; }
+    /** Utilisation du canal sur 255, -1 sans élément BSS Load. */
+    int channelUtilization(int slot) { return utilization[slot]; }
+    String countryCode(int slot) { return country[slot]; }
+    int vendorElementCount(int slot) { return vendorCount[slot]; }
+    /** {@code OUI << 8 | type}. */
+    int vendorElement(int slot, int i) { return vendorElements[slot * MAX_VENDOR_ELEMENTS + i]; }
+
+    /** Noms des bits d'un masque d'AKM ({@code ciphers = false}) ou de chiffrements. */
+    static int suiteNames(int mask, boolean ciphers, String[] out) {
+        String[] names = ciphers ? CIPHER_NAMES : AKM_NAMES;
+        int n = 0;
+        for (int bit = 0; bit < 32; bit++) {
+            if ((mask & (1 << bit)) != 0 && names[bit] != null) out[n++] = names[bit];
+        }
+        return n;
+    }
+
+    static String standardName(int standard) {
+        switch (standard) {
+            case ScanResult.WIFI_STANDARD_LEGACY: return "legacy";
+            case ScanResult.WIFI_STANDARD_11N: return "11n";
+            case ScanResult.WIFI_STANDARD_11AC: return "11ac";
+            case ScanResult.WIFI_STANDARD_11AX: return "11ax";
+            case ScanResult.WIFI_STANDARD_11AD: return "11ad";
+            case ScanResult.WIFI_STANDARD_11BE: return "11be";
+            default: return null;
+        }
+    }
+
+    /** Génération Wi-Fi (4 à 7), 0 pour legacy, 11ad ou inconnu. */
+    static int generation(int standard) {
+        switch (standard) {
+            case ScanResult.WIFI_STANDARD_11N: return 4;
+            case ScanResult.WIFI_STANDARD_11AC: return 5;
+            case ScanResult.WIFI_STANDARD_11AX: return 6;
+            case ScanResult.WIFI_STANDARD_11BE: return 7;
+            default: return 0;
+        }
+    }
+
+    /* ---------------- internes ---------------- */
+
+    /**
+     * Suites RSN / WPA : version, chiffrement de groupe, chiffrements par paire, AKM puis (RSN)
+     * capabilities. Un élément tronqué garde ce qui a pu être lu.
+     * @return true si l'élément est exploitable
+     */
+    private boolean parseSuites(int slot, ByteBuffer b, int off, int len, int oui, boolean capabilities) {
+        int end = off + len;
+        if (len < 2) return false;
+        int p = off + 2; // version
+        if (p + 4 <= end) {
+            groupCipher[slot] = suiteBit(b, p, oui);
+            p += 4;
+        } else {
+            // Défaut de la norme quand les champs suivants sont absents
+            groupCipher[slot] = 1 << 4;
+            pairwise[slot] = 1 << 4;
+            akms[slot] = oui == OUI_IEEE ? 1 << 1 : 1 << 2;
+            return true;
+        }
+        for (int list = 0; list < 2; list++) {
+            if (p + 2 > end) return true;
+            int count = u8(b, p) | u8(b, p + 1) << 8;
+            p += 2;
+            int mask = 0;
+            for (int k = 0; k < count && p + 4 <= end; k++, p += 4) mask |= suiteBit(b, p, oui);
+            if (list == 0) pairwise[slot] = mask;
+            else akms[slot] = mask;
+        }
+        if (capabilities && p + 2 <= end) {
+            int caps = u8(b, p) | u8(b, p + 1) << 8;
+            pmf[slot] = (byte) ((caps & 0x40) != 0 ? PMF_REQUIRED : (caps & 0x80) != 0 ? PMF_CAPABLE : PMF_DISABLED);
+        }
+        return true;
+    }
+
+    private static int suiteBit(ByteBuffer b, int p, int oui) {
+        int suiteOui = u8(b, p) << 16 | u8(b, p + 1) << 8 | u8(b, p + 2);
+        int type = u8(b, p + 3);
+        return suiteOui == oui && type < 32 ? 1 << type : 0;
+    }
+
+    /** Sans éléments : jetons de {@code capabilities} ("[WPA2-PSK-CCMP][RSN-SAE-CCMP][ESS]"). */
+    private void securityFromCapabilities(int slot, String caps) {
+        if (caps == null) return;
+        int a = 0;
+        if (caps.contains("EAP")) a |= 1 << 1;
+        if (caps.contains("PSK")) a |= 1 << 2;
+        if (caps.contains("SAE")) a |= 1 << 8;
+        if (caps.contains("OWE")) a |= AKM_OWE;
+        if (caps.contains("EAP_SUITE_B_192")) a |= 1 << 12;
+        akms[slot] = a;
+        if (caps.contains("CCMP")) pairwise[slot] |= 1 << 4;
+        if (caps.contains("TKIP")) pairwise[slot] |= 1 << 2;
+        if (caps.contains("GCMP-256") || caps.contains("GCMP256")) pairwise[slot] |= 1 << 9;
+        if (caps.contains("MFPR")) pmf[slot] = PMF_REQUIRED;
+        else if (caps.contains("MFPC")) pmf[slot] = PMF_CAPABLE;
+        if ((a & AKM_OWE) != 0) protocol[slot] = PROTO_OWE;
+        else if ((a & AKM_WPA3) != 0) protocol[slot] = PROTO_WPA3;
+        else if (caps.contains("RSN") || caps.contains("WPA2")) protocol[slot] = PROTO_WPA2;
+        else if (caps.contains("WPA")) protocol[slot] = PROTO_WPA;
+        else if (caps.contains("WEP")) protocol[slot] = PROTO_WEP;
+    }
+
+    private static int standardOf(int generation) {
+        switch (generation) {
+            case 4: return ScanResult.WIFI_STANDARD_11N;
+            case 5: return ScanResult.WIFI_STANDARD_11AC;
+            case 6: return ScanResult.WIFI_STANDARD_11AX;
+            case 7: return ScanResult.WIFI_STANDARD_11BE;
+            default: return ScanResult.WIFI_STANDARD_LEGACY;
+        }
+    }
+
+    private static String countryCode(ByteBuffer b, int off) {
+        char c0 = (char) u8(b, off), c1 = (char) u8(b, off + 1);
+        if (c0 < 'A' || c0 > 'Z' || c1 < 'A' || c1 > 'Z') return null;
+        return new String(new char[] { c0, c1 });
+    }
+
+    private static long signature(String capabilities, int[] ids, int[] idExts, ByteBuffer[] bodies, int n) {
+        long h = 0xcbf29ce484222325L;
+        if (capabilities != null) h = (h ^ capabilities.hashCode()) * 0x100000001b3L;
+        for (int i = 0; i < n; i++) {
+            h = (h ^ (ids[i] << 8 | idExts[i])) * 0x100000001b3L;
+            ByteBuffer b = bodies[i];
+            if (b == null) continue;
+            // 8 octets par pas, puis la fin octet par octet
+            int p = b.position(), end = b.limit();
+            for (; p + 8 <= end; p += 8) h = (h ^ b.getLong(p)) * 0x100000001b3L;
+            for (; p < end; p++) h = (h ^ (b.get(p) & 0xFF)) * 0x100000001b3L;
+            h = (h ^ b.remaining()) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static int u8(ByteBuffer b, int p) {
+        return b.get(p) & 0xFF;
+    }
+
+    private void ensureElements(int n) {
+        if (ids.length >= n) return;
+        int cap = Math.max(n, ids.length * 2);
+        ids = new int[cap];
+        idExts = new int[cap];
+        bodies = new ByteBuffer[cap];
+    }
+
+    private int indexOf(long bssid) {
+        int mask = table.length - 1;
+        int i = mix(bssid) & mask;
+        int cur;
+        while ((cur = table[i]) != 0) {
+            if (keys[cur - 1] == bssid) return cur - 1;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slotFor(long bssid) {
+        int found = indexOf(bssid);
+        if (found >= 0) return found;
+        if (freeCount == 0) evictLeastRecent();
+        int slot = freeSlots[--freeCount];
+        keys[slot] = bssid;
+        // Signature 0 : rien de décodé
+        signature[slot] = 0L;
+        parsed[slot] = 0;
+        int mask = table.length - 1;
+        int i = mix(bssid) & mask;
+        while (table[i] != 0) i = (i + 1) & mask;
+        table[i] = slot + 1;
+        size++;
+        return slot;
+    }
+
+    /** Évince en une passe les entrées du plus ancien quart de la plage de {@code lastUsed}. */
+    private void evictLeastRecent() {
+        long oldest = Long.MAX_VALUE;
+        for (int slot = 0; slot < MAX_APS; slot++) oldest = Math.min(oldest, lastUsed[slot]);
+        long threshold = oldest + (tick - oldest) / 4;
+        for (int slot = 0; slot < MAX_APS; slot++) {
+            if (lastUsed[slot] <= threshold) remove(slot);
+        }
+    }
+
+    private void remove(int slot) {
+        int mask = table.length - 1;
+        int i = mix(keys[slot]) & mask;
+        while (table[i] != slot + 1) i = (i + 1) & mask;
+        // Suppression par décalage arrière (sondage linéaire, pas de tombstone)
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            int cur = table[j];
+            if (cur == 0) break;
+            int home = mix(keys[cur - 1]) & mask;
+            boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!between) {
+                table[i] = cur;
+                i = j;
+            }
+        }
+        table[i] = 0;
+        country[slot] = null;
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
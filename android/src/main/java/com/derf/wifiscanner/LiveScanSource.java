@@ -0,0 +1,90 @@
+package com.derf.wifiscanner;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Source réelle : {@link WifiManager} et broadcast {@code SCAN_RESULTS_AVAILABLE_ACTION}. */
+final class LiveScanSource implements ScanSource {
+
+    private static final String TAG = "LiveScanSource";
+
+    private final Context appContext;
+    private final WifiManager wifiManager;
+    private BroadcastReceiver receiver;
+
+    LiveScanSource(Context context) {
+        this.appContext = context.getApplicationContext();
+        this.wifiManager = (WifiManager) appContext.getSystemService(Context.WIFI_SERVICE);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return wifiManager != null;
+    }
+
+    @Override
+    public boolean isWifiEnabled() {
+        return wifiManager != null && wifiManager.isWifiEnabled();
+    }
+
+    @Override
+    public boolean startScan() {
+        return wifiManager.startScan();
+    }
+
+    @Override
+    public List<ScanResult> getScanResults() {
+        List<ScanResult> results = wifiManager.getScanResults();
+        return results != null ? results : new ArrayList<>();
+    }
+
+    @Override
+    public boolean isScanThrottleEnabled() {
+        if (wifiManager == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.R) return true;
+        try {
+            return wifiManager.isScanThrottleEnabled();
+        } catch (Throwable t) {
+            Log.w(TAG, "isScanThrottleEnabled() failed", t);
+            return true;
+        }
+    }
+
+    @Override
+    public void start(Handler handler, Callback callback) {
+        receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context ctx, Intent intent) {
+                if (intent == null || !WifiManager.SCAN_RESULTS_AVAILABLE_ACTION.equals(intent.getAction())) return;
+                callback.onResultsAvailable(intent.getBooleanExtra(WifiManager.EXTRA_RESULTS_UPDATED, false));
+            }
+        };
+        // Inscription du receiver (compat Android 13+), livré sur le thread worker
+        IntentFilter filter = new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+        ContextCompat.registerReceiver(appContext, receiver, filter, null, handler, ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    @Override
+    public void stop() {
+        if (receiver == null) return;
+        try {
+            appContext.unregisterReceiver(receiver);
+        } catch (IllegalArgumentException ignored) {
+            // Déjà désinscrit (course), on ignore
+        } catch (Throwable t) {
+            Log.w(TAG, "unregisterReceiver failed", t);
+        }
+        receiver = null;
+    }
+}
@@ -0,0 +1,240 @@
+package com.derf.wifiscanner;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Fabricant d'un AP à partir de son BSSID, sur un index OUI précompilé
+ * ({@code scripts/build-oui-index.mjs} → asset {@code oui.bin}).
+ * <p>
+ * L'asset est mappé en mémoire (ou lu une fois s'il est compressé dans l'APK) au premier lookup ;
+ * les recherches sont des dichotomies sur le buffer, sans allocation. Les MA-L sont répartis en
+ * {@code 2^BUCKET_BITS} seaux par leurs bits de poids fort, ce qui ramène la dichotomie à
+ * quelques entrées. Les préfixes MA-S (36 bits) et MA-M (28 bits) ne sont cherchés que sous les
+ * blocs de 24 bits qui en contiennent (ceux de l'IEEE Registration Authority), et avant le MA-L.
+ * Layout (big-endian) :
+ * <pre>
+ *  0  int  magic "WOI1"          20 int  nombre de fabricants
+ *  4  short version              24 int  octets de la table de chaînes
+ *  8  int  nombre de MA-L        28 int  réservé
+ * 12  int  nombre de MA-M        32 long préfixes MA-S[], triés
+ * 16  int  nombre de MA-S           int  seaux MA-L[2^BUCKET_BITS + 1] (1er index du seau)
+ *                                   int  préfixes MA-L[], triés ; int préfixes MA-M[], triés
+ *                                   u16 fabricant des MA-S[], MA-L[], MA-M[], padding à 4
+ *                                   int offsets[fabricants + 1], u8 noms UTF-8
+ * </pre>
+ * Thread-safe : lectures absolues uniquement, noms décodés une fois puis partagés.
+ */
+final class OuiIndex {
+
+    private static final String TAG = "OuiIndex";
+
+    static final String ASSET_NAME = "oui.bin";
+    static final int MAGIC = 0x574F4931; // "WOI1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int BUCKET_BITS = 12;
+    private static final int BUCKETS = 1 << BUCKET_BITS;
+
+    /** Index sans entrée (asset absent ou illisible). */
+    static final OuiIndex EMPTY = new OuiIndex((ByteBuffer) null);
+
+    private final AssetManager assets;
+    private volatile boolean loaded;
+
+    private ByteBuffer data;
+    private int maL, maM, maS, vendors;
+    // Sections
+    private int buckets, maLKeys, maMKeys, maSKeys, maLIds, maMIds, maSIds, offsets, strings;
+    // Blocs de 24 bits subdivisés en MA-M / MA-S, triés (quelques dizaines)
+    private int[] subdivided = new int[0];
+    // Noms décodés à la demande
+    private String[] names = new String[0];
+
+    /** Index chargé depuis l'asset {@link #ASSET_NAME} au premier lookup. */
+    OuiIndex(AssetManager assets) {
+        this.assets = assets;
+    }
+
+    /** Index sur un buffer déjà chargé ; null = vide. */
+    OuiIndex(ByteBuffer buffer) {
+        this.assets = null;
+        parse(buffer);
+        loaded = true;
+    }
+
+    /** @return l'id du fabricant, ou -1 (inconnu, MAC aléatoire ou multicast) */
+    int lookup(long bssid) {
+        ensureLoaded();
+        if (bssid == ScanSnapshotStore.INVALID_BSSID) return -1;
+        // Bit U/L (adresse locale, typiquement randomisée) ou bit I/G : pas d'OUI
+        if (((bssid >>> 40) & 0x03) != 0) return -1;
+        int oui = (int) (bssid >>> 24);
+        if (Arrays.binarySearch(subdivided, oui) >= 0) {
+            int i = searchLong(maSKeys, 0, maS, bssid >>> 12);
+            if (i >= 0) return data.getShort(maSIds + 2 * i) & 0xFFFF;
+            i = searchInt(maMKeys, 0, maM, (int) (bssid >>> 20));
+            if (i >= 0) return data.getShort(maMIds + 2 * i) & 0xFFFF;
+        }
+        if (maL == 0) return -1;
+        int bucket = oui >>> (24 - BUCKET_BITS);
+        int i = searchInt(maLKeys, data.getInt(buckets + 4 * bucket), data.getInt(buckets + 4 * (bucket + 1)), oui);
+        return i >= 0 ? data.getShort(maLIds + 2 * i) & 0xFFFF : -1;
+    }
+
+    /** @return le nom du fabricant, ou null */
+    String vendor(long bssid) {
+        int id = lookup(bssid);
+        return id >= 0 ? vendorName(id) : null;
+    }
+
+    String vendorName(int id) {
+        ensureLoaded();
+        if (id < 0 || id >= vendors) return null;
+        String name = names[id];
+        if (name == null) {
+            // Course bénigne : au pire le même nom est décodé deux fois
+            int start = data.getInt(offsets + 4 * id);
+            int end = data.getInt(offsets + 4 * (id + 1));
+            byte[] utf8 = new byte[end - start];
+            for (int k = 0; k < utf8.length; k++) utf8[k] = data.get(strings + start + k);
+            names[id] = name = new String(utf8, StandardCharsets.UTF_8);
+        }
+        return name;
+    }
+
+    int prefixCount() {
+        ensureLoaded();
+        return maL + maM + maS;
+    }
+
+    int vendorCount() {
+        ensureLoaded();
+        return vendors;
+    }
+
+    /* ---------------- internes ---------------- */
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        synchronized (this) {
+            if (loaded) return;
+            try {
+                parse(open(assets));
+                Log.d(TAG, "OUI index loaded → prefixes=" + (maL + maM + maS) + " vendors=" + vendors);
+            } catch (FileNotFoundException e) {
+                Log.w(TAG, "no " + ASSET_NAME + " asset, vendor lookup disabled (npm run build:oui)");
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "invalid " + ASSET_NAME + ", vendor lookup disabled: " + e.getMessage());
+                parse(null);
+            }
+            loaded = true;
+        }
+    }
+
+    private static ByteBuffer open(AssetManager assets) throws IOException {
+        try (AssetFileDescriptor fd = assets.openFd(ASSET_NAME);
+             FileInputStream in = fd.createInputStream()) {
+            // Stocké sans compression : mappé directement dans l'APK
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+        } catch (FileNotFoundException compressed) {
+            // Asset compressé (ou absent : open() relance FileNotFoundException) : lu une fois
+            try (InputStream in = assets.open(ASSET_NAME)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+                byte[] chunk = new byte[16 * 1024];
+                int r;
+                while ((r = in.read(chunk)) > 0) out.write(chunk, 0, r);
+                return ByteBuffer.wrap(out.toByteArray());
+            }
+        }
+    }
+
+    private void parse(ByteBuffer b) {
+        if (b == null) {
+            data = null;
+            maL = maM = maS = vendors = 0;
+            subdivided = new int[0];
+            return;
+        }
+        if (b.capacity() < HEADER_SIZE || b.getInt(0) != MAGIC) throw new IllegalArgumentException("bad magic");
+        if (b.getShort(4) != VERSION) throw new IllegalArgumentException("unsupported version " + b.getShort(4));
+        int l = b.getInt(8), m = b.getInt(12), s = b.getInt(16), v = b.getInt(20), bytes = b.getInt(24);
+        int sKeys = HEADER_SIZE;
+        int bucketStart = sKeys + 8 * s;
+        int lKeys = bucketStart + 4 * (BUCKETS + 1);
+        int mKeys = lKeys + 4 * l;
+        int sIds = mKeys + 4 * m;
+        int lIds = sIds + 2 * s;
+        int mIds = lIds + 2 * l;
+        int offs = (mIds + 2 * m + 3) & ~3;
+        int str = offs + 4 * (v + 1);
+        if (str + bytes > b.capacity()) throw new IllegalArgumentException("truncated index");
+        maSKeys = sKeys;
+        buckets = bucketStart;
+        maLKeys = lKeys;
+        maMKeys = mKeys;
+        maSIds = sIds;
+        maLIds = lIds;
+        maMIds = mIds;
+        offsets = offs;
+        strings = str;
+        names = new String[v];
+        maL = l;
+        maM = m;
+        maS = s;
+        vendors = v;
+        data = b;
+        subdivided = subdividedBlocks();
+    }
+
+    /** Blocs de 24 bits parents des MA-S et MA-M (clés triées : doublons adjacents). */
+    private int[] subdividedBlocks() {
+        int[] out = new int[16];
+        int n = 0;
+        for (int i = 0; i < maS + maM; i++) {
+            int oui = i < maS ? (int) (data.getLong(maSKeys + 8 * i) >>> 12) : data.getInt(maMKeys + 4 * (i - maS)) >>> 4;
+            if (n == out.length) out = Arrays.copyOf(out, n * 2);
+            out[n++] = oui;
+        }
+        Arrays.sort(out, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) if (distinct == 0 || out[distinct - 1] != out[i]) out[distinct++] = out[i];
+        return Arrays.copyOf(out, distinct);
+    }
+
+    /** Dichotomie sur les entrées {@code [from, to)}. */
+    private int searchInt(int base, int from, int to, int key) {
+        int lo = from, hi = to - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int v = data.getInt(base + 4 * mid);
+            if (v < key) lo = mid + 1;
+            else if (v > key) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private int searchLong(int base, int from, int to, long key) {
+        int lo = from, hi = to - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long v = data.getLong(base + 8 * mid);
+            if (v < key) lo = mid + 1;
+            else if (v > key) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,149 @@
+package com.derf.wifiscanner;
+
+import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.location.LocationManager;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * État mis en cache des préconditions d'un scan (permissions, Wi-Fi, localisation), pour que
+ * scan() les vérifie en O(1) sans aller-retour binder.
+ * <p>
+ * Wi-Fi et localisation sont suivis par broadcasts ({@code WIFI_STATE_CHANGED_ACTION},
+ * {@code PROVIDERS_CHANGED_ACTION}). Aucune notification n'existe pour les permissions (une
+ * révocation tue le process) : elles sont relues au démarrage, au retour des demandes de
+ * permission et au resume via {@link #refreshAll()}.
+ */
+final class PreconditionMonitor {
+
+    private static final String TAG = "PreconditionMonitor";
+
+    static final String MISSING_PERMISSIONS = "Missing required permissions for Wi-Fi scanning";
+    static final String WIFI_DISABLED = "Wi-Fi is disabled";
+    static final String LOCATION_DISABLED = "Device location must be turned ON to scan Wi-Fi";
+
+    private final Context appContext;
+    private final Handler handler;
+
+    private volatile boolean permissionsGranted = false;
+    private volatile boolean wifiEnabled = false;
+    private volatile boolean locationEnabled = true;
+
+    private BroadcastReceiver receiver;
+
+    PreconditionMonitor(Context context, Handler handler) {
+        this.appContext = context.getApplicationContext();
+        this.handler = handler;
+    }
+
+    /** Relit tout l'état puis s'abonne aux changements Wi-Fi / localisation. */
+    synchronized void start() {
+        refreshAll();
+        if (receiver != null) return;
+        receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context ctx, Intent intent) {
+                if (intent == null) return;
+                if (WifiManager.WIFI_STATE_CHANGED_ACTION.equals(intent.getAction())) {
+                    // L'état est porté par l'intent : pas d'appel au WifiManager
+                    int state = intent.getIntExtra(WifiManager.EXTRA_WIFI_STATE, -1);
+                    setWifiEnabled(state == WifiManager.WIFI_STATE_ENABLED);
+                } else {
+                    refreshLocation();
+                }
+            }
+        };
+        IntentFilter filter = new IntentFilter(WifiManager.WIFI_STATE_CHANGED_ACTION);
+        filter.addAction(LocationManager.PROVIDERS_CHANGED_ACTION);
+        try {
+            ContextCompat.registerReceiver(appContext, receiver, filter, null, handler, ContextCompat.RECEIVER_NOT_EXPORTED);
+        } catch (Throwable t) {
+            Log.w(TAG, "registerReceiver failed", t);
+            receiver = null;
+        }
+    }
+
+    synchronized void stop() {
+        if (receiver == null) return;
+        try {
+            appContext.unregisterReceiver(receiver);
+        } catch (Throwable t) {
+            Log.w(TAG, "unregisterReceiver failed", t);
+        }
+        receiver = null;
+    }
+
+    /** Vérification O(1) sur l'état en cache. @return le motif de rejet, ou null si tout est OK */
+    String check() {
+        if (!permissionsGranted) return MISSING_PERMISSIONS;
+        if (!wifiEnabled) return WIFI_DISABLED;
+        if (!locationEnabled) return LOCATION_DISABLED;
+        return null;
+    }
+
+    void refreshAll() {
+        refreshPermissions();
+        refreshWifi();
+        refreshLocation();
+    }
+
+    /** Relit les permissions requises (Android 13+ : NEARBY_WIFI_DEVICES, sinon FINE_LOCATION). */
+    boolean refreshPermissions() {
+        boolean ok = granted(Manifest.permission.ACCESS_WIFI_STATE)
+            && granted(Manifest.permission.CHANGE_WIFI_STATE)
+            && granted(Build.VERSION.SDK_INT >= 33
+                ? Manifest.permission.NEARBY_WIFI_DEVICES
+                : Manifest.permission.ACCESS_FINE_LOCATION);
+        if (ok != permissionsGranted) Log.d(TAG, "permissions → granted=" + ok);
+        permissionsGranted = ok;
+        return ok;
+    }
+
+    void refreshWifi() {
+        WifiManager wm = (WifiManager) appContext.getSystemService(Context.WIFI_SERVICE);
+        setWifiEnabled(wm != null && wm.isWifiEnabled());
+    }
+
+    void refreshLocation() {
+        boolean enabled;
+        try {
+            LocationManager lm = (LocationManager) appContext.getSystemService(Context.LOCATION_SERVICE);
+            if (lm == null) {
+                enabled = false;
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                enabled = lm.isLocationEnabled();
+            } else {
+                enabled = lm.isProviderEnabled(LocationManager.GPS_PROVIDER)
+                    || lm.isProviderEnabled(LocationManager.NETWORK_PROVIDER);
+            }
+        } catch (Throwable t) {
+            Log.w(TAG, "refreshLocation(): " + t.getMessage());
+            // En cas d’erreur, on ne bloque pas
+            enabled = true;
+        }
+        if (enabled != locationEnabled) Log.d(TAG, "location toggle → " + enabled);
+        locationEnabled = enabled;
+    }
+
+    boolean isWifiEnabled() {
+        return wifiEnabled;
+    }
+
+    private void setWifiEnabled(boolean enabled) {
+        if (enabled != wifiEnabled) Log.d(TAG, "wifi state → enabled=" + enabled);
+        wifiEnabled = enabled;
+    }
+
+    private boolean granted(String permission) {
+        return ContextCompat.checkSelfPermission(appContext, permission) == PackageManager.PERMISSION_GRANTED;
+    }
+}
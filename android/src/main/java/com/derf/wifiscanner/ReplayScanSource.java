@@ -0,0 +1,131 @@
+package com.derf.wifiscanner;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Rejoue une trace de scans enregistrés (typiquement l'historique de {@link ScanHistoryStore},
+ * alimenté par {@code enableHistory}), en boucle. Chaque startScan() livre le scan suivant de la
+ * trace ; avec {@code speed > 0}, les scans sont aussi livrés passivement à la cadence
+ * enregistrée, accélérée d'autant. Les âges des observations sont conservés.
+ */
+final class ReplayScanSource extends SimulatedScanSource {
+
+    private final Trace trace;
+    private final double speed;
+    private int next = 0;
+
+    /**
+     * @param latencyMs délai entre un startScan() accepté et la livraison
+     * @param speed     facteur de la cadence passive (2 = deux fois plus vite), 0 pour aucune
+     */
+    ReplayScanSource(Trace trace, long latencyMs, double speed) {
+        super(latencyMs);
+        this.trace = trace;
+        this.speed = speed;
+    }
+
+    @Override
+    protected void fill(Frame frame, long nowMicros) {
+        if (trace.scans == 0) return;
+        int scan = next;
+        next = (next + 1) % trace.scans;
+        Trace t = trace;
+        for (int e = t.scanStart[scan], end = e + t.scanCount[scan]; e < end; e++) {
+            frame.add(t.bssidText[e], t.ssid[e], t.rssi[e], t.frequency[e],
+                t.centerFreq0[e], t.centerFreq1[e], t.channelWidth[e], nowMicros - t.ageMs[e] * 1000L);
+        }
+    }
+
+    @Override
+    protected long nextPassiveDelayMs() {
+        if (speed <= 0 || trace.scans == 0) return -1L;
+        // Écart enregistré entre le scan à livrer et le précédent (fin de boucle : même écart que le 1er)
+        int prev = next > 0 ? next - 1 : trace.scans - 1;
+        long gap = next > 0 ? trace.scanTime[next] - trace.scanTime[prev]
+            : trace.scans > 1 ? trace.scanTime[1] - trace.scanTime[0] : 0L;
+        return (long) (Math.max(0L, gap) / speed);
+    }
+
+    /** Trace en colonnes : les scans (heure, début, nombre d'AP) et leurs entrées. */
+    static final class Trace {
+        int scans = 0;
+        long[] scanTime = new long[16];
+        int[] scanStart = new int[16];
+        int[] scanCount = new int[16];
+
+        int entries = 0;
+        long[] bssid = new long[256];
+        // Formatés à l'ajout : le rejeu n'alloue pas
+        String[] bssidText = new String[256];
+        String[] ssid = new String[256];
+        int[] rssi = new int[256];
+        int[] frequency = new int[256];
+        int[] centerFreq0 = new int[256];
+        int[] centerFreq1 = new int[256];
+        int[] channelWidth = new int[256];
+        int[] ageMs = new int[256];
+
+        /** Ouvre un nouveau scan ; les entrées suivantes lui sont rattachées. */
+        void addScan(long timeMs) {
+            if (scans == scanTime.length) {
+                int cap = scans * 2;
+                scanTime = Arrays.copyOf(scanTime, cap);
+                scanStart = Arrays.copyOf(scanStart, cap);
+                scanCount = Arrays.copyOf(scanCount, cap);
+            }
+            scanTime[scans] = timeMs;
+            scanStart[scans] = entries;
+            scanCount[scans] = 0;
+            scans++;
+        }
+
+        void addEntry(long bssid, String ssid, int rssi, int frequency,
+                      int centerFreq0, int centerFreq1, int channelWidth, int ageMs) {
+            if (entries == this.bssid.length) grow();
+            int e = entries++;
+            this.bssid[e] = bssid;
+            this.bssidText[e] = ScanSnapshotStore.formatBssid(bssid);
+            this.ssid[e] = ssid;
+            this.rssi[e] = rssi;
+            this.frequency[e] = frequency;
+            this.centerFreq0[e] = centerFreq0;
+            this.centerFreq1[e] = centerFreq1;
+            this.channelWidth[e] = channelWidth;
+            this.ageMs[e] = ageMs;
+            scanCount[scans - 1]++;
+        }
+
+        /** Un scan par heure de scan distincte de l'historique, dans l'ordre d'enregistrement. */
+        static Trace fromHistory(ScanHistoryStore history) throws IOException {
+            Trace t = new Trace();
+            SsidPool ssids = new SsidPool();
+            long[] lastTime = { Long.MIN_VALUE };
+            history.query(Long.MIN_VALUE, Long.MAX_VALUE, null, Integer.MAX_VALUE, -1L, (seg, off) -> {
+                long time = ScanHistoryStore.scanTime(seg, off);
+                if (time != lastTime[0]) {
+                    t.addScan(time);
+                    lastTime[0] = time;
+                }
+                t.addEntry(ScanHistoryStore.bssid(seg, off), ssids.intern(ScanHistoryStore.ssid(seg, off)),
+                    ScanHistoryStore.rssi(seg, off), ScanHistoryStore.frequency(seg, off),
+                    ScanHistoryStore.centerFreq0(seg, off), ScanHistoryStore.centerFreq1(seg, off),
+                    ScanHistoryStore.channelWidth(seg, off), ScanHistoryStore.ageMs(seg, off));
+            });
+            return t;
+        }
+
+        private void grow() {
+            int cap = entries * 2;
+            bssid = Arrays.copyOf(bssid, cap);
+            bssidText = Arrays.copyOf(bssidText, cap);
+            ssid = Arrays.copyOf(ssid, cap);
+            rssi = Arrays.copyOf(rssi, cap);
+            frequency = Arrays.copyOf(frequency, cap);
+            centerFreq0 = Arrays.copyOf(centerFreq0, cap);
+            centerFreq1 = Arrays.copyOf(centerFreq1, cap);
+            channelWidth = Arrays.copyOf(channelWidth, cap);
+            ageMs = Arrays.copyOf(ageMs, cap);
+        }
+    }
+}
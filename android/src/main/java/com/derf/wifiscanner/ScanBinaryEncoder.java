@@ -0,0 +1,224 @@
+package com.derf.wifiscanner;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Format binaire colonnaire de {@code format: "binary"} (décodé par {@code src/binary.ts}).
+ * Little-endian, colonnes alignées pour être lues directement en typed arrays côté JS.
+ * <pre>
+ *  0  u32 magic "WSB1"        16 f64 timestamp (epoch ms du snapshot)
+ *  4  u16 version             24 u32 ageMs du snapshot
+ *  6  u16 flags               28 u32 nombre de SSID du dictionnaire
+ *  8  u32 count               32 colonnes :
+ * 12  u32 total (avant filtre)
+ *   [AGES]    u32 ageMs[count]
+ *   [SIGNAL]  f32 smoothedRssi[count], f32 rssiVariance[count], f32 rssiTrend[count] (NaN : aucun échantillon)
+ *             u16 frequency[count], i16 channel[count], u16 ssidIndex[count]
+ *   [WIDTH]   u16 centerFreq0[count], u16 centerFreq1[count]
+ *             i8 rssi[count]
+ *   [WIDTH]   u8 channelWidth[count]
+ *             u8 bssid[count * 6], padding à 4
+ *             u32 ssidOffsets[ssidCount + 1], u8 ssidUtf8[]
+ *   [VENDOR]  padding à 2, u16 vendorIndex[count] (0xFFFF : inconnu)
+ * </pre>
+ * SSID, BSSID, RSSI, fréquence et canal sont toujours présents ; les groupes optionnels suivent la
+ * projection {@code fields}. Les noms de fabricant partagent le dictionnaire des SSID ; leur
+ * colonne est en fin de buffer, ignorée par les décodeurs qui ne la connaissent pas. Les index
+ * sont sur 16 bits et 0xFFFF est réservé : au-delà de {@link #MAX_DICTIONARY} chaînes
+ * distinctes, l'encodage échoue plutôt que d'émettre des colonnes corrompues.
+ * Buffers réutilisés d'un encodage à l'autre : non thread-safe.
+ */
+final class ScanBinaryEncoder {
+
+    static final int MAGIC = 0x31425357; // "WSB1"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    static final int FLAG_CACHED = 1;
+    static final int FLAG_AGES = 1 << 1;
+    static final int FLAG_SIGNAL = 1 << 2;
+    static final int FLAG_WIDTH = 1 << 3;
+    static final int FLAG_FILTERED = 1 << 4;
+    static final int FLAG_VENDOR = 1 << 5;
+
+    static final int NO_VENDOR = 0xFFFF;
+    // Index u16, NO_VENDOR exclu
+    static final int MAX_DICTIONARY = NO_VENDOR;
+
+    private ByteBuffer buf = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+
+    // Dictionnaire des SSID (par référence : les SSID sont internés dans le SsidPool)
+    private String[] dictKeys = new String[64];
+    private int[] dictValues = new int[64];
+    private String[] dict = new String[32];
+    private int dictSize = 0;
+    private int[] ssidIndex = new int[64];
+    private int[] vendorIndex = new int[64];
+    private byte[][] ssidBytes = new byte[32][];
+
+    /**
+     * Encode les slots {@code selected[0, n)} de {@code store}.
+     * {@code signal} (peut être null) est lu sous son propre verrou ; {@code vendors} peut être null.
+     * @return la taille utile de {@link #buffer()}
+     * @throws IllegalStateException au-delà de {@link #MAX_DICTIONARY} SSID et fabricants distincts
+     */
+    int encode(ScanSnapshotStore store, int[] selected, int n, ScanQuery q, boolean cached,
+               long now, long bootEpoch, SignalTracker signal, OuiIndex vendors) {
+        boolean ages = q.has(ScanQuery.F_AGE | ScanQuery.F_TIMESTAMP);
+        boolean stats = signal != null && q.has(ScanQuery.F_SMOOTHED);
+        boolean width = q.has(ScanQuery.F_WIDTH);
+        boolean vendor = vendors != null && q.has(ScanQuery.F_VENDOR);
+        int flags = (cached ? FLAG_CACHED : 0) | (ages ? FLAG_AGES : 0) | (stats ? FLAG_SIGNAL : 0)
+            | (width ? FLAG_WIDTH : 0) | (q.hasFilter() ? FLAG_FILTERED : 0) | (vendor ? FLAG_VENDOR : 0);
+
+        // Dictionnaire des chaînes (SSID, fabricants)
+        resetDictionary(n);
+        int ssidTotal = 0;
+        for (int i = 0; i < n; i++) {
+            ssidIndex[i] = intern(store.ssid(selected[i]));
+            if (vendor) {
+                String name = vendors.vendor(store.bssid(selected[i]));
+                vendorIndex[i] = name != null ? intern(name) : NO_VENDOR;
+            }
+        }
+        for (int d = 0; d < dictSize; d++) {
+            ssidBytes[d] = dict[d].getBytes(StandardCharsets.UTF_8);
+            ssidTotal += ssidBytes[d].length;
+        }
+
+        int size = HEADER_BYTES
+            + (ages ? 4 * n : 0) + (stats ? 12 * n : 0)
+            + 6 * n + (width ? 4 * n : 0)
+            + n + (width ? n : 0)
+            + 6 * n;
+        size = align4(size) + 4 * (dictSize + 1) + ssidTotal;
+        if (vendor) size = align2(size) + 2 * n;
+        ensureCapacity(size);
+        ByteBuffer b = buf;
+        b.clear();
+
+        long newest = store.newestTimestampMicros() / 1000;
+        if (newest <= 0) newest = now;
+        b.putInt(MAGIC).putShort((short) VERSION).putShort((short) flags);
+        b.putInt(n).putInt(store.size());
+        b.putDouble(bootEpoch + newest);
+        b.putInt((int) Math.max(0L, now - newest));
+        b.putInt(dictSize);
+
+        if (ages) {
+            for (int i = 0; i < n; i++) {
+                long seen = store.timestampMicros(selected[i]) / 1000;
+                if (seen <= 0) seen = now;
+                b.putInt((int) Math.min(Integer.MAX_VALUE, Math.max(0L, now - seen)));
+            }
+        }
+        if (stats) {
+            synchronized (signal) {
+                int base = b.position();
+                for (int i = 0; i < n; i++) {
+                    int sig = signal.indexOf(store.bssid(selected[i]));
+                    float smoothed = Float.NaN, variance = Float.NaN, trend = Float.NaN;
+                    if (sig >= 0) {
+                        smoothed = (float) signal.smoothed(sig);
+                        variance = (float) signal.variance(sig);
+                        trend = (float) signal.trend(sig);
+                    }
+                    b.putFloat(base + 4 * i, smoothed);
+                    b.putFloat(base + 4 * (n + i), variance);
+                    b.putFloat(base + 4 * (2 * n + i), trend);
+                }
+                b.position(base + 12 * n);
+            }
+        }
+        for (int i = 0; i < n; i++) b.putShort((short) store.frequency(selected[i]));
+        for (int i = 0; i < n; i++) b.putShort((short) WifiChannels.channelOf(store.frequency(selected[i])));
+        for (int i = 0; i < n; i++) b.putShort((short) ssidIndex[i]);
+        if (width) {
+            for (int i = 0; i < n; i++) b.putShort((short) store.centerFreq0(selected[i]));
+            for (int i = 0; i < n; i++) b.putShort((short) store.centerFreq1(selected[i]));
+        }
+        for (int i = 0; i < n; i++) b.put((byte) Math.max(-128, Math.min(127, store.rssi(selected[i]))));
+        if (width) {
+            for (int i = 0; i < n; i++) b.put((byte) store.channelWidth(selected[i]));
+        }
+        for (int i = 0; i < n; i++) {
+            long mac = store.bssid(selected[i]);
+            for (int k = 5; k >= 0; k--) b.put((byte) (mac >>> (8 * k)));
+        }
+        while ((b.position() & 3) != 0) b.put((byte) 0);
+
+        int offset = 0;
+        b.putInt(0);
+        for (int d = 0; d < dictSize; d++) {
+            offset += ssidBytes[d].length;
+            b.putInt(offset);
+        }
+        for (int d = 0; d < dictSize; d++) b.put(ssidBytes[d]);
+        if (vendor) {
+            if ((b.position() & 1) != 0) b.put((byte) 0);
+            for (int i = 0; i < n; i++) b.putShort((short) vendorIndex[i]);
+        }
+        return b.position();
+    }
+
+    byte[] buffer() {
+        return buf.array();
+    }
+
+    /* ---------------- internes ---------------- */
+
+    private void resetDictionary(int n) {
+        if (ssidIndex.length < n) {
+            ssidIndex = new int[Math.max(n, ssidIndex.length * 2)];
+            vendorIndex = new int[ssidIndex.length];
+        }
+        // SSID et fabricants : au plus 2n chaînes distinctes
+        int tableSize = Integer.highestOneBit(Math.max(16, 2 * n) - 1) << 2;
+        if (dictKeys.length < tableSize) {
+            dictKeys = new String[tableSize];
+            dictValues = new int[tableSize];
+        } else {
+            Arrays.fill(dictKeys, null);
+        }
+        Arrays.fill(dict, 0, dictSize, null);
+        Arrays.fill(ssidBytes, 0, dictSize, null);
+        dictSize = 0;
+    }
+
+    private int intern(String ssid) {
+        int mask = dictKeys.length - 1;
+        int i = ssid.hashCode() * 0x9E3779B9 & mask;
+        String cur;
+        while ((cur = dictKeys[i]) != null) {
+            if (cur == ssid || cur.equals(ssid)) return dictValues[i];
+            i = (i + 1) & mask;
+        }
+        if (dictSize == MAX_DICTIONARY) {
+            throw new IllegalStateException("binary format supports at most " + MAX_DICTIONARY + " distinct strings");
+        }
+        if (dictSize == dict.length) {
+            dict = Arrays.copyOf(dict, dictSize * 2);
+            ssidBytes = Arrays.copyOf(ssidBytes, dictSize * 2);
+        }
+        dictKeys[i] = ssid;
+        dictValues[i] = dictSize;
+        dict[dictSize] = ssid;
+        return dictSize++;
+    }
+
+    private void ensureCapacity(int size) {
+        if (buf.capacity() >= size) return;
+        buf = ByteBuffer.allocate(Math.max(size, buf.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int align4(int v) {
+        return (v + 3) & ~3;
+    }
+
+    private static int align2(int v) {
+        return (v + 1) & ~1;
+    }
+}
@@ -0,0 +1,162 @@
+package com.derf.wifiscanner;
+
+/**
+ * File bornée des scans collectés en arrière-plan, en enregistrements compacts : par AP un MAC
+ * packé, un RSSI sur 8 bits, une fréquence sur 16 bits et une référence vers le SSID interné.
+ * <p>
+ * Deux anneaux de tableaux primitifs : les scans (date, début, nombre d'AP) et leurs entrées.
+ * Quand l'un des deux est plein, les scans les plus anciens sont évincés et comptés dans
+ * {@link #dropped()}. Thread-safe.
+ */
+final class ScanBuffer {
+
+    /** Parcours des scans vidés par {@link #drain}. */
+    interface Visitor {
+        void onScan(long epochMs, int count);
+        void onEntry(long bssid, String ssid, int rssi, int frequency);
+    }
+
+    private final int maxScans;
+    private final int maxEntries;
+
+    // Scans (anneau)
+    private final long[] scanTime;
+    private final int[] scanStart;
+    private final int[] scanCount;
+    private int scanHead = 0;
+    private int scans = 0;
+
+    // Entrées (anneau)
+    private final long[] bssid;
+    private final String[] ssid;
+    private final byte[] rssi;
+    private final short[] frequency;
+    private int entryTail = 0;
+    private int entries = 0;
+
+    private long dropped = 0L;
+
+    ScanBuffer(int maxScans, int maxEntries) {
+        this.maxScans = Math.max(1, maxScans);
+        this.maxEntries = Math.max(1, maxEntries);
+        scanTime = new long[this.maxScans];
+        scanStart = new int[this.maxScans];
+        scanCount = new int[this.maxScans];
+        bssid = new long[this.maxEntries];
+        ssid = new String[this.maxEntries];
+        rssi = new byte[this.maxEntries];
+        frequency = new short[this.maxEntries];
+    }
+
+    /** Ajoute un scan (au plus {@code maxEntries} AP), en évinçant les plus anciens si besoin. */
+    synchronized void add(ScanSnapshotStore snapshot, long epochMs) {
+        int n = Math.min(snapshot.size(), maxEntries);
+        while (scans > 0 && (scans == maxScans || maxEntries - entries < n)) evictOldest();
+
+        int slot = (scanHead + scans) % maxScans;
+        scanTime[slot] = epochMs;
+        scanStart[slot] = entryTail;
+        scanCount[slot] = n;
+        scans++;
+        for (int i = 0; i < n; i++) {
+            int e = entryTail;
+            bssid[e] = snapshot.bssid(i);
+            ssid[e] = snapshot.ssid(i);
+            rssi[e] = (byte) Math.max(-128, Math.min(127, snapshot.rssi(i)));
+            frequency[e] = (short) snapshot.frequency(i);
+            entryTail = (e + 1) % maxEntries;
+        }
+        entries += n;
+    }
+
+    /**
+     * Retire et parcourt au plus {@code maxBatch} scans, du plus ancien au plus récent.
+     * @return le nombre de scans vidés
+     */
+    synchronized int drain(int maxBatch, Visitor visitor) {
+        int drained = 0;
+        while (scans > 0 && drained < maxBatch) {
+            int slot = scanHead;
+            int start = scanStart[slot];
+            int n = scanCount[slot];
+            visitor.onScan(scanTime[slot], n);
+            for (int i = 0; i < n; i++) {
+                int e = (start + i) % maxEntries;
+                visitor.onEntry(bssid[e], ssid[e], rssi[e], frequency[e] & 0xFFFF);
+            }
+            removeOldest();
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * File de nouvelles capacités reprenant les scans les plus récents qui y tiennent ; les plus
+     * anciens comptent dans {@link #dropped()}. Cette file est vidée au passage : un drain
+     * concurrent sur l'ancienne référence ne peut pas livrer deux fois le même scan.
+     */
+    synchronized ScanBuffer resize(int newMaxScans, int newMaxEntries) {
+        ScanBuffer b = new ScanBuffer(newMaxScans, newMaxEntries);
+        int keep = 0;
+        int keptEntries = 0;
+        while (keep < scans && keep < b.maxScans) {
+            int n = scanCount[(scanHead + scans - 1 - keep) % maxScans];
+            if (keptEntries + n > b.maxEntries) break;
+            keptEntries += n;
+            keep++;
+        }
+        for (int k = scans - keep; k < scans; k++) {
+            int slot = (scanHead + k) % maxScans;
+            int start = scanStart[slot];
+            int n = scanCount[slot];
+            int to = (b.scanHead + b.scans) % b.maxScans;
+            b.scanTime[to] = scanTime[slot];
+            b.scanStart[to] = b.entryTail;
+            b.scanCount[to] = n;
+            b.scans++;
+            for (int i = 0; i < n; i++) {
+                int e = (start + i) % maxEntries;
+                int d = b.entryTail;
+                b.bssid[d] = bssid[e];
+                b.ssid[d] = ssid[e];
+                b.rssi[d] = rssi[e];
+                b.frequency[d] = frequency[e];
+                b.entryTail = (d + 1) % b.maxEntries;
+            }
+            b.entries += n;
+        }
+        b.dropped = dropped + (scans - keep);
+        clear();
+        return b;
+    }
+
+    synchronized int size() {
+        return scans;
+    }
+
+    /** Scans évincés faute de place depuis le dernier {@link #clear()}. */
+    synchronized long dropped() {
+        return dropped;
+    }
+
+    synchronized void clear() {
+        while (scans > 0) removeOldest();
+        dropped = 0L;
+    }
+
+    /* ---------------- internes ---------------- */
+
+    private void evictOldest() {
+        removeOldest();
+        dropped++;
+    }
+
+    private void removeOldest() {
+        int slot = scanHead;
+        int start = scanStart[slot];
+        for (int i = 0; i < scanCount[slot]; i++) ssid[(start + i) % maxEntries] = null;
+        entries -= scanCount[slot];
+        scanHead = (scanHead + 1) % maxScans;
+        scans--;
+    }
+}
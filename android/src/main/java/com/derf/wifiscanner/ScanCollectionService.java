@@ -0,0 +1,89 @@
+package com.derf.wifiscanner;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+
+/**
+ * Service de premier plan (type "location") qui garde la collecte de {@link BackgroundCollector}
+ * active écran éteint ou application en arrière-plan.
+ */
+public class ScanCollectionService extends Service {
+
+    private static final String TAG = "ScanCollectionService";
+
+    static final String EXTRA_INTERVAL_MS = "intervalMs";
+    static final String EXTRA_MODE = "mode";
+    static final String EXTRA_MAX_SCANS = "maxBufferedScans";
+    static final String EXTRA_TITLE = "notificationTitle";
+    static final String EXTRA_TEXT = "notificationText";
+
+    private static final String CHANNEL_ID = "wifi_scan_collection";
+    private static final int NOTIFICATION_ID = 0x57494649; // "WIFI"
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent == null) {
+            // Redémarrage après kill du process : pas de configuration, on s'arrête
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        try {
+            ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(intent),
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION : 0);
+        } catch (Throwable t) {
+            // Android 12+ : démarrage refusé hors premier plan, ou permission manquante
+            Log.e(TAG, "startForeground failed", t);
+            BackgroundCollector.get(this).reportError("Unable to start foreground service: " + t.getMessage());
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        BackgroundCollector.get(this).start(
+            intent.getLongExtra(EXTRA_INTERVAL_MS, 60_000L),
+            intent.getIntExtra(EXTRA_MODE, WifiScanner.MODE_HYBRID),
+            intent.getIntExtra(EXTRA_MAX_SCANS, BackgroundCollector.DEFAULT_MAX_SCANS));
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        BackgroundCollector.get(this).stop();
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private Notification buildNotification(Intent intent) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager nm = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            if (nm != null) {
+                NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Wi-Fi scan collection", NotificationManager.IMPORTANCE_LOW);
+                channel.setShowBadge(false);
+                nm.createNotificationChannel(channel);
+            }
+        }
+        String title = intent.getStringExtra(EXTRA_TITLE);
+        String text = intent.getStringExtra(EXTRA_TEXT);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+            .setContentTitle(title != null ? title : "Wi-Fi scan")
+            .setContentText(text != null ? text : "Collecting Wi-Fi scans in background")
+            .setSmallIcon(getApplicationInfo().icon)
+            .setOngoing(true)
+            .setOnlyAlertOnce(true)
+            .setPriority(NotificationCompat.PRIORITY_LOW)
+            .build();
+    }
+}
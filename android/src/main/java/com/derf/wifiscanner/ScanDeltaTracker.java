@@ -0,0 +1,102 @@
+package com.derf.wifiscanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Garde le dernier état émis vers JS (par BSSID) et calcule les deltas entre deux scans.
+ * Une entrée est "changed" si le RSSI a bougé d'au moins {@code rssiThreshold} dBm (au moins 1)
+ * depuis la dernière valeur émise, ou si la fréquence / largeur de canal a changé.
+ */
+class ScanDeltaTracker {
+
+    static final int DEFAULT_RSSI_THRESHOLD = 5;
+
+    /** Slots {@code added}/{@code changed} relatifs au store passé à {@link #update}. */
+    static final class Delta {
+        long sequence;
+        final boolean full;
+        final int[] added;
+        int addedCount;
+        final int[] changed;
+        int changedCount;
+        final List<String> removed = new ArrayList<>();
+        int total;
+
+        Delta(boolean full, int capacity) {
+            this.full = full;
+            this.added = new int[capacity];
+            this.changed = new int[capacity];
+        }
+
+        boolean isEmpty() {
+            return addedCount == 0 && changedCount == 0 && removed.isEmpty();
+        }
+    }
+
+    private final int rssiThreshold;
+    // Dernière valeur émise par BSSID (référence pour le seuil RSSI), double buffer
+    private ScanSnapshotStore emitted;
+    private ScanSnapshotStore spare;
+    private long sequence = 0L;
+    private boolean needsFull = true;
+
+    ScanDeltaTracker(SsidPool ssidPool, int rssiThreshold) {
+        // 0 signifierait "toujours changé" : le plus petit seuil utile est 1 dBm
+        this.rssiThreshold = Math.max(1, rssiThreshold);
+        this.emitted = new ScanSnapshotStore(ssidPool);
+        this.spare = new ScanSnapshotStore(ssidPool);
+    }
+
+    synchronized Delta update(ScanSnapshotStore current) {
+        int n = current.size();
+        Delta delta = new Delta(needsFull, n);
+        ScanSnapshotStore next = spare;
+        next.clear();
+
+        for (int slot = 0; slot < n; slot++) {
+            int prev = needsFull ? -1 : emitted.indexOf(current.bssid(slot));
+            if (prev < 0) {
+                delta.added[delta.addedCount++] = slot;
+                next.copyFrom(current, slot);
+            } else if (hasChanged(emitted, prev, current, slot)) {
+                delta.changed[delta.changedCount++] = slot;
+                next.copyFrom(current, slot);
+            } else {
+                // Sous le seuil : on garde la référence pour que la dérive lente finisse par sortir
+                next.copyFrom(emitted, prev);
+            }
+        }
+        if (!needsFull) {
+            for (int slot = 0, m = emitted.size(); slot < m; slot++) {
+                if (current.indexOf(emitted.bssid(slot)) < 0) delta.removed.add(emitted.bssidText(slot));
+            }
+        }
+
+        spare = emitted;
+        emitted = next;
+        delta.total = next.size();
+        // Un delta vide n'est pas émis : il ne consomme pas de numéro de séquence
+        if (needsFull || !delta.isEmpty()) delta.sequence = ++sequence;
+        else delta.sequence = sequence;
+        needsFull = false;
+        return delta;
+    }
+
+    /** État de référence courant (ce que JS doit avoir après application du dernier delta). */
+    synchronized ScanSnapshotStore snapshot() {
+        return emitted;
+    }
+
+    synchronized long sequence() {
+        return sequence;
+    }
+
+    private boolean hasChanged(ScanSnapshotStore prev, int p, ScanSnapshotStore cur, int c) {
+        return Math.abs(cur.rssi(c) - prev.rssi(p)) >= rssiThreshold
+            || cur.frequency(c) != prev.frequency(p)
+            || cur.channelWidth(c) != prev.channelWidth(p)
+            || cur.centerFreq0(c) != prev.centerFreq0(p)
+            || cur.centerFreq1(c) != prev.centerFreq1(p);
+    }
+}
@@ -0,0 +1,352 @@
+package com.derf.wifiscanner;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Historique des scans en append-only, sur des segments de fichiers mappés en mémoire.
+ * <p>
+ * Chaque segment ({@code 00000042.seg}) commence par un en-tête de {@link #HEADER_SIZE} octets
+ * suivi d'enregistrements de largeur fixe ({@link #RECORD_SIZE} octets, un par AP et par scan),
+ * dans l'ordre d'écriture. L'heure de scan est l'heure murale : elle croît d'ordinaire, mais une
+ * correction NTP ou un réglage manuel peut la faire reculer. L'en-tête garde donc les bornes min
+ * et max du segment et un drapeau « désordonné » posé au premier recul ; la recherche
+ * dichotomique et l'arrêt anticipé ne servent que sur les segments ordonnés. Le compteur de
+ * l'en-tête n'est mis à jour qu'après écriture des enregistrements : il sert de marqueur de
+ * commit. Quand un segment est plein on en ouvre un nouveau, et les plus anciens sont supprimés
+ * au-delà de la taille max.
+ * <p>
+ * Layout d'un enregistrement (big-endian) :
+ * <pre>
+ *  0  long  heure du scan (epoch ms)
+ *  8  long  BSSID (MAC 48 bits)
+ * 16  int   âge de l'observation au moment du scan (ms)
+ * 20  short fréquence (MHz)
+ * 22  short centerFreq0
+ * 24  short centerFreq1
+ * 26  byte  RSSI (dBm)
+ * 27  byte  channelWidth
+ * 28  byte  longueur SSID (octets UTF-8, max 32)
+ * 29  32 o. SSID
+ * 61  3 o.  réservé
+ * </pre>
+ */
+final class ScanHistoryStore implements Closeable {
+
+    static final int RECORD_SIZE = 64;
+    static final int HEADER_SIZE = 64;
+    static final int MAX_SSID_BYTES = 32;
+
+    // Bornes de configuration : segments mappés d'un bloc, nombre de segments en int
+    static final long MIN_SEGMENT_BYTES = 64L * 1024;
+    static final long MAX_SEGMENT_BYTES = 256L * 1024 * 1024;
+    static final long MAX_TOTAL_BYTES = 4L * 1024 * 1024 * 1024;
+
+    private static final int MAGIC = 0x57534831; // "WSH1"
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".seg";
+
+    // En-tête
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_RECORD_SIZE = 8;
+    private static final int H_COUNT = 12;
+    private static final int H_MIN_TIME = 16;
+    private static final int H_MAX_TIME = 24;
+    private static final int H_FLAGS = 32;
+    // Une heure de scan plus ancienne que le max du segment y a été écrite
+    private static final int FLAG_UNORDERED = 1;
+
+    // Enregistrement
+    private static final int R_SCAN_TIME = 0;
+    private static final int R_BSSID = 8;
+    private static final int R_AGE = 16;
+    private static final int R_FREQ = 20;
+    private static final int R_CF0 = 22;
+    private static final int R_CF1 = 24;
+    private static final int R_RSSI = 26;
+    private static final int R_WIDTH = 27;
+    private static final int R_SSID_LEN = 28;
+    private static final int R_SSID = 29;
+
+    /** Reçoit les enregistrements d'une requête ; lire via les accesseurs statiques. */
+    interface RecordVisitor {
+        void onRecord(ByteBuffer segment, int offset);
+    }
+
+    private final File dir;
+    private final int recordsPerSegment;
+    private final long segmentBytes;
+    private final int maxSegments;
+
+    // Ids des segments présents, croissants
+    private int[] segmentIds = new int[0];
+    private MappedByteBuffer current;
+    private int currentId = -1;
+    private int currentCount = 0;
+    // Fermé (historique rouvert avec une autre config) : les écritures tardives sont ignorées
+    private boolean closed = false;
+
+    // SSID déjà encodés (les SSID viennent du SsidPool : identité stable)
+    private final Map<String, byte[]> ssidBytes = new IdentityHashMap<>();
+
+    /** @throws IllegalArgumentException si la config sort des bornes ({@link #checkConfig}) */
+    ScanHistoryStore(File dir, long maxBytes, long segmentBytes) throws IOException {
+        String invalid = checkConfig(maxBytes, segmentBytes);
+        if (invalid != null) throw new IllegalArgumentException(invalid);
+        this.dir = dir;
+        this.recordsPerSegment = (int) Math.max(1, (segmentBytes - HEADER_SIZE) / RECORD_SIZE);
+        this.segmentBytes = HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE;
+        this.maxSegments = (int) Math.max(2, maxBytes / this.segmentBytes);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        loadSegments();
+    }
+
+    /** @return le motif si la config est hors bornes, sinon null */
+    static String checkConfig(long maxBytes, long segmentBytes) {
+        if (segmentBytes < MIN_SEGMENT_BYTES || segmentBytes > MAX_SEGMENT_BYTES) {
+            return "segmentBytes must be between " + MIN_SEGMENT_BYTES + " and " + MAX_SEGMENT_BYTES;
+        }
+        if (maxBytes < segmentBytes || maxBytes > MAX_TOTAL_BYTES) {
+            return "maxBytes must be between segmentBytes and " + MAX_TOTAL_BYTES;
+        }
+        return null;
+    }
+
+    /**
+     * Ajoute une ligne par AP du snapshot.
+     * @param scanTimeMs heure du scan (epoch ms)
+     * @param nowElapsedMs {@code SystemClock.elapsedRealtime()} au même instant, pour les âges
+     */
+    synchronized int append(ScanSnapshotStore snapshot, long scanTimeMs, long nowElapsedMs) throws IOException {
+        if (closed) return 0;
+        int n = snapshot.size();
+        for (int slot = 0; slot < n; slot++) {
+            if (current == null || currentCount == recordsPerSegment) rotate();
+            int off = HEADER_SIZE + currentCount * RECORD_SIZE;
+            long seen = snapshot.timestampMicros(slot) / 1000;
+            int age = seen > 0 ? (int) Math.min(Integer.MAX_VALUE, Math.max(0L, nowElapsedMs - seen)) : 0;
+            byte[] ssid = encodeSsid(snapshot.ssid(slot));
+
+            current.putLong(off + R_SCAN_TIME, scanTimeMs);
+            current.putLong(off + R_BSSID, snapshot.bssid(slot));
+            current.putInt(off + R_AGE, age);
+            current.putShort(off + R_FREQ, (short) snapshot.frequency(slot));
+            current.putShort(off + R_CF0, (short) snapshot.centerFreq0(slot));
+            current.putShort(off + R_CF1, (short) snapshot.centerFreq1(slot));
+            current.put(off + R_RSSI, (byte) Math.max(-128, Math.min(127, snapshot.rssi(slot))));
+            current.put(off + R_WIDTH, (byte) snapshot.channelWidth(slot));
+            current.put(off + R_SSID_LEN, (byte) ssid.length);
+            for (int i = 0; i < ssid.length; i++) current.put(off + R_SSID + i, ssid[i]);
+
+            if (currentCount == 0) {
+                current.putLong(H_MIN_TIME, scanTimeMs);
+                current.putLong(H_MAX_TIME, scanTimeMs);
+            } else if (scanTimeMs < current.getLong(H_MAX_TIME)) {
+                // L'horloge murale a reculé : plus de dichotomie dans ce segment
+                current.putInt(H_FLAGS, current.getInt(H_FLAGS) | FLAG_UNORDERED);
+                current.putLong(H_MIN_TIME, Math.min(current.getLong(H_MIN_TIME), scanTimeMs));
+            } else {
+                current.putLong(H_MAX_TIME, scanTimeMs);
+            }
+            // Commit : le compteur est écrit en dernier
+            current.putInt(H_COUNT, ++currentCount);
+        }
+        return n;
+    }
+
+    /**
+     * Parcourt les enregistrements {@code from <= heure de scan <= to}, dans l'ordre d'écriture,
+     * filtrés par BSSID si {@code sortedBssids} est non null (tableau trié), au plus {@code limit}.
+     * Chaque segment est borné par son min/max ; seuls les segments ordonnés sont parcourus par
+     * dichotomie et abandonnés au premier enregistrement après {@code to}.
+     *
+     * @param cursor position de reprise renvoyée par l'appel précédent, ou -1
+     * @return le curseur de la page suivante, ou -1 si la requête est épuisée
+     */
+    synchronized long query(long from, long to, long[] sortedBssids, int limit, long cursor,
+                            RecordVisitor visitor) throws IOException {
+        int startSeg = cursor >= 0 ? (int) (cursor >>> 32) : Integer.MIN_VALUE;
+        int startIdx = cursor >= 0 ? (int) cursor : -1;
+        int matched = 0;
+
+        for (int id : segmentIds) {
+            if (id < startSeg) continue;
+            ByteBuffer seg = id == currentId ? current.duplicate() : mapReadOnly(id);
+            if (seg == null) continue;
+            int count = seg.getInt(H_COUNT);
+            // Un segment postérieur peut être plus ancien (horloge reculée) : pas d'arrêt global
+            if (count == 0 || seg.getLong(H_MAX_TIME) < from || seg.getLong(H_MIN_TIME) > to) continue;
+            boolean ordered = (seg.getInt(H_FLAGS) & FLAG_UNORDERED) == 0;
+
+            int i = id == startSeg && startIdx >= 0 ? startIdx : ordered ? lowerBound(seg, count, from) : 0;
+            for (; i < count; i++) {
+                int off = HEADER_SIZE + i * RECORD_SIZE;
+                long time = seg.getLong(off + R_SCAN_TIME);
+                if (time > to) {
+                    if (ordered) break;
+                    continue;
+                }
+                if (time < from) continue;
+                if (sortedBssids != null && Arrays.binarySearch(sortedBssids, seg.getLong(off + R_BSSID)) < 0) continue;
+                if (matched == limit) return ((long) id << 32) | i;
+                visitor.onRecord(seg, off);
+                matched++;
+            }
+        }
+        return -1;
+    }
+
+    synchronized void clear() throws IOException {
+        current = null;
+        currentId = -1;
+        currentCount = 0;
+        for (int id : segmentIds) deleteSegment(id);
+        segmentIds = new int[0];
+    }
+
+    synchronized long sizeBytes() {
+        return (long) segmentIds.length * segmentBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (current != null) current.force();
+        current = null;
+        currentId = -1;
+    }
+
+    /* ---------------- Accesseurs d'enregistrement ---------------- */
+
+    static long scanTime(ByteBuffer b, int off) { return b.getLong(off + R_SCAN_TIME); }
+    static long bssid(ByteBuffer b, int off) { return b.getLong(off + R_BSSID); }
+    static int ageMs(ByteBuffer b, int off) { return b.getInt(off + R_AGE); }
+    static int frequency(ByteBuffer b, int off) { return b.getShort(off + R_FREQ) & 0xFFFF; }
+    static int centerFreq0(ByteBuffer b, int off) { return b.getShort(off + R_CF0) & 0xFFFF; }
+    static int centerFreq1(ByteBuffer b, int off) { return b.getShort(off + R_CF1) & 0xFFFF; }
+    static int rssi(ByteBuffer b, int off) { return b.get(off + R_RSSI); }
+    static int channelWidth(ByteBuffer b, int off) { return b.get(off + R_WIDTH); }
+
+    static String ssid(ByteBuffer b, int off) {
+        int len = Math.min(MAX_SSID_BYTES, b.get(off + R_SSID_LEN) & 0xFF);
+        if (len == 0) return "";
+        byte[] raw = new byte[len];
+        for (int i = 0; i < len; i++) raw[i] = b.get(off + R_SSID + i);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    /* ---------------- internes ---------------- */
+
+    private void loadSegments() throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        int[] ids = new int[files == null ? 0 : files.length];
+        int n = 0;
+        if (files != null) {
+            for (File f : files) {
+                try {
+                    ids[n++] = Integer.parseInt(f.getName().substring(0, f.getName().length() - SUFFIX.length()));
+                } catch (NumberFormatException ignored) {
+                    // Fichier étranger : ignoré
+                }
+            }
+        }
+        segmentIds = Arrays.copyOf(ids, n);
+        Arrays.sort(segmentIds);
+        if (n == 0) return;
+
+        // On reprend l'écriture dans le dernier segment s'il est valide et non plein ; un segment
+        // d'une autre taille (config changée) n'est pas redimensionné, il reste en lecture seule
+        int last = segmentIds[n - 1];
+        if (segmentFile(last).length() != segmentBytes) return;
+        MappedByteBuffer buf = map(last, FileChannel.MapMode.READ_WRITE);
+        if (buf != null && buf.getInt(H_MAGIC) == MAGIC && buf.getInt(H_RECORD_SIZE) == RECORD_SIZE
+            && buf.capacity() == segmentBytes) {
+            current = buf;
+            currentId = last;
+            currentCount = Math.min(buf.getInt(H_COUNT), recordsPerSegment);
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (current != null) current.force();
+        int id = segmentIds.length == 0 ? 1 : segmentIds[segmentIds.length - 1] + 1;
+        current = map(id, FileChannel.MapMode.READ_WRITE);
+        if (current == null) throw new IOException("Cannot map history segment " + id);
+        current.putInt(H_MAGIC, MAGIC);
+        current.putInt(H_VERSION, VERSION);
+        current.putInt(H_RECORD_SIZE, RECORD_SIZE);
+        current.putInt(H_COUNT, 0);
+        current.putInt(H_FLAGS, 0);
+        currentId = id;
+        currentCount = 0;
+
+        segmentIds = Arrays.copyOf(segmentIds, segmentIds.length + 1);
+        segmentIds[segmentIds.length - 1] = id;
+        // Rétention : on supprime les plus anciens au-delà de la taille max
+        int excess = segmentIds.length - maxSegments;
+        if (excess > 0) {
+            for (int i = 0; i < excess; i++) deleteSegment(segmentIds[i]);
+            segmentIds = Arrays.copyOfRange(segmentIds, excess, segmentIds.length);
+        }
+    }
+
+    private MappedByteBuffer map(int id, FileChannel.MapMode mode) throws IOException {
+        File f = segmentFile(id);
+        boolean rw = mode == FileChannel.MapMode.READ_WRITE;
+        if (!rw && !f.isFile()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(f, rw ? "rw" : "r")) {
+            long size = rw ? segmentBytes : raf.length();
+            if (rw && raf.length() != segmentBytes) raf.setLength(segmentBytes);
+            if (size < HEADER_SIZE) return null;
+            // Le mapping reste valide après fermeture du canal
+            return raf.getChannel().map(mode, 0, size);
+        }
+    }
+
+    private ByteBuffer mapReadOnly(int id) throws IOException {
+        MappedByteBuffer buf = map(id, FileChannel.MapMode.READ_ONLY);
+        if (buf == null || buf.getInt(H_MAGIC) != MAGIC || buf.getInt(H_RECORD_SIZE) != RECORD_SIZE) return null;
+        return buf;
+    }
+
+    private void deleteSegment(int id) {
+        File f = segmentFile(id);
+        if (f.exists() && !f.delete()) f.deleteOnExit();
+    }
+
+    private File segmentFile(int id) {
+        return new File(dir, String.format(Locale.ROOT, "%08d%s", id, SUFFIX));
+    }
+
+    /** Premier index dont l'heure de scan est >= from. */
+    private static int lowerBound(ByteBuffer seg, int count, long from) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (seg.getLong(HEADER_SIZE + mid * RECORD_SIZE + R_SCAN_TIME) < from) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private byte[] encodeSsid(String ssid) {
+        byte[] cached = ssidBytes.get(ssid);
+        if (cached != null) return cached;
+        byte[] raw = ssid.getBytes(StandardCharsets.UTF_8);
+        if (raw.length > MAX_SSID_BYTES) raw = Arrays.copyOf(raw, MAX_SSID_BYTES);
+        if (ssidBytes.size() >= 1024) ssidBytes.clear();
+        ssidBytes.put(ssid, raw);
+        return raw;
+    }
+}
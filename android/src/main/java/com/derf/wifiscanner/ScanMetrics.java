@@ -0,0 +1,150 @@
+package com.derf.wifiscanner;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Instrumentation du pipeline de scan : histogrammes de latence par étape et compteurs,
+ * sans verrou (tableaux atomiques), pour pouvoir être appelée à chaque scan.
+ */
+final class ScanMetrics {
+
+    // Étapes
+    static final int GUARDS = 0;      // gardes permissions / Wi-Fi / localisation
+    static final int BROADCAST = 1;   // startScan() accepté → broadcast reçu
+    static final int FETCH = 2;       // getScanResults()
+    static final int PROCESS = 3;     // dédup + traitements + sérialisation
+    static final int RESOLVE = 4;     // call.resolve() / notifyListeners()
+    static final int TOTAL = 5;       // appel scan() → résolution
+    static final String[] STAGE_NAMES = { "guards", "broadcast", "fetch", "process", "resolve", "total" };
+
+    // Compteurs
+    static final int SCANS = 0;       // scans radio acceptés par l'OS
+    static final int THROTTLED = 1;   // scans mis en file faute de budget
+    static final int REJECTED = 2;    // startScan() refusé par l'OS
+    static final int FAILED = 3;      // appels rejetés sur erreur de scan
+    static final int TIMED_OUT = 4;   // appels rejetés par leur watchdog
+    static final int COALESCED = 5;   // appels rattachés à un scan en cours
+    static final int CACHE_HITS = 6;  // appels servis par le cache maxAgeMs
+    static final int PASSIVE = 7;     // résultats frais issus d'un scan d'un tiers (sans coût radio)
+    static final int STALE = 8;       // appels servis par le cache OS à l'échéance ou sur erreur
+    static final String[] COUNTER_NAMES = {
+        "scans", "throttled", "rejected", "failed", "timedOut", "coalesced", "cacheHits", "passiveUpdates",
+        "staleFallbacks"
+    };
+
+    private final Histogram[] stages = new Histogram[STAGE_NAMES.length];
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+    private final Histogram resultSizes = new Histogram();
+    private final AtomicLong since = new AtomicLong(System.currentTimeMillis());
+
+    ScanMetrics() {
+        for (int i = 0; i < stages.length; i++) stages[i] = new Histogram();
+    }
+
+    void recordStage(int stage, long startNanos) {
+        stages[stage].record((System.nanoTime() - startNanos) / 1_000L);
+    }
+
+    void increment(int counter) {
+        counters.incrementAndGet(counter);
+    }
+
+    void recordResultSize(int size) {
+        resultSizes.record(size);
+    }
+
+    Histogram stage(int stage) {
+        return stages[stage];
+    }
+
+    long counter(int counter) {
+        return counters.get(counter);
+    }
+
+    Histogram resultSizes() {
+        return resultSizes;
+    }
+
+    long sinceMs() {
+        return since.get();
+    }
+
+    void reset() {
+        for (Histogram h : stages) h.reset();
+        for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+        resultSizes.reset();
+        since.set(System.currentTimeMillis());
+    }
+
+    /**
+     * Histogramme log-linéaire (4 sous-buckets par puissance de 2, erreur relative <= 25 %),
+     * valeurs entières positives (µs pour les latences).
+     */
+    static final class Histogram {
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = SUB_BUCKETS + 62 * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            long v = Math.max(0L, value);
+            buckets.incrementAndGet(indexOf(v));
+            count.incrementAndGet();
+            sum.addAndGet(v);
+            long m;
+            while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+                // course avec un autre enregistrement : on relit
+            }
+        }
+
+        long count() { return count.get(); }
+        long max() { return max.get(); }
+
+        double mean() {
+            long c = count.get();
+            return c == 0 ? 0 : (double) sum.get() / c;
+        }
+
+        /** Percentile approché (milieu du bucket), {@code p} dans [0, 1]. */
+        long percentile(double p) {
+            long c = count.get();
+            if (c == 0) return 0;
+            long rank = Math.max(1L, (long) Math.ceil(p * c));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    long lo = lowerBound(i);
+                    long hi = i + 1 < BUCKETS ? lowerBound(i + 1) : lo;
+                    return Math.min(max.get(), (lo + hi) / 2);
+                }
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        private static int indexOf(long v) {
+            if (v < SUB_BUCKETS) return (int) v;
+            int msb = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (msb - 2)) & (SUB_BUCKETS - 1);
+            return Math.min(BUCKETS - 1, SUB_BUCKETS + (msb - 2) * SUB_BUCKETS + sub);
+        }
+
+        private static long lowerBound(int index) {
+            if (index < SUB_BUCKETS) return index;
+            int msb = (index - SUB_BUCKETS) / SUB_BUCKETS + 2;
+            int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+            return (long) (SUB_BUCKETS + sub) << (msb - 2);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.derf.wifiscanner;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.PluginCall;
+
+import org.json.JSONException;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Filtre, projection et top-K évalués nativement sur un {@link ScanSnapshotStore}, avant toute
+ * construction de JSObject : seuls les AP et champs demandés traversent le bridge.
+ * <p>
+ * Options JS : {@code minRssi}, {@code bands} ("2.4", "5", "6"), {@code ssidPrefix},
+ * {@code ssidRegex}, {@code bssids}, {@code fields}, {@code limit} (les plus forts d'abord,
+ * via un tas borné plutôt qu'un tri complet), {@code channelAnalysis}, {@code format},
+ * {@code fingerprintMatches}.
+ */
+final class ScanQuery {
+
+    static final int MAX_FINGERPRINT_MATCHES = 100;
+
+    static final int BAND_2_4 = 1;
+    static final int BAND_5 = 1 << 1;
+    static final int BAND_6 = 1 << 2;
+
+    // Champs projetables
+    static final int F_SSID = 1;
+    static final int F_BSSID = 1 << 1;
+    static final int F_SIGNAL = 1 << 2;
+    static final int F_FREQUENCY = 1 << 3;
+    static final int F_CHANNEL = 1 << 4;
+    static final int F_TIMESTAMP = 1 << 5;
+    static final int F_AGE = 1 << 6;
+    static final int F_SMOOTHED = 1 << 7;
+    static final int F_WIDTH = 1 << 8;
+    static final int F_VENDOR = 1 << 9;
+    // Éléments 802.11, décodés seulement sur demande (hors FIELDS_ALL)
+    static final int F_SECURITY = 1 << 10;
+    static final int F_STANDARD = 1 << 11;
+    static final int F_BSS_LOAD = 1 << 12;
+    static final int F_COUNTRY = 1 << 13;
+    static final int F_VENDOR_ELEMENTS = 1 << 14;
+    static final int FIELDS_ELEMENTS = F_SECURITY | F_STANDARD | F_BSS_LOAD | F_COUNTRY | F_VENDOR_ELEMENTS;
+
+    /** Champs historiques de getLastScanResults(). */
+    static final int FIELDS_COMPACT = F_SSID | F_BSSID | F_SIGNAL | F_FREQUENCY | F_CHANNEL;
+    static final int FIELDS_ALL = (1 << 10) - 1;
+
+    private static final String[] FIELD_NAMES = {
+        "ssid", "bssid", "signalStrength", "frequency", "channel", "timestamp", "ageMs", "smoothedRssi",
+        "channelWidth", "vendor", "security", "wifiStandard", "bssLoad", "countryCode", "vendorElements"
+    };
+
+    int minRssi = Integer.MIN_VALUE;
+    int bands = 0;
+    String ssidPrefix;
+    private Matcher ssidMatcher;
+    long[] sortedBssids;
+    int fields = FIELDS_ALL;
+    int limit = 0;
+    // Ajoute l'analyse de congestion par canal (sur tout le snapshot, pas seulement la sélection)
+    boolean channelAnalysis = false;
+    // Réponse au format binaire colonnaire (ScanBinaryEncoder) au lieu de networks[]
+    boolean binary = false;
+    // k plus proches empreintes de référence (FingerprintIndex) à joindre, 0 = aucune
+    int fingerprintK = 0;
+
+    // Tas min borné (par RSSI) réutilisé d'une requête à l'autre
+    private int[] heap = new int[0];
+
+    /** Requête sans filtre, projection {@code fields}. */
+    static ScanQuery all(int fields) {
+        ScanQuery q = new ScanQuery();
+        q.fields = fields;
+        return q;
+    }
+
+    /** @return null si l'appel ne porte aucune option de requête */
+    static ScanQuery fromCall(PluginCall call, int defaultFields) throws JSONException {
+        ScanQuery q = new ScanQuery();
+        boolean any = false;
+        Integer minRssi = call.getInt("minRssi");
+        if (minRssi != null) {
+            q.minRssi = minRssi;
+            any = true;
+        }
+        JSArray bands = call.getArray("bands");
+        if (bands != null && bands.length() > 0) {
+            for (int i = 0; i < bands.length(); i++) q.bands |= parseBand(bands.getString(i));
+            any = true;
+        }
+        String prefix = call.getString("ssidPrefix");
+        if (prefix != null && !prefix.isEmpty()) {
+            q.ssidPrefix = prefix;
+            any = true;
+        }
+        String regex = call.getString("ssidRegex");
+        if (regex != null && !regex.isEmpty()) {
+            q.ssidMatcher = Pattern.compile(regex).matcher("");
+            any = true;
+        }
+        JSArray bssids = call.getArray("bssids");
+        if (bssids != null && bssids.length() > 0) {
+            long[] keys = new long[bssids.length()];
+            int n = 0;
+            for (int i = 0; i < bssids.length(); i++) {
+                long key = ScanSnapshotStore.parseBssid(bssids.getString(i));
+                if (key != ScanSnapshotStore.INVALID_BSSID) keys[n++] = key;
+            }
+            q.sortedBssids = Arrays.copyOf(keys, n);
+            Arrays.sort(q.sortedBssids);
+            any = true;
+        }
+        JSArray fields = call.getArray("fields");
+        q.fields = defaultFields;
+        if (fields != null && fields.length() > 0) {
+            q.fields = 0;
+            for (int i = 0; i < fields.length(); i++) q.fields |= parseField(fields.getString(i));
+            any = true;
+        }
+        Integer limit = call.getInt("limit");
+        if (limit != null && limit > 0) {
+            q.limit = limit;
+            any = true;
+        }
+        String format = call.getString("format");
+        if (format != null && !"json".equals(format)) {
+            if (!"binary".equals(format)) throw new IllegalArgumentException("Unknown format: " + format);
+            q.binary = true;
+            any = true;
+        }
+        if (call.getBoolean("channelAnalysis", false)) {
+            q.channelAnalysis = true;
+            any = true;
+        }
+        Integer fingerprintK = call.getInt("fingerprintMatches");
+        if (fingerprintK != null && fingerprintK > 0) {
+            q.fingerprintK = Math.min(fingerprintK, MAX_FINGERPRINT_MATCHES);
+            any = true;
+        }
+        return any ? q : null;
+    }
+
+    /** Copie avec une autre projection ; matcher et tas propres à la copie, filtres partagés. */
+    ScanQuery withFields(int fields) {
+        ScanQuery q = new ScanQuery();
+        q.minRssi = minRssi;
+        q.bands = bands;
+        q.ssidPrefix = ssidPrefix;
+        if (ssidMatcher != null) q.ssidMatcher = ssidMatcher.pattern().matcher("");
+        q.sortedBssids = sortedBssids;
+        q.fields = fields;
+        q.limit = limit;
+        q.channelAnalysis = channelAnalysis;
+        q.binary = binary;
+        q.fingerprintK = fingerprintK;
+        return q;
+    }
+
+    boolean has(int field) {
+        return (fields & field) != 0;
+    }
+
+    boolean hasFilter() {
+        return minRssi != Integer.MIN_VALUE || bands != 0 || ssidPrefix != null
+            || ssidMatcher != null || sortedBssids != null || limit > 0;
+    }
+
+    boolean matches(ScanSnapshotStore store, int slot) {
+        if (store.rssi(slot) < minRssi) return false;
+        if (bands != 0 && (bandOf(store.frequency(slot)) & bands) == 0) return false;
+        if (sortedBssids != null && Arrays.binarySearch(sortedBssids, store.bssid(slot)) < 0) return false;
+        String ssid = store.ssid(slot);
+        if (ssidPrefix != null && !ssid.startsWith(ssidPrefix)) return false;
+        return ssidMatcher == null || ssidMatcher.reset(ssid).find();
+    }
+
+    /**
+     * Sélectionne les slots à renvoyer dans {@code out} (taille >= store.size()).
+     * Avec {@code limit}, ne garde que les plus forts, triés du plus fort au plus faible.
+     * Non réentrant : l'appelant détient le verrou du store.
+     * @return le nombre de slots écrits
+     */
+    int select(ScanSnapshotStore store, int[] out) {
+        int n = store.size();
+        if (limit <= 0) {
+            int count = 0;
+            for (int slot = 0; slot < n; slot++) if (matches(store, slot)) out[count++] = slot;
+            return count;
+        }
+
+        int k = Math.min(limit, n);
+        if (heap.length < k) heap = new int[k];
+        int size = 0;
+        for (int slot = 0; slot < n; slot++) {
+            if (!matches(store, slot)) continue;
+            if (size < k) {
+                heap[size] = slot;
+                siftUp(store, size++);
+            } else if (store.rssi(slot) > store.rssi(heap[0])) {
+                heap[0] = slot;
+                siftDown(store, 0, size);
+            }
+        }
+        // Tri par tas en place : extraire le min vers la fin donne un ordre décroissant
+        for (int end = size - 1; end > 0; end--) {
+            int tmp = heap[0];
+            heap[0] = heap[end];
+            heap[end] = tmp;
+            siftDown(store, 0, end);
+        }
+        System.arraycopy(heap, 0, out, 0, size);
+        return size;
+    }
+
+    static int bandOf(int freqMhz) {
+        return WifiChannels.bandOf(freqMhz);
+    }
+
+    /* ---------------- internes ---------------- */
+
+    private void siftUp(ScanSnapshotStore store, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (store.rssi(heap[parent]) <= store.rssi(heap[i])) return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(ScanSnapshotStore store, int i, int size) {
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= size) return;
+            int m = l + 1 < size && store.rssi(heap[l + 1]) < store.rssi(heap[l]) ? l + 1 : l;
+            if (store.rssi(heap[i]) <= store.rssi(heap[m])) return;
+            swap(i, m);
+            i = m;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int t = heap[a];
+        heap[a] = heap[b];
+        heap[b] = t;
+    }
+
+    private static int parseBand(String band) {
+        if (band == null) return 0;
+        switch (band.trim().toLowerCase(Locale.ROOT).replace("ghz", "")) {
+            case "2.4":
+            case "2":
+                return BAND_2_4;
+            case "5":
+                return BAND_5;
+            case "6":
+                return BAND_6;
+            default:
+                throw new IllegalArgumentException("Unknown band: " + band);
+        }
+    }
+
+    private static int parseField(String name) {
+        // centerFreq0/1 et channelWidth forment un seul groupe
+        if ("centerFreq0".equals(name) || "centerFreq1".equals(name)) return F_WIDTH;
+        if ("rssiVariance".equals(name) || "rssiTrend".equals(name)) return F_SMOOTHED;
+        if ("wifiGeneration".equals(name)) return F_STANDARD;
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            if (FIELD_NAMES[i].equals(name)) return 1 << i;
+        }
+        throw new IllegalArgumentException("Unknown field: " + name);
+    }
+}
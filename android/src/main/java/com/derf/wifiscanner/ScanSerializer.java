@@ -0,0 +1,269 @@
+package com.derf.wifiscanner;
+
+import android.net.wifi.ScanResult;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Base64;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+/**
+ * Sérialisation des snapshots vers JS (réponses de scan, deltas, analyse de canaux, empreintes),
+ * séparée du plugin pour être exercée et mesurée hors appareil.
+ * <p>
+ * Chaque composant réutilisé (encodeur binaire, analyseur, résultats k-NN) est utilisé sous son
+ * propre verrou ; l'appelant détient celui du store sérialisé.
+ */
+final class ScanSerializer {
+
+    // Requêtes sans filtre ni limit : sans état, partageables
+    static final ScanQuery QUERY_FULL = ScanQuery.all(ScanQuery.FIELDS_ALL);
+    static final ScanQuery QUERY_COMPACT = ScanQuery.all(ScanQuery.FIELDS_COMPACT);
+
+    private final SignalTracker signalTracker;
+    private final FingerprintIndex fingerprintIndex;
+    private final OuiIndex ouiIndex;
+    // Occupation / congestion par canal (tableaux réutilisés, sous son propre verrou)
+    private final ChannelAnalyzer channelAnalyzer = new ChannelAnalyzer();
+    // Format binaire (buffers réutilisés, sous son propre verrou)
+    private final ScanBinaryEncoder binaryEncoder = new ScanBinaryEncoder();
+    // Éléments 802.11 décodés à la demande, cache par BSSID (sous son propre verrou)
+    private final InformationElements elements = new InformationElements();
+    private final String[] suiteNames = new String[32];
+    // Résultats k-NN réutilisés, sous le verrou de l'index
+    private final FingerprintIndex.Matches fingerprintMatches = new FingerprintIndex.Matches();
+
+    ScanSerializer(SignalTracker signalTracker, FingerprintIndex fingerprintIndex, OuiIndex ouiIndex) {
+        this.signalTracker = signalTracker;
+        this.fingerprintIndex = fingerprintIndex;
+        this.ouiIndex = ouiIndex;
+    }
+
+    /**
+     * Sérialise un snapshot au format renvoyé par scan(), après filtre/projection/top-K natifs.
+     * Les âges sont calculés depuis {@code ScanResult.timestamp} (µs depuis le boot).
+     * L'appelant détient le verrou du store.
+     */
+    JSObject buildScanPayload(ScanSnapshotStore store, boolean cached, ScanQuery query) {
+        ScanQuery q = query != null ? query : QUERY_FULL;
+        long now = SystemClock.elapsedRealtime();
+        long bootEpoch = System.currentTimeMillis() - now;
+        int[] selected = new int[store.size()];
+        int n = q.select(store, selected);
+        JSObject ret = new JSObject();
+        if (q.binary) {
+            // Une seule chaîne base64 au lieu d'un JSObject par AP
+            synchronized (binaryEncoder) {
+                int len = binaryEncoder.encode(store, selected, n, q, cached, now, bootEpoch, signalTracker, ouiIndex);
+                ret.put("format", "binary");
+                ret.put("data", Base64.encodeToString(binaryEncoder.buffer(), 0, len, Base64.NO_WRAP));
+            }
+            // Garde le type ScanResponse valide côté JS
+            ret.put("networks", new JSArray());
+        } else {
+            JSArray arr = new JSArray();
+            for (int i = 0; i < n; i++) arr.put(toNetwork(store, selected[i], q, now, bootEpoch));
+            ret.put("networks", arr);
+        }
+        ret.put("count", n);
+        if (q.hasFilter()) ret.put("total", store.size());
+        putSnapshotAge(ret, store, now, bootEpoch);
+        ret.put("cached", cached);
+        if (q.channelAnalysis) ret.put("channelAnalysis", buildChannelAnalysis(store));
+        if (q.fingerprintK > 0) ret.put("fingerprintMatches", buildFingerprintMatches(store, q.fingerprintK, 1));
+        return ret;
+    }
+
+    /** Canaux recouverts par au moins un AP du snapshot (les autres ont un score nul). */
+    JSArray buildChannelAnalysis(ScanSnapshotStore store) {
+        JSArray arr = new JSArray();
+        synchronized (channelAnalyzer) {
+            channelAnalyzer.analyze(store);
+            for (int i = 0, n = channelAnalyzer.slotCount(); i < n; i++) {
+                if (channelAnalyzer.overlapCount(i) == 0) continue;
+                JSObject o = new JSObject();
+                o.put("channel", channelAnalyzer.channel(i));
+                o.put("band", WifiChannels.bandName(channelAnalyzer.band(i)));
+                o.put("frequency", channelAnalyzer.frequency(i));
+                o.put("apCount", channelAnalyzer.apCount(i));
+                o.put("overlapCount", channelAnalyzer.overlapCount(i));
+                o.put("score", Math.round(channelAnalyzer.score(i) * 1000) / 1000.0);
+                o.put("interferenceDbm", Math.round(channelAnalyzer.interferenceDbm(i) * 10) / 10.0);
+                arr.put(o);
+            }
+        }
+        return arr;
+    }
+
+    static void putSnapshotAge(JSObject ret, ScanSnapshotStore store, long now, long bootEpoch) {
+        long newest = store.newestTimestampMicros() / 1000;
+        if (newest <= 0) newest = now;
+        ret.put("timestamp", bootEpoch + newest);
+        ret.put("ageMs", Math.max(0L, now - newest));
+    }
+
+    JSObject toNetwork(ScanSnapshotStore store, int slot, ScanQuery q, long now, long bootEpoch) {
+        JSObject o = new JSObject();
+        if (q.has(ScanQuery.F_SSID)) o.put("ssid",  store.ssid(slot));
+        if (q.has(ScanQuery.F_BSSID)) o.put("bssid", store.bssidText(slot));
+        if (q.has(ScanQuery.F_SIGNAL)) o.put("signalStrength", store.rssi(slot));
+        if (q.has(ScanQuery.F_FREQUENCY)) o.put("frequency", store.frequency(slot));
+        if (q.has(ScanQuery.F_CHANNEL)) o.put("channel", WifiChannels.channelOf(store.frequency(slot)));
+        if (q.has(ScanQuery.F_TIMESTAMP | ScanQuery.F_AGE)) {
+            // Dernière fois que l'AP a été vu (et non l'heure de sérialisation)
+            long seen = store.timestampMicros(slot) / 1000;
+            if (seen <= 0) seen = now;
+            if (q.has(ScanQuery.F_TIMESTAMP)) o.put("timestamp", bootEpoch + seen);
+            if (q.has(ScanQuery.F_AGE)) o.put("ageMs", Math.max(0L, now - seen));
+        }
+        if (q.has(ScanQuery.F_SMOOTHED)) {
+            synchronized (signalTracker) {
+                int sig = signalTracker.indexOf(store.bssid(slot));
+                if (sig >= 0) putSignalStats(o, sig);
+            }
+        }
+        if (q.has(ScanQuery.F_WIDTH) && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            o.put("centerFreq0", store.centerFreq0(slot));
+            o.put("centerFreq1", store.centerFreq1(slot));
+            o.put("channelWidth", store.channelWidth(slot));
+        }
+        if (q.has(ScanQuery.F_VENDOR)) {
+            String vendor = ouiIndex.vendor(store.bssid(slot));
+            if (vendor != null) o.put("vendor", vendor);
+        }
+        if ((q.fields & ScanQuery.FIELDS_ELEMENTS) != 0) putElements(o, store, slot, q);
+        return o;
+    }
+
+    /** Champs issus des éléments 802.11, décodés seulement pour les groupes demandés. */
+    private void putElements(JSObject o, ScanSnapshotStore store, int slot, ScanQuery q) {
+        ScanResult r = store.result(slot);
+        if (r == null) return;
+        int want = (q.has(ScanQuery.F_SECURITY) ? InformationElements.SECURITY : 0)
+            | (q.has(ScanQuery.F_STANDARD) ? InformationElements.STANDARD : 0)
+            | (q.has(ScanQuery.F_BSS_LOAD) ? InformationElements.BSS_LOAD : 0)
+            | (q.has(ScanQuery.F_COUNTRY) ? InformationElements.COUNTRY : 0)
+            | (q.has(ScanQuery.F_VENDOR_ELEMENTS) ? InformationElements.VENDOR : 0);
+        synchronized (elements) {
+            int e = elements.resolve(store.bssid(slot), r, want);
+            if (q.has(ScanQuery.F_SECURITY)) {
+                JSObject sec = new JSObject();
+                sec.put("protocol", elements.protocol(e));
+                sec.put("akms", suiteArray(elements.akms(e), false));
+                sec.put("pairwiseCiphers", suiteArray(elements.pairwiseCiphers(e), true));
+                int n = InformationElements.suiteNames(elements.groupCipher(e), true, suiteNames);
+                if (n > 0) sec.put("groupCipher", suiteNames[0]);
+                sec.put("pmf", elements.pmf(e));
+                sec.put("enterprise", elements.enterprise(e));
+                o.put("security", sec);
+            }
+            if (q.has(ScanQuery.F_STANDARD)) {
+                int standard = elements.wifiStandard(e);
+                String name = InformationElements.standardName(standard);
+                if (name != null) o.put("wifiStandard", name);
+                int generation = InformationElements.generation(standard);
+                if (generation > 0) o.put("wifiGeneration", generation);
+            }
+            if (q.has(ScanQuery.F_BSS_LOAD) && elements.stationCount(e) >= 0) {
+                JSObject load = new JSObject();
+                load.put("stationCount", elements.stationCount(e));
+                load.put("channelUtilization", Math.round(elements.channelUtilization(e) * 1000 / 255.0) / 1000.0);
+                o.put("bssLoad", load);
+            }
+            if (q.has(ScanQuery.F_COUNTRY)) {
+                String country = elements.countryCode(e);
+                if (country != null) o.put("countryCode", country);
+            }
+            if (q.has(ScanQuery.F_VENDOR_ELEMENTS)) {
+                JSArray arr = new JSArray();
+                for (int i = 0, n = elements.vendorElementCount(e); i < n; i++) {
+                    int packed = elements.vendorElement(e, i);
+                    long oui = (long) (packed >>> 8) << 24;
+                    JSObject v = new JSObject();
+                    v.put("oui", ScanSnapshotStore.formatBssid(oui).substring(0, 8));
+                    v.put("type", packed & 0xFF);
+                    String vendor = ouiIndex.vendor(oui);
+                    if (vendor != null) v.put("vendor", vendor);
+                    arr.put(v);
+                }
+                o.put("vendorElements", arr);
+            }
+        }
+    }
+
+    private JSArray suiteArray(int mask, boolean ciphers) {
+        JSArray arr = new JSArray();
+        for (int i = 0, n = InformationElements.suiteNames(mask, ciphers, suiteNames); i < n; i++) arr.put(suiteNames[i]);
+        return arr;
+    }
+
+    private JSArray toNetworkArray(ScanSnapshotStore store, int[] slots, int count, ScanQuery q, long now, long bootEpoch) {
+        JSArray arr = new JSArray();
+        for (int i = 0; i < count; i++) arr.put(toNetwork(store, slots[i], q, now, bootEpoch));
+        return arr;
+    }
+
+    JSObject buildDeltaPayload(ScanSnapshotStore store, ScanDeltaTracker.Delta delta, ScanQuery q) {
+        if (q.binary) throw new IllegalArgumentException("binary format is not supported for deltas");
+        long now = SystemClock.elapsedRealtime();
+        long bootEpoch = System.currentTimeMillis() - now;
+        JSArray removed = new JSArray();
+        for (String bssid : delta.removed) removed.put(bssid);
+        JSObject ret = new JSObject();
+        ret.put("sequence", delta.sequence);
+        ret.put("full", delta.full);
+        ret.put("added", toNetworkArray(store, delta.added, delta.addedCount, q, now, bootEpoch));
+        ret.put("changed", toNetworkArray(store, delta.changed, delta.changedCount, q, now, bootEpoch));
+        ret.put("removed", removed);
+        ret.put("count", delta.total);
+        putSnapshotAge(ret, store, now, bootEpoch);
+        return ret;
+    }
+
+    private JSArray buildFingerprintMatches(ScanSnapshotStore store, int k, int minCommon) {
+        synchronized (fingerprintIndex) {
+            fingerprintIndex.query(store, k, minCommon, fingerprintMatches);
+            return toMatchArray(fingerprintMatches);
+        }
+    }
+
+    void putFingerprintMatches(JSObject ret, ScanSnapshotStore store, int k, int minCommon) {
+        synchronized (fingerprintIndex) {
+            ret.put("matches", buildFingerprintMatches(store, k, minCommon));
+            ret.put("candidates", fingerprintMatches.candidates);
+        }
+    }
+
+    /** k plus proches empreintes d'un scan fourni par JS ({@code (bssids, rssi)[0, n)}). */
+    void putFingerprintMatches(JSObject ret, long[] bssids, int[] rssi, int n, int k, int minCommon) {
+        synchronized (fingerprintIndex) {
+            fingerprintIndex.query(bssids, rssi, n, k, minCommon, fingerprintMatches);
+            ret.put("matches", toMatchArray(fingerprintMatches));
+            ret.put("candidates", fingerprintMatches.candidates);
+        }
+    }
+
+    private static JSArray toMatchArray(FingerprintIndex.Matches m) {
+        JSArray arr = new JSArray();
+        for (int i = 0; i < m.size; i++) {
+            JSObject o = new JSObject();
+            o.put("id", m.ids[i]);
+            o.put("distance", Math.round(m.distances[i] * 100) / 100.0);
+            o.put("commonAps", m.commonAps[i]);
+            arr.put(o);
+        }
+        return arr;
+    }
+
+    void putSignalStats(JSObject o, int slot) {
+        o.put("smoothedRssi", round1(signalTracker.smoothed(slot)));
+        o.put("rssiVariance", round1(signalTracker.variance(slot)));
+        // dBm/s
+        o.put("rssiTrend", Math.round(signalTracker.trend(slot) * 1000) / 1000.0);
+    }
+
+    private static double round1(double v) {
+        return Math.round(v * 10) / 10.0;
+    }
+}
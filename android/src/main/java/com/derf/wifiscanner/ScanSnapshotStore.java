@@ -0,0 +1,218 @@
+package com.derf.wifiscanner;
+
+import android.net.wifi.ScanResult;
+import android.os.Build;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Snapshot d'un scan dédupliqué par BSSID, stocké en tableaux primitifs parallèles.
+ * <p>
+ * Chaque BSSID est packé en {@code long} (MAC 48 bits) et indexé dans une table à adressage
+ * ouvert : lookup O(1) sans boxing, et aucune allocation par scan une fois les tableaux
+ * dimensionnés (hors SSID déjà internés dans le {@link SsidPool}). Les entrées occupent les
+ * slots {@code [0, size())} dans l'ordre d'insertion. Non thread-safe : l'appelant synchronise.
+ */
+final class ScanSnapshotStore {
+
+    static final long INVALID_BSSID = -1L;
+
+    private final SsidPool ssidPool;
+
+    // Table d'index : slot + 1 (0 = vide)
+    private int[] table;
+    private int size = 0;
+    private long newestTimestampMicros = 0L;
+
+    // Colonnes par AP
+    private long[] bssid;
+    private String[] bssidText;
+    private String[] ssid;
+    private int[] rssi;
+    private int[] frequency;
+    private int[] centerFreq0;
+    private int[] centerFreq1;
+    private int[] channelWidth;
+    private long[] timestampMicros;
+    // ScanResult d'origine (éléments 802.11 décodés à la demande), null hors ingest()
+    private ScanResult[] result;
+
+    ScanSnapshotStore(SsidPool ssidPool) {
+        this(ssidPool, 64);
+    }
+
+    ScanSnapshotStore(SsidPool ssidPool, int initialCapacity) {
+        this.ssidPool = ssidPool;
+        allocate(Math.max(16, initialCapacity));
+    }
+
+    /** Remplace le contenu par les résultats (premier vu gagne pour un BSSID dupliqué). */
+    int ingest(List<ScanResult> results) {
+        clear();
+        boolean hasWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+        for (int i = 0, n = results.size(); i < n; i++) {
+            ScanResult r = results.get(i);
+            long key = parseBssid(r.BSSID);
+            if (key == INVALID_BSSID) continue;
+            int slot = add(key, r.BSSID, r.SSID, r.level, r.frequency,
+                hasWidth ? r.centerFreq0 : 0,
+                hasWidth ? r.centerFreq1 : 0,
+                hasWidth ? r.channelWidth : 0,
+                r.timestamp);
+            if (slot >= 0) result[slot] = r;
+        }
+        return size;
+    }
+
+    /** @return le slot créé, ou -1 si le BSSID est déjà présent */
+    int add(long key, String keyText, String ssidValue, int level, int freq,
+            int cf0, int cf1, int width, long tsMicros) {
+        int mask = table.length - 1;
+        int i = mix(key) & mask;
+        int cur;
+        while ((cur = table[i]) != 0) {
+            if (bssid[cur - 1] == key) return -1;
+            i = (i + 1) & mask;
+        }
+        if (size == bssid.length) {
+            grow();
+            return add(key, keyText, ssidValue, level, freq, cf0, cf1, width, tsMicros);
+        }
+        int slot = size++;
+        table[i] = slot + 1;
+        bssid[slot] = key;
+        bssidText[slot] = keyText != null ? keyText : formatBssid(key);
+        ssid[slot] = ssidPool.intern(ssidValue);
+        rssi[slot] = level;
+        frequency[slot] = freq;
+        centerFreq0[slot] = cf0;
+        centerFreq1[slot] = cf1;
+        channelWidth[slot] = width;
+        timestampMicros[slot] = tsMicros;
+        if (tsMicros > newestTimestampMicros) newestTimestampMicros = tsMicros;
+        return slot;
+    }
+
+    /** Copie l'entrée {@code slot} d'un autre store (même pool de SSID). */
+    int copyFrom(ScanSnapshotStore other, int slot) {
+        int created = add(other.bssid[slot], other.bssidText[slot], other.ssid[slot], other.rssi[slot],
+            other.frequency[slot], other.centerFreq0[slot], other.centerFreq1[slot],
+            other.channelWidth[slot], other.timestampMicros[slot]);
+        if (created >= 0) result[created] = other.result[slot];
+        return created;
+    }
+
+    int indexOf(long key) {
+        int mask = table.length - 1;
+        int i = mix(key) & mask;
+        int cur;
+        while ((cur = table[i]) != 0) {
+            if (bssid[cur - 1] == key) return cur - 1;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    void clear() {
+        newestTimestampMicros = 0L;
+        if (size == 0) return;
+        Arrays.fill(table, 0);
+        // Libère les références String sans réallouer
+        Arrays.fill(bssidText, 0, size, null);
+        Arrays.fill(ssid, 0, size, null);
+        Arrays.fill(result, 0, size, null);
+        size = 0;
+    }
+
+    int size() { return size; }
+
+    long bssid(int slot) { return bssid[slot]; }
+    String bssidText(int slot) { return bssidText[slot]; }
+    String ssid(int slot) { return ssid[slot]; }
+    int rssi(int slot) { return rssi[slot]; }
+    int frequency(int slot) { return frequency[slot]; }
+    int centerFreq0(int slot) { return centerFreq0[slot]; }
+    int centerFreq1(int slot) { return centerFreq1[slot]; }
+    int channelWidth(int slot) { return channelWidth[slot]; }
+    long timestampMicros(int slot) { return timestampMicros[slot]; }
+    /** null si l'entrée n'a pas été ingérée depuis un ScanResult. */
+    ScanResult result(int slot) { return result[slot]; }
+
+    /** Plus récent {@code ScanResult.timestamp} du snapshot (µs depuis le boot), 0 si vide. */
+    long newestTimestampMicros() { return newestTimestampMicros; }
+
+    /* ---------------- BSSID <-> long ---------------- */
+
+    /** "aa:bb:cc:dd:ee:ff" (ou avec '-') → MAC 48 bits, sans allocation ; -1 si invalide. */
+    static long parseBssid(String s) {
+        if (s == null || s.length() != 17) return INVALID_BSSID;
+        long v = 0L;
+        for (int i = 0; i < 17; i++) {
+            char c = s.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':' && c != '-') return INVALID_BSSID;
+                continue;
+            }
+            int d = Character.digit(c, 16);
+            if (d < 0) return INVALID_BSSID;
+            v = (v << 4) | d;
+        }
+        return v;
+    }
+
+    static String formatBssid(long v) {
+        char[] out = new char[17];
+        for (int b = 0; b < 6; b++) {
+            int octet = (int) (v >>> (8 * (5 - b))) & 0xFF;
+            out[b * 3] = Character.forDigit(octet >>> 4, 16);
+            out[b * 3 + 1] = Character.forDigit(octet & 0xF, 16);
+            if (b < 5) out[b * 3 + 2] = ':';
+        }
+        return new String(out);
+    }
+
+    /* ---------------- internes ---------------- */
+
+    private void allocate(int capacity) {
+        table = new int[Integer.highestOneBit(capacity - 1) << 2];
+        bssid = new long[capacity];
+        bssidText = new String[capacity];
+        ssid = new String[capacity];
+        rssi = new int[capacity];
+        frequency = new int[capacity];
+        centerFreq0 = new int[capacity];
+        centerFreq1 = new int[capacity];
+        channelWidth = new int[capacity];
+        timestampMicros = new long[capacity];
+        result = new ScanResult[capacity];
+    }
+
+    private void grow() {
+        int capacity = bssid.length * 2;
+        bssid = Arrays.copyOf(bssid, capacity);
+        bssidText = Arrays.copyOf(bssidText, capacity);
+        ssid = Arrays.copyOf(ssid, capacity);
+        rssi = Arrays.copyOf(rssi, capacity);
+        frequency = Arrays.copyOf(frequency, capacity);
+        centerFreq0 = Arrays.copyOf(centerFreq0, capacity);
+        centerFreq1 = Arrays.copyOf(centerFreq1, capacity);
+        channelWidth = Arrays.copyOf(channelWidth, capacity);
+        timestampMicros = Arrays.copyOf(timestampMicros, capacity);
+        result = Arrays.copyOf(result, capacity);
+
+        // Facteur de charge <= 0.5
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int slot = 0; slot < size; slot++) {
+            int i = mix(bssid[slot]) & mask;
+            while (table[i] != 0) i = (i + 1) & mask;
+            table[i] = slot + 1;
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
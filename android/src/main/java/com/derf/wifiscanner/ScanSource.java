@@ -0,0 +1,42 @@
+package com.derf.wifiscanner;
+
+import android.net.wifi.ScanResult;
+import android.os.Handler;
+
+import java.util.List;
+
+/**
+ * Origine des scans de {@link WifiScanner} : radio réelle ({@link LiveScanSource}), trace
+ * enregistrée rejouée ({@link ReplayScanSource}) ou générateur synthétique
+ * ({@link SyntheticScanSource}). Tout le pipeline en aval (hub, dédup, sérialisation) est commun.
+ * <p>
+ * Les méthodes sont appelées sur le thread worker du scanner, sauf {@link #isWifiEnabled()} et
+ * {@link #getScanResults()} qui peuvent l'être de n'importe quel thread.
+ */
+interface ScanSource {
+
+    /** Équivalent du broadcast {@code SCAN_RESULTS_AVAILABLE_ACTION}. */
+    interface Callback {
+        /** @param updated {@code EXTRA_RESULTS_UPDATED} : false si le scan a échoué */
+        void onResultsAvailable(boolean updated);
+    }
+
+    /** false si la source ne peut pas scanner (WifiManager absent). */
+    boolean isAvailable();
+
+    boolean isWifiEnabled();
+
+    /** Équivalent de {@code WifiManager.startScan()} : true si le scan est accepté. */
+    boolean startScan();
+
+    /** Derniers résultats, jamais null. */
+    List<ScanResult> getScanResults();
+
+    /** false si l'OS ne limite pas les scans (options développeur, sources simulées). */
+    boolean isScanThrottleEnabled();
+
+    /** Commence à notifier {@code callback} sur le looper de {@code handler}. */
+    void start(Handler handler, Callback callback);
+
+    void stop();
+}
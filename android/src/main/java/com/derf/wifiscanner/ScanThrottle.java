@@ -0,0 +1,102 @@
+package com.derf.wifiscanner;
+
+/**
+ * Modèle du throttling Wi-Fi d'Android (9+) : 4 scans par fenêtre glissante de 2 min au premier
+ * plan, 1 scan par 30 min en arrière-plan. Chaque jeton consommé se régénère une fenêtre après
+ * son utilisation (bucket à régénération individuelle, équivalent exact à la fenêtre glissante).
+ * <p>
+ * Le modèle apprend des refus : si {@code WifiManager.startScan()} renvoie false alors qu'il
+ * restait du budget (autre consommateur, politique OEM...), un backoff exponentiel est appliqué.
+ * Les temps sont en {@code SystemClock.elapsedRealtime()}.
+ */
+final class ScanThrottle {
+
+    static final int FOREGROUND_CAPACITY = 4;
+    static final long FOREGROUND_WINDOW_MS = 2 * 60_000L;
+    static final int BACKGROUND_CAPACITY = 1;
+    static final long BACKGROUND_WINDOW_MS = 30 * 60_000L;
+
+    // Derniers démarrages acceptés (anneau, le plus récent en head - 1)
+    private final long[] starts = new long[FOREGROUND_CAPACITY];
+    private int head = 0;
+    private int count = 0;
+
+    private boolean foreground = true;
+    private boolean enabled = true;
+    private long penaltyUntil = 0L;
+    private int consecutiveRejections = 0;
+
+    synchronized void setForeground(boolean foreground) {
+        this.foreground = foreground;
+    }
+
+    synchronized boolean isForeground() {
+        return foreground;
+    }
+
+    /** Throttling désactivé dans les options développeur (API 30+) : budget illimité. */
+    synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    synchronized int capacity() {
+        return foreground ? FOREGROUND_CAPACITY : BACKGROUND_CAPACITY;
+    }
+
+    synchronized long windowMs() {
+        return foreground ? FOREGROUND_WINDOW_MS : BACKGROUND_WINDOW_MS;
+    }
+
+    /** Intervalle soutenable en régime continu pour l'état courant. */
+    synchronized long sustainableIntervalMs() {
+        return enabled ? windowMs() / capacity() : 0L;
+    }
+
+    /** @return 0 si un scan peut partir maintenant, sinon le délai avant le prochain jeton */
+    synchronized long delayUntilAllowed(long now) {
+        long penalty = Math.max(0L, penaltyUntil - now);
+        if (!enabled) return penalty;
+        int cap = capacity();
+        if (count < cap) return penalty;
+        // Le cap-ième démarrage le plus récent libère le prochain jeton
+        long oldest = starts[Math.floorMod(head - cap, starts.length)];
+        long regen = Math.max(0L, oldest + windowMs() - now);
+        return Math.max(penalty, regen);
+    }
+
+    synchronized int remaining(long now) {
+        if (!enabled) return Integer.MAX_VALUE;
+        if (penaltyUntil > now) return 0;
+        int cap = capacity();
+        long window = windowMs();
+        int used = 0;
+        for (int i = 1; i <= Math.min(count, cap); i++) {
+            if (now - starts[Math.floorMod(head - i, starts.length)] < window) used++;
+        }
+        return cap - used;
+    }
+
+    synchronized void onStartAccepted(long now) {
+        starts[head] = now;
+        head = (head + 1) % starts.length;
+        if (count < starts.length) count++;
+        consecutiveRejections = 0;
+        penaltyUntil = 0L;
+    }
+
+    synchronized void onStartRejected(long now) {
+        consecutiveRejections++;
+        // Backoff : un intervalle soutenable, doublé à chaque refus consécutif, borné à la fenêtre
+        long base = Math.max(1_000L, windowMs() / capacity());
+        long backoff = Math.min(windowMs(), base << Math.min(consecutiveRejections - 1, 16));
+        penaltyUntil = now + backoff;
+    }
+
+    synchronized int consecutiveRejections() {
+        return consecutiveRejections;
+    }
+}
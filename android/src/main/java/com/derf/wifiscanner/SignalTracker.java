@@ -0,0 +1,200 @@
+package com.derf.wifiscanner;
+
+import java.util.Arrays;
+
+/**
+ * Série temporelle RSSI par BSSID : anneau de {@link #WINDOW} échantillons en tableaux primitifs
+ * plats, et estimation incrémentale (moyenne et variance exponentielles, tendance lissée en
+ * dBm/s). Mise à jour O(1) par AP et sans allocation.
+ * <p>
+ * Un échantillon n'est ajouté que si l'observation est nouvelle ({@code ScanResult.timestamp}
+ * différent) : les entrées reprises du cache OS et les livraisons répétées ne faussent pas la
+ * série. Au-delà de {@link #MAX_APS}, l'AP mis à jour le moins récemment est évincé, en O(1)
+ * (liste LRU intrusive sur les slots).
+ */
+final class SignalTracker {
+
+    static final int WINDOW = 32;
+    static final int MAX_APS = 1024;
+    static final double DEFAULT_ALPHA = 0.3;
+
+    private final double alpha;
+
+    // Index BSSID → slot (slot + 1, 0 = vide), sondage linéaire avec suppression par décalage
+    private final int[] table = new int[MAX_APS * 2];
+    private final long[] keys = new long[MAX_APS];
+    private int size = 0;
+    private final int[] freeSlots = new int[MAX_APS];
+    private int freeCount = 0;
+
+    // Par slot
+    private final double[] mean = new double[MAX_APS];
+    private final double[] variance = new double[MAX_APS];
+    private final double[] trend = new double[MAX_APS];
+    private final long[] lastSeenMicros = new long[MAX_APS];
+    private final int[] head = new int[MAX_APS];
+    private final int[] count = new int[MAX_APS];
+
+    // Liste LRU intrusive (ordre des mises à jour) : tête = prochain évincé, -1 = fin
+    private final int[] lruPrev = new int[MAX_APS];
+    private final int[] lruNext = new int[MAX_APS];
+    private int lruHead = -1;
+    private int lruTail = -1;
+
+    // Anneaux : slot * WINDOW + i
+    private final byte[] samples = new byte[MAX_APS * WINDOW];
+    private final long[] sampleTimes = new long[MAX_APS * WINDOW];
+
+    SignalTracker() {
+        this(DEFAULT_ALPHA);
+    }
+
+    SignalTracker(double alpha) {
+        this.alpha = alpha;
+        for (int i = 0; i < MAX_APS; i++) freeSlots[i] = MAX_APS - 1 - i;
+        freeCount = MAX_APS;
+    }
+
+    /** @param bootEpochMs epoch ms du boot, pour dater les échantillons */
+    synchronized void update(ScanSnapshotStore snapshot, long bootEpochMs) {
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            long ts = snapshot.timestampMicros(i);
+            int slot = slotFor(snapshot.bssid(i));
+            if (count[slot] > 0 && ts == lastSeenMicros[slot]) continue;
+            addSample(slot, snapshot.rssi(i), ts, bootEpochMs + ts / 1000);
+        }
+    }
+
+    synchronized int indexOf(long bssid) {
+        int mask = table.length - 1;
+        int i = mix(bssid) & mask;
+        int cur;
+        while ((cur = table[i]) != 0) {
+            if (keys[cur - 1] == bssid) return cur - 1;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    synchronized double smoothed(int slot) { return mean[slot]; }
+    synchronized double variance(int slot) { return variance[slot]; }
+    synchronized double trend(int slot) { return trend[slot]; }
+    synchronized int sampleCount(int slot) { return count[slot]; }
+
+    /** Échantillon {@code k} (0 = le plus ancien encore dans la fenêtre). */
+    synchronized int sample(int slot, int k) {
+        return samples[ringIndex(slot, k)];
+    }
+
+    synchronized long sampleTime(int slot, int k) {
+        return sampleTimes[ringIndex(slot, k)];
+    }
+
+    synchronized void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(count, 0);
+        size = 0;
+        for (int i = 0; i < MAX_APS; i++) freeSlots[i] = MAX_APS - 1 - i;
+        freeCount = MAX_APS;
+        lruHead = lruTail = -1;
+    }
+
+    /* ---------------- internes ---------------- */
+
+    private void addSample(int slot, int rssi, long tsMicros, long epochMs) {
+        int c = count[slot];
+        if (c == 0) {
+            mean[slot] = rssi;
+            variance[slot] = 0;
+            trend[slot] = 0;
+        } else {
+            // Moyenne / variance exponentielles (forme incrémentale)
+            double prevMean = mean[slot];
+            double diff = rssi - prevMean;
+            double incr = alpha * diff;
+            mean[slot] = prevMean + incr;
+            variance[slot] = (1 - alpha) * (variance[slot] + diff * incr);
+            double dt = (tsMicros - lastSeenMicros[slot]) / 1_000_000.0;
+            if (dt > 0) trend[slot] += alpha * ((mean[slot] - prevMean) / dt - trend[slot]);
+        }
+        int pos = slot * WINDOW + head[slot];
+        samples[pos] = (byte) Math.max(-128, Math.min(127, rssi));
+        sampleTimes[pos] = epochMs;
+        head[slot] = (head[slot] + 1) % WINDOW;
+        if (c < WINDOW) count[slot] = c + 1;
+        lastSeenMicros[slot] = tsMicros;
+        // Slot déjà chaîné dès qu'il a un échantillon : passage en queue de la liste LRU
+        if (c > 0) unlink(slot);
+        linkLast(slot);
+    }
+
+    private int slotFor(long bssid) {
+        int found = indexOf(bssid);
+        if (found >= 0) return found;
+        if (freeCount == 0) evictLeastRecent();
+        int slot = freeSlots[--freeCount];
+        keys[slot] = bssid;
+        count[slot] = 0;
+        head[slot] = 0;
+        int mask = table.length - 1;
+        int i = mix(bssid) & mask;
+        while (table[i] != 0) i = (i + 1) & mask;
+        table[i] = slot + 1;
+        size++;
+        return slot;
+    }
+
+    private void evictLeastRecent() {
+        if (lruHead >= 0) remove(lruHead);
+    }
+
+    private void linkLast(int slot) {
+        lruPrev[slot] = lruTail;
+        lruNext[slot] = -1;
+        if (lruTail >= 0) lruNext[lruTail] = slot;
+        else lruHead = slot;
+        lruTail = slot;
+    }
+
+    private void unlink(int slot) {
+        int p = lruPrev[slot], n = lruNext[slot];
+        if (p >= 0) lruNext[p] = n;
+        else lruHead = n;
+        if (n >= 0) lruPrev[n] = p;
+        else lruTail = p;
+    }
+
+    private void remove(int slot) {
+        int mask = table.length - 1;
+        int i = mix(keys[slot]) & mask;
+        while (table[i] != slot + 1) i = (i + 1) & mask;
+        // Suppression par décalage arrière (sondage linéaire, pas de tombstone)
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            int cur = table[j];
+            if (cur == 0) break;
+            int home = mix(keys[cur - 1]) & mask;
+            boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!between) {
+                table[i] = cur;
+                i = j;
+            }
+        }
+        table[i] = 0;
+        if (count[slot] > 0) unlink(slot);
+        count[slot] = 0;
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    private int ringIndex(int slot, int k) {
+        int start = count[slot] < WINDOW ? 0 : head[slot];
+        return slot * WINDOW + (start + k) % WINDOW;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,150 @@
+package com.derf.wifiscanner;
+
+import android.net.wifi.ScanResult;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Base des sources simulées : un scan accepté est livré après {@code latencyMs}, et des
+ * livraisons passives (scans « d'autres apps ») peuvent être émises au rythme de
+ * {@link #nextPassiveDelayMs()}. Pas de throttling OS, Wi-Fi toujours actif.
+ * <p>
+ * Chaque scan émis a ses propres {@link ScanResult}, comme ceux du système :
+ * {@link ScanSnapshotStore} en garde les références pour décoder les éléments 802.11 à la
+ * demande, après la livraison suivante comprise. Seules les listes sont réutilisées en double
+ * tampon : une liste renvoyée par {@link #getScanResults()} reste valide pendant le scan suivant,
+ * pas au-delà. {@code new ScanResult()} n'est public qu'à partir d'Android 11 (API 30).
+ */
+abstract class SimulatedScanSource implements ScanSource {
+
+    private final long latencyMs;
+    private Handler handler;
+    private Callback callback;
+
+    private final Frame[] frames = { new Frame(), new Frame() };
+    private int current = 0;
+    private volatile List<ScanResult> published = Collections.emptyList();
+    private long lastTimestampMicros = 0L;
+
+    private final Runnable deliverScan = this::deliver;
+    private final Runnable passiveTick = new Runnable() {
+        @Override
+        public void run() {
+            deliver();
+            schedulePassive();
+        }
+    };
+
+    SimulatedScanSource(long latencyMs) {
+        this.latencyMs = Math.max(0L, latencyMs);
+    }
+
+    /** Écrit le scan suivant dans {@code frame} ; {@code nowMicros} est strictement croissant. */
+    protected abstract void fill(Frame frame, long nowMicros);
+
+    /** Délai avant la prochaine livraison passive, ou -1 pour n'en émettre aucune. */
+    protected abstract long nextPassiveDelayMs();
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public boolean isWifiEnabled() {
+        return true;
+    }
+
+    @Override
+    public synchronized boolean startScan() {
+        if (handler == null) return false;
+        handler.postDelayed(deliverScan, latencyMs);
+        return true;
+    }
+
+    @Override
+    public List<ScanResult> getScanResults() {
+        return published;
+    }
+
+    @Override
+    public boolean isScanThrottleEnabled() {
+        return false;
+    }
+
+    @Override
+    public synchronized void start(Handler handler, Callback callback) {
+        this.handler = handler;
+        this.callback = callback;
+        schedulePassive();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (handler != null) {
+            handler.removeCallbacks(deliverScan);
+            handler.removeCallbacks(passiveTick);
+        }
+        handler = null;
+        callback = null;
+    }
+
+    /** Génère et publie le scan suivant, sans notification (benchmarks, tests). */
+    synchronized List<ScanResult> nextScan() {
+        // Horloge strictement croissante : chaque scan est une nouvelle observation
+        long now = Math.max(SystemClock.elapsedRealtime() * 1000, lastTimestampMicros + 1);
+        lastTimestampMicros = now;
+        current ^= 1;
+        Frame frame = frames[current];
+        frame.clear();
+        fill(frame, now);
+        published = frame.view;
+        return published;
+    }
+
+    /* ---------------- internes ---------------- */
+
+    private void deliver() {
+        Callback cb;
+        synchronized (this) {
+            cb = callback;
+            if (cb == null) return;
+            nextScan();
+        }
+        cb.onResultsAvailable(true);
+    }
+
+    private synchronized void schedulePassive() {
+        if (handler == null) return;
+        long delay = nextPassiveDelayMs();
+        if (delay >= 0) handler.postDelayed(passiveTick, delay);
+    }
+
+    /** Trame de résultats : liste réutilisable, {@link ScanResult} neufs à chaque scan. */
+    static final class Frame {
+        private final ArrayList<ScanResult> list = new ArrayList<>();
+        final List<ScanResult> view = Collections.unmodifiableList(list);
+
+        void add(String bssid, String ssid, int level, int frequency,
+                 int centerFreq0, int centerFreq1, int channelWidth, long timestampMicros) {
+            ScanResult r = new ScanResult();
+            r.BSSID = bssid;
+            r.SSID = ssid;
+            r.level = level;
+            r.frequency = frequency;
+            r.centerFreq0 = centerFreq0;
+            r.centerFreq1 = centerFreq1;
+            r.channelWidth = channelWidth;
+            r.timestamp = timestampMicros;
+            list.add(r);
+        }
+
+        private void clear() {
+            list.clear();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.derf.wifiscanner;
+
+/**
+ * Pool d'internement des SSID : les mêmes réseaux reviennent à chaque scan, on garde une seule
+ * instance par SSID (comparaison par référence possible, pas de doublons retenus en mémoire).
+ * Table à adressage ouvert, sans boxing ; vidée si elle dépasse {@link #MAX_ENTRIES}.
+ */
+final class SsidPool {
+
+    private static final int MAX_ENTRIES = 4096;
+
+    private String[] table = new String[256];
+    private int size = 0;
+
+    synchronized String intern(String ssid) {
+        if (ssid == null || ssid.isEmpty()) return "";
+        int mask = table.length - 1;
+        int i = mix(ssid.hashCode()) & mask;
+        String cur;
+        while ((cur = table[i]) != null) {
+            if (cur.equals(ssid)) return cur;
+            i = (i + 1) & mask;
+        }
+        if (size >= MAX_ENTRIES) {
+            // Environnement très dense : on repart de zéro plutôt que de grossir indéfiniment
+            clear();
+            return intern(ssid);
+        }
+        table[i] = ssid;
+        if (++size * 2 > table.length) rehash(table.length * 2);
+        return ssid;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized void clear() {
+        table = new String[256];
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        String[] old = table;
+        table = new String[capacity];
+        int mask = capacity - 1;
+        for (String s : old) {
+            if (s == null) continue;
+            int i = mix(s.hashCode()) & mask;
+            while (table[i] != null) i = (i + 1) & mask;
+            table[i] = s;
+        }
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
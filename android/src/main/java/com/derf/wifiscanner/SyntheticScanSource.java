@@ -0,0 +1,103 @@
+package com.derf.wifiscanner;
+
+import java.util.Random;
+
+/**
+ * Générateur de scans synthétiques pour la charge : {@code apCount} AP fixes (BSSID, SSID,
+ * canal et largeur tirés au hasard sur les trois bandes), un RSSI de base par AP bruité à chaque
+ * scan, et une fraction d'AP manqués par scan pour faire vivre les deltas.
+ * Déterministe à graine égale.
+ */
+final class SyntheticScanSource extends SimulatedScanSource {
+
+    // Probabilité qu'un AP n'apparaisse pas dans un scan donné
+    private static final double MISS_PROBABILITY = 0.05;
+    private static final double RSSI_NOISE_DB = 3.0;
+    // AP par SSID en moyenne (réseaux multi-AP, bandes multiples)
+    private static final int APS_PER_SSID = 4;
+
+    private static final int[] CHANNELS_2_4 = { 1, 6, 11 };
+
+    private final long passiveIntervalMs;
+    private final Random random;
+
+    private final String[] bssid;
+    private final String[] ssid;
+    private final int[] baseRssi;
+    private final int[] frequency;
+    private final int[] centerFreq0;
+    private final int[] channelWidth;
+    // Instant d'observation dans le balayage (µs avant la fin du scan), fixe par AP
+    private final int[] sweepOffsetMicros;
+
+    /**
+     * @param latencyMs         délai entre un startScan() accepté et la livraison
+     * @param passiveIntervalMs période des livraisons passives, 0 pour aucune
+     */
+    SyntheticScanSource(int apCount, long latencyMs, long passiveIntervalMs, long seed) {
+        super(latencyMs);
+        this.passiveIntervalMs = passiveIntervalMs;
+        this.random = new Random(seed);
+        int n = Math.max(0, apCount);
+        bssid = new String[n];
+        ssid = new String[n];
+        baseRssi = new int[n];
+        frequency = new int[n];
+        centerFreq0 = new int[n];
+        channelWidth = new int[n];
+        sweepOffsetMicros = new int[n];
+        int ssids = Math.max(1, n / APS_PER_SSID);
+        for (int i = 0; i < n; i++) {
+            // MAC localement administrée : ne collisionne pas avec de vrais AP
+            bssid[i] = ScanSnapshotStore.formatBssid(0x02_00_00_00_00_00L | (seed & 0xFFFF) << 24 | i);
+            ssid[i] = random.nextInt(10) == 0 ? "" : "net-" + random.nextInt(ssids);
+            baseRssi[i] = -35 - random.nextInt(60);
+            sweepOffsetMicros[i] = random.nextInt(2_000_000);
+            pickChannel(i);
+        }
+    }
+
+    int apCount() {
+        return bssid.length;
+    }
+
+    @Override
+    protected void fill(Frame frame, long nowMicros) {
+        for (int i = 0; i < bssid.length; i++) {
+            if (random.nextDouble() < MISS_PROBABILITY) continue;
+            int level = (int) Math.round(baseRssi[i] + random.nextGaussian() * RSSI_NOISE_DB);
+            level = Math.max(-100, Math.min(-20, level));
+            frame.add(bssid[i], ssid[i], level, frequency[i], centerFreq0[i], 0, channelWidth[i],
+                nowMicros - sweepOffsetMicros[i]);
+        }
+    }
+
+    @Override
+    protected long nextPassiveDelayMs() {
+        return passiveIntervalMs > 0 ? passiveIntervalMs : -1L;
+    }
+
+    /* ---------------- internes ---------------- */
+
+    /** Bande 2.4 / 5 / 6 GHz à 40/40/20 %, largeur 20 à 160 MHz alignée sur la grille. */
+    private void pickChannel(int i) {
+        int band = random.nextInt(10);
+        if (band < 4) {
+            frequency[i] = 2407 + 5 * CHANNELS_2_4[random.nextInt(CHANNELS_2_4.length)];
+            channelWidth[i] = 0; // CHANNEL_WIDTH_20MHZ
+            centerFreq0[i] = frequency[i];
+            return;
+        }
+        int base = band < 8 ? 5000 : 5950;
+        int first = band < 8 ? 36 : 1;
+        int slots = band < 8 ? 24 : 59;
+        int channel = first + 4 * random.nextInt(slots);
+        frequency[i] = base + 5 * channel;
+        // 0..3 : 20, 40, 80, 160 MHz (constantes CHANNEL_WIDTH_* de ScanResult)
+        int width = random.nextInt(4);
+        int span = 20 << width;
+        int blockStart = base + 5 * first - 10 + ((frequency[i] - (base + 5 * first - 10)) / span) * span;
+        channelWidth[i] = width;
+        centerFreq0[i] = blockStart + span / 2;
+    }
+}
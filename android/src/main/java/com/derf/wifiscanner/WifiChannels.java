@@ -0,0 +1,69 @@
+package com.derf.wifiscanner;
+
+/**
+ * Table fréquence → canal / bande précalculée au MHz près (2.4, 5 et 6 GHz), lookup O(1).
+ * <p>
+ * Grilles IEEE 802.11 : 2.4 GHz {@code 2407 + 5·ch} (ch 1–13) et 2484 (ch 14) ; 5 GHz
+ * {@code 5000 + 5·ch} (ch 32–177) ; 6 GHz {@code 5950 + 5·ch} (ch impairs 1–233) et 5935 (ch 2).
+ * Les centres des canaux agrégés (ex. 42, 155, 6 GHz ch 15) sont couverts : la table sert aussi
+ * pour {@code centerFreq0/1}.
+ */
+final class WifiChannels {
+
+    static final int MIN_FREQ = 2400;
+    static final int MAX_FREQ = 7125;
+
+    // canal | bande << 9 (0 = fréquence hors grille)
+    private static final short[] TABLE = new short[MAX_FREQ - MIN_FREQ + 1];
+
+    static {
+        for (int ch = 1; ch <= 13; ch++) put(2407 + 5 * ch, ch, ScanQuery.BAND_2_4);
+        put(2484, 14, ScanQuery.BAND_2_4);
+        for (int ch = 32; ch <= 177; ch++) put(5000 + 5 * ch, ch, ScanQuery.BAND_5);
+        put(5935, 2, ScanQuery.BAND_6);
+        for (int ch = 1; ch <= 233; ch += 2) put(5950 + 5 * ch, ch, ScanQuery.BAND_6);
+    }
+
+    private WifiChannels() {}
+
+    /** @return le numéro de canal, ou -1 si la fréquence n'est pas sur une grille connue */
+    static int channelOf(int freqMhz) {
+        int e = entry(freqMhz);
+        return e == 0 ? -1 : e & 0x1FF;
+    }
+
+    /** @return {@link ScanQuery#BAND_2_4}, {@link ScanQuery#BAND_5}, {@link ScanQuery#BAND_6} ou 0 */
+    static int bandOf(int freqMhz) {
+        return entry(freqMhz) >>> 9;
+    }
+
+    static String bandName(int band) {
+        switch (band) {
+            case ScanQuery.BAND_2_4: return "2.4";
+            case ScanQuery.BAND_5: return "5";
+            case ScanQuery.BAND_6: return "6";
+            default: return "unknown";
+        }
+    }
+
+    /** Largeur en MHz d'un code {@code ScanResult.channelWidth} (80+80 : par segment). */
+    static int widthMhz(int channelWidth) {
+        switch (channelWidth) {
+            case 1: return 40;
+            case 2: return 80;
+            case 3: return 160;
+            case 4: return 80;
+            case 5: return 320;
+            default: return 20;
+        }
+    }
+
+    private static int entry(int freqMhz) {
+        if (freqMhz < MIN_FREQ || freqMhz > MAX_FREQ) return 0;
+        return TABLE[freqMhz - MIN_FREQ];
+    }
+
+    private static void put(int freqMhz, int channel, int band) {
+        TABLE[freqMhz - MIN_FREQ] = (short) (channel | band << 9);
+    }
+}
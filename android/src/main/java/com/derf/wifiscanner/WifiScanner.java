@@ -1,157 +1,586 @@
 package com.derf.wifiscanner;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.net.wifi.ScanResult;
-import android.net.wifi.WifiManager;
-import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
-import androidx.core.content.ContextCompat;
-
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class WifiScanner {
 
     private static final String TAG = "WifiScanner";
-    // (Optionnel) anti-rafale si tu enchaînes des scans rapides
-    private static final long MIN_SCAN_INTERVAL_MS = 15_000;
-    private long lastScanAt = 0L;
+    // Plancher du mode continu quand le throttling OS est désactivé (options développeur)
+    private static final long MIN_CONTINUOUS_INTERVAL_MS = 1_000;
+    // Refus consécutifs de startScan() avant d'abandonner un scan ponctuel en file
+    private static final int MAX_QUEUED_REJECTIONS = 3;
+    // Au-delà, un startScan() accepté sans broadcast est considéré perdu
+    private static final long AWAITING_BROADCAST_MAX_MS = 10_000;
+
+    // Modes de session continue
+    /** Un scan radio à chaque intervalle. */
+    public static final int MODE_ACTIVE = 0;
+    /** Aucun scan : seuls les résultats des scans du système / d'autres apps sont relayés. */
+    public static final int MODE_PASSIVE = 1;
+    /** Passif, avec un scan radio seulement si aucun résultat frais n'est arrivé dans la fenêtre. */
+    public static final int MODE_HYBRID = 2;
+
+    // Hub unique du process : le plugin et la collecte d'arrière-plan partagent le budget OS par app
+    private static WifiScanner shared;
+
+    // Budget OS modélisé (remplace l'ancien anti-rafale fixe de 15 s)
+    private final ScanThrottle throttle = new ScanThrottle();
+    // Premier plan au sens du throttling OS : activité visible ou service de premier plan actif
+    private boolean appForeground = true;
+    private boolean serviceForeground = false;
+    private final ScanMetrics metrics;
+    // Préconditions en cache (scanner partagé) : l'état Wi-Fi est lu sans appel binder
+    private volatile PreconditionMonitor preconditions;
+    // nanoTime du dernier startScan() accepté, 0 si aucun broadcast attendu (worker uniquement)
+    private long radioStartNanos = 0L;
+    // elapsedRealtime du dernier jeu de résultats frais reçu, quelle qu'en soit la source (worker)
+    private long lastResultsElapsed = 0L;
+
+    // Radio réelle, trace rejouée ou générateur synthétique ; écoutée tant qu'il y a des abonnés
+    private final ScanSource source;
+    private final AtomicBoolean sourceStarted = new AtomicBoolean(false);
 
-    private final Context appContext;
-    private final WifiManager wifiManager;
+    // Hub : un broadcast est lu une seule fois puis distribué à tous les abonnés
+    // (scans ponctuels en attente, session continue, composants natifs)
+    private final CopyOnWriteArrayList<Subscription> subscribers = new CopyOnWriteArrayList<>();
 
-    private BroadcastReceiver scanReceiver;
-    private final AtomicBoolean receiverRegistered = new AtomicBoolean(false);
-    private ScanResultListener callback;
+    // Thread dédié : réception des broadcasts, getScanResults(), dédup et sérialisation
+    // (via les listeners) se font hors du main looper. L'état interne n'est muté que sur ce thread.
+    private final HandlerThread workerThread;
+    private final Handler handler;
+
+    // Sessions continues (plugin, collecte d'arrière-plan), chacune avec ses relances planifiées
+    private final CopyOnWriteArrayList<ContinuousSession> sessions = new CopyOnWriteArrayList<>();
+
+    // Scan ponctuel mis en file faute de budget, relancé au prochain jeton (worker uniquement)
+    private boolean scanQueued = false;
+    private long queuedUntil = 0L;
+    private final Runnable queuedScan = new Runnable() {
+        @Override
+        public void run() {
+            scanQueued = false;
+            runOneShotScan();
+        }
+    };
 
     public interface ScanResultListener {
         void onScanResults(List<ScanResult> results);
         void onScanError(String error);
+
+        /** Budget OS épuisé : le scan partira dans {@code delayMs} au lieu d'échouer. */
+        default void onScanQueued(long delayMs) {}
     }
 
-    public WifiScanner(Context context) {
-        this.appContext = context.getApplicationContext();
-        this.wifiManager = (WifiManager) appContext.getSystemService(Context.WIFI_SERVICE);
-        initReceiver();
-    }
-
-    private void initReceiver() {
-        scanReceiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context ctx, Intent intent) {
-                try {
-                    if (intent == null) return;
-                    if (!WifiManager.SCAN_RESULTS_AVAILABLE_ACTION.equals(intent.getAction())) return;
-
-                    boolean success = intent.getBooleanExtra(WifiManager.EXTRA_RESULTS_UPDATED, false);
-                    if (success) {
-                        List<ScanResult> results = safeGetScanResults();
-                        if (callback != null) callback.onScanResults(results);
-                    } else {
-                        if (callback != null) callback.onScanError("Scan failed");
-                    }
-                } catch (SecurityException se) {
-                    Log.e(TAG, "Permission error while reading results", se);
-                    if (callback != null) callback.onScanError("Permission denied: " + se.getMessage());
-                } catch (Throwable t) {
-                    Log.e(TAG, "Unexpected error while reading results", t);
-                    if (callback != null) callback.onScanError("Unexpected error: " + t.getMessage());
-                } finally {
-                    // One-shot : on se désinscrit après livraison
-                    unregisterReceiverSafely();
-                }
-            }
-        };
+    /** Filtre propre à un abonné : seuls les résultats acceptés lui sont livrés. */
+    public interface ResultFilter {
+        boolean accept(ScanResult result);
     }
 
-    public void startScan(ScanResultListener listener) {
-        this.callback = listener;
+    /** Abonnement au hub ; {@link #cancel()} est idempotent et utilisable depuis n'importe quel thread. */
+    public final class Subscription {
+        final ScanResultListener listener;
+        final ResultFilter filter;
+        final boolean oneShot;
+        volatile boolean active = true;
 
-        if (wifiManager == null) {
-            if (callback != null) callback.onScanError("WifiManager not available");
-            return;
+        Subscription(ScanResultListener listener, ResultFilter filter, boolean oneShot) {
+            this.listener = listener;
+            this.filter = filter;
+            this.oneShot = oneShot;
         }
-        if (!isWifiEnabled()) {
-            if (callback != null) callback.onScanError("WiFi is disabled");
-            return;
+
+        public boolean isActive() {
+            return active;
         }
-        if (!canStartNewScan()) {
-            if (callback != null) callback.onScanError("Scan throttled");
-            return;
+
+        public void cancel() {
+            unsubscribe(this);
+        }
+    }
+
+    /**
+     * Session continue : abonnement persistant, plus une relance planifiée par session. Les
+     * relances de toutes les sessions passent par le même budget : un scan en vol ou un budget
+     * épuisé diffère les autres, et chaque scan est livré à toutes les sessions.
+     */
+    public final class ContinuousSession implements Runnable {
+        final Subscription subscription;
+        final long intervalMs;
+        final int mode;
+
+        ContinuousSession(Subscription subscription, long intervalMs, int mode) {
+            this.subscription = subscription;
+            this.intervalMs = intervalMs;
+            this.mode = mode;
         }
 
-        // Nettoyage préventif
-        unregisterReceiverSafely();
+        /** Intervalle (ou fenêtre) effectif ; 0 en mode passif. */
+        public long intervalMs() {
+            return intervalMs;
+        }
 
-        // Inscription du receiver (compat Android 13+)
-        IntentFilter filter = new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
-        int flags = ContextCompat.RECEIVER_NOT_EXPORTED;
-        ContextCompat.registerReceiver(appContext, scanReceiver, filter, flags);
-        receiverRegistered.set(true);
+        public boolean isActive() {
+            return subscription.active;
+        }
 
-        boolean started = false;
+        public void stop() {
+            stopContinuousScan(this);
+        }
+
+        @Override
+        public void run() {
+            if (!subscription.active) return;
+            long next = intervalMs;
+            long since = SystemClock.elapsedRealtime() - lastResultsElapsed;
+            if (mode == MODE_HYBRID && lastResultsElapsed > 0 && since < intervalMs) {
+                // Mise à jour passive assez récente : prochain contrôle à l'échéance de la fenêtre
+                next = intervalMs - since;
+            } else {
+                triggerContinuousScan(this);
+            }
+            handler.postDelayed(this, next);
+        }
+    }
+
+    /** Source du scanner partagé, créée seulement si celui-ci n'existe pas encore. */
+    interface SourceFactory {
+        ScanSource create();
+    }
+
+    /**
+     * Scanner partagé du process (radio réelle). Plugin et service de collecte s'y abonnent :
+     * un seul modèle de throttling pour le budget OS, qui est par app.
+     */
+    static WifiScanner shared(Context context) {
+        Context appContext = context.getApplicationContext();
+        return shared(appContext, () -> new LiveScanSource(appContext));
+    }
+
+    /**
+     * Comme {@link #shared(Context)}, avec la source de {@code factory} si le scanner n'existe pas
+     * encore (sinon elle est ignorée). Jamais libéré : son thread worker et son
+     * {@link PreconditionMonitor} vivent avec le process.
+     */
+    static synchronized WifiScanner shared(Context context, SourceFactory factory) {
+        if (shared == null) {
+            WifiScanner scanner = new WifiScanner(factory.create(), new ScanMetrics());
+            scanner.preconditions = new PreconditionMonitor(context, scanner.handler);
+            scanner.preconditions.start();
+            shared = scanner;
+        }
+        return shared;
+    }
+
+    /** Scanner branché sur une autre source que la radio (trace rejouée, générateur synthétique). */
+    WifiScanner(ScanSource source, ScanMetrics metrics) {
+        this.metrics = metrics;
+        this.source = source;
+        this.workerThread = new HandlerThread("WifiScanner-worker", Process.THREAD_PRIORITY_BACKGROUND);
+        this.workerThread.start();
+        this.handler = new Handler(workerThread.getLooper());
+        refreshThrottleEnabled();
+    }
+
+    /** Callback de la source (broadcast de résultats), sur le thread worker. */
+    private void onResultsAvailable(boolean success) {
         try {
-            started = wifiManager.startScan();
+            boolean ownScan = radioStartNanos != 0L;
+            if (ownScan) {
+                metrics.recordStage(ScanMetrics.BROADCAST, radioStartNanos);
+                radioStartNanos = 0L;
+            }
+            if (success) {
+                lastResultsElapsed = SystemClock.elapsedRealtime();
+                if (!ownScan) metrics.increment(ScanMetrics.PASSIVE);
+            }
+            if (subscribers.isEmpty()) return;
+
+            if (success) {
+                long fetchStart = System.nanoTime();
+                List<ScanResult> results = source.getScanResults();
+                metrics.recordStage(ScanMetrics.FETCH, fetchStart);
+                dispatchResults(results);
+            } else if (ownScan) {
+                // Échec du scan lancé ici : seuls les appelants ponctuels l'attendaient. Un échec
+                // venu d'ailleurs (autre app, throttling) ne concerne personne ici
+                dispatchScanFailure("Scan failed");
+            }
+        } catch (SecurityException se) {
+            Log.e(TAG, "Permission error while reading results", se);
+            dispatchError("Permission denied: " + se.getMessage());
         } catch (Throwable t) {
-            Log.e(TAG, "startScan() threw", t);
+            Log.e(TAG, "Unexpected error while reading results", t);
+            dispatchError("Unexpected error: " + t.getMessage());
+        } finally {
+            // On arrête d'écouter dès qu'il n'y a plus d'abonné
+            if (subscribers.isEmpty()) stopSourceSafely();
         }
+    }
 
-        if (!started) {
-            unregisterReceiverSafely();
-            if (callback != null) callback.onScanError("Failed to start scan");
+    /**
+     * Abonnement persistant : reçoit chaque jeu de résultats livré tant que la source est
+     * écoutée (scans de ce plugin, du système ou d'autres apps), sans déclencher de scan ni
+     * consommer de budget. Les callbacks sont appelés sur le thread worker.
+     */
+    public Subscription subscribe(ScanResultListener listener, ResultFilter filter) {
+        Subscription s = new Subscription(listener, filter, false);
+        subscribers.add(s);
+        runOnWorker(this::startSourceIfNeeded);
+        return s;
+    }
+
+    public void unsubscribe(Subscription s) {
+        if (s == null || !s.active) return;
+        s.active = false;
+        subscribers.remove(s);
+        runOnWorker(this::onSubscribersChanged);
+    }
+
+    /**
+     * Scan ponctuel : l'abonnement reçoit le prochain jeu de résultats (ou erreur) puis est retiré.
+     * Un scan radio déjà en vol ou en file sert aussi les nouveaux appelants.
+     * Les callbacks du listener sont appelés sur le thread worker.
+     */
+    public Subscription startScan(ScanResultListener listener) {
+        return startScan(listener, null);
+    }
+
+    public Subscription startScan(ScanResultListener listener, ResultFilter filter) {
+        Subscription s = new Subscription(listener, filter, true);
+        subscribers.add(s);
+        runOnWorker(() -> doStartScan(s));
+        return s;
+    }
+
+    private void doStartScan(Subscription s) {
+        if (!s.active) return;
+        if (!source.isAvailable()) {
+            fail(s, "WifiManager not available");
             return;
         }
+        if (!isWifiEnabled()) {
+            fail(s, "WiFi is disabled");
+            return;
+        }
+        startSourceIfNeeded();
+
+        long now = SystemClock.elapsedRealtime();
+        if (scanQueued) {
+            notifyQueued(s, Math.max(0L, queuedUntil - now));
+            return;
+        }
+        if (isAwaitingBroadcast()) return;
+
+        long delay = throttle.delayUntilAllowed(now);
+        if (delay > 0) {
+            queueOneShotScan(delay);
+            return;
+        }
+        runOneShotScan();
+    }
 
-        markScanStartedNow();
+    public ContinuousSession startContinuousScan(long intervalMs, ScanResultListener listener) {
+        return startContinuousScan(intervalMs, MODE_ACTIVE, listener);
     }
 
+    /**
+     * Démarre une session de scan continu : un abonnement persistant est conservé pour toute la
+     * session et les relances sont planifiées ici, sans aller-retour JS. Les broadcasts émis par
+     * d'autres scans (système, autres apps, autres sessions) sont aussi livrés au listener.
+     * Plusieurs sessions peuvent coexister ; chacune est arrêtée par {@link ContinuousSession#stop()}.
+     * <p>
+     * {@link #MODE_PASSIVE} ne lance jamais de scan ; {@link #MODE_HYBRID} n'en lance un que si
+     * aucun résultat frais n'est arrivé depuis {@code intervalMs} (fenêtre de fraîcheur).
+     *
+     * @return la session, dont l'intervalle (ou la fenêtre) effectif est borné par l'intervalle
+     *         soutenable du budget OS ; 0 en mode passif
+     */
+    public ContinuousSession startContinuousScan(long intervalMs, int mode, ScanResultListener listener) {
+        long effective = mode == MODE_PASSIVE ? 0L : Math.max(intervalMs,
+            Math.max(MIN_CONTINUOUS_INTERVAL_MS, throttle.sustainableIntervalMs()));
+        Subscription s = new Subscription(listener, null, false);
+        ContinuousSession session = new ContinuousSession(s, effective, mode);
+        subscribers.add(s);
+        sessions.add(session);
+        runOnWorker(() -> {
+            if (!s.active) return; // arrêtée entre-temps
+            if (!source.isAvailable()) {
+                stopContinuousScan(session);
+                listener.onScanError("WifiManager not available");
+                return;
+            }
+            startSourceIfNeeded();
+            if (mode != MODE_PASSIVE) session.run();
+        });
+        return session;
+    }
+
+    /** Arrête une session continue ; sans effet si elle l'est déjà (null accepté). */
+    public void stopContinuousScan(ContinuousSession session) {
+        if (session == null) return;
+        sessions.remove(session);
+        unsubscribe(session.subscription);
+        runOnWorker(() -> handler.removeCallbacks(session));
+    }
+
+    /**
+     * État Wi-Fi en O(1) depuis le cache du {@link PreconditionMonitor} (broadcast
+     * {@code WIFI_STATE_CHANGED_ACTION}) ; sans moniteur (scanner de test), celui de la source.
+     */
     public boolean isWifiEnabled() {
-        return wifiManager != null && wifiManager.isWifiEnabled();
+        PreconditionMonitor p = preconditions;
+        return p != null ? p.isWifiEnabled() : source.isWifiEnabled();
+    }
+
+    /** null hors scanner partagé. */
+    PreconditionMonitor getPreconditions() {
+        return preconditions;
     }
 
     public List<ScanResult> getLastScanResults() {
         try {
-            return safeGetScanResults();
+            return source.getScanResults();
         } catch (Throwable t) {
             Log.e(TAG, "getLastScanResults() failed", t);
             return null;
         }
     }
 
+    /**
+     * Bascule le budget modélisé entre premier plan (4 / 2 min) et arrière-plan (1 / 30 min) selon
+     * la visibilité de l'app ; un service de premier plan actif garde le budget de premier plan.
+     */
+    public synchronized void setForeground(boolean foreground) {
+        appForeground = foreground;
+        applyForeground();
+    }
+
+    /** Service de premier plan démarré ou arrêté (collecte d'arrière-plan). */
+    synchronized void setForegroundService(boolean running) {
+        serviceForeground = running;
+        applyForeground();
+    }
+
+    private void applyForeground() {
+        boolean foreground = appForeground || serviceForeground;
+        throttle.setForeground(foreground);
+        if (foreground) refreshThrottleEnabled();
+    }
+
+    ScanThrottle getThrottle() {
+        return throttle;
+    }
+
+    ScanMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Abandonne tous les scans ponctuels en attente (les abonnements persistants sont conservés). */
     public void cleanup() {
-        callback = null;
-        unregisterReceiverSafely();
+        for (Subscription s : subscribers) {
+            if (s.oneShot) unsubscribe(s);
+        }
+    }
+
+    /** Arrête le thread worker ; l'instance n'est plus utilisable ensuite (pas pour {@link #shared}). */
+    public void release() {
+        sessions.clear();
+        for (Subscription s : subscribers) s.active = false;
+        subscribers.clear();
+        handler.removeCallbacksAndMessages(null);
+        handler.post(() -> {
+            stopSourceSafely();
+            workerThread.quitSafely();
+        });
+    }
+
+    Looper getWorkerLooper() {
+        return workerThread.getLooper();
     }
 
     // ---------- internes ----------
 
-    private List<ScanResult> safeGetScanResults() {
-        List<ScanResult> results = wifiManager.getScanResults();
-        return results != null ? results : new ArrayList<>();
+    private void runOnWorker(Runnable r) {
+        if (Looper.myLooper() == handler.getLooper()) r.run();
+        else handler.post(r);
+    }
+
+    private void startSourceIfNeeded() {
+        if (!sourceStarted.compareAndSet(false, true)) return;
+        source.start(handler, this::onResultsAvailable);
+    }
+
+    private void runOneShotScan() {
+        if (!hasOneShotSubscribers()) return;
+        if (requestRadioScan()) return;
+        // Refus de l'OS : on réessaie au prochain jeton (backoff appris), puis on abandonne
+        if (throttle.consecutiveRejections() < MAX_QUEUED_REJECTIONS) {
+            queueOneShotScan(throttle.delayUntilAllowed(SystemClock.elapsedRealtime()));
+            return;
+        }
+        for (Subscription s : subscribers) {
+            if (s.oneShot) fail(s, "Failed to start scan");
+        }
+    }
+
+    private void queueOneShotScan(long delayMs) {
+        Log.d(TAG, "scan queued → budget exhausted, next token in " + delayMs + "ms");
+        metrics.increment(ScanMetrics.THROTTLED);
+        handler.removeCallbacks(queuedScan);
+        handler.postDelayed(queuedScan, delayMs);
+        scanQueued = true;
+        queuedUntil = SystemClock.elapsedRealtime() + delayMs;
+        for (Subscription s : subscribers) {
+            if (s.oneShot) notifyQueued(s, delayMs);
+        }
+    }
+
+    private boolean requestRadioScan() {
+        boolean started = false;
+        try {
+            started = source.startScan();
+        } catch (Throwable t) {
+            Log.e(TAG, "startScan() threw", t);
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (started) {
+            throttle.onStartAccepted(now);
+            metrics.increment(ScanMetrics.SCANS);
+            radioStartNanos = System.nanoTime();
+        } else {
+            throttle.onStartRejected(now);
+            metrics.increment(ScanMetrics.REJECTED);
+        }
+        return started;
     }
 
-    private void unregisterReceiverSafely() {
-        if (receiverRegistered.compareAndSet(true, false)) {
+    private void refreshThrottleEnabled() {
+        throttle.setEnabled(source.isScanThrottleEnabled());
+    }
+
+    private void triggerContinuousScan(ContinuousSession session) {
+        Subscription s = session.subscription;
+        if (!isWifiEnabled()) {
+            deliverError(s, "WiFi is disabled");
+            return;
+        }
+        // Un scan ponctuel récent compte dans le budget : on attend le prochain tick
+        if (isAwaitingBroadcast() || throttle.delayUntilAllowed(SystemClock.elapsedRealtime()) > 0) return;
+        if (!requestRadioScan()) deliverError(s, "Failed to start scan");
+    }
+
+    /** Un startScan() accepté attend encore son broadcast : inutile d'en relancer un. */
+    private boolean isAwaitingBroadcast() {
+        return radioStartNanos != 0L
+            && System.nanoTime() - radioStartNanos < AWAITING_BROADCAST_MAX_MS * 1_000_000L;
+    }
+
+    private boolean hasOneShotSubscribers() {
+        for (Subscription s : subscribers) {
+            if (s.oneShot) return true;
+        }
+        return false;
+    }
+
+    /** Thread worker : ménage après un retrait d'abonné. */
+    private void onSubscribersChanged() {
+        if (scanQueued && !hasOneShotSubscribers()) {
+            handler.removeCallbacks(queuedScan);
+            scanQueued = false;
+        }
+        if (subscribers.isEmpty()) stopSourceSafely();
+    }
+
+    /** Résultats lus une fois, distribués à chaque abonné (filtrés pour ceux qui ont un filtre). */
+    private void dispatchResults(List<ScanResult> results) {
+        List<ScanResult> shared = Collections.unmodifiableList(results);
+        for (Subscription s : subscribers) {
+            if (s.oneShot && !detach(s)) continue;
+            List<ScanResult> delivered = shared;
+            if (s.filter != null) {
+                delivered = new ArrayList<>();
+                for (int i = 0, n = results.size(); i < n; i++) {
+                    ScanResult r = results.get(i);
+                    if (s.filter.accept(r)) delivered.add(r);
+                }
+            }
             try {
-                appContext.unregisterReceiver(scanReceiver);
-            } catch (IllegalArgumentException ignored) {
-                // Déjà désinscrit (course), on ignore
+                s.listener.onScanResults(delivered);
             } catch (Throwable t) {
-                Log.w(TAG, "unregisterReceiver failed", t);
+                Log.e(TAG, "subscriber onScanResults failed", t);
             }
         }
+        onSubscribersChanged();
     }
 
-    private boolean canStartNewScan() {
-        return System.currentTimeMillis() - lastScanAt >= MIN_SCAN_INTERVAL_MS;
+    private void dispatchError(String error) {
+        for (Subscription s : subscribers) {
+            if (s.oneShot && !detach(s)) continue;
+            deliverError(s, error);
+        }
+        onSubscribersChanged();
     }
 
-    private void markScanStartedNow() {
-        lastScanAt = System.currentTimeMillis();
+    /** Échec d'un scan radio : les abonnements persistants gardent le jeu de résultats précédent. */
+    private void dispatchScanFailure(String error) {
+        for (Subscription s : subscribers) {
+            if (!s.oneShot || !detach(s)) continue;
+            deliverError(s, error);
+        }
+        onSubscribersChanged();
+    }
+
+    private void fail(Subscription s, String error) {
+        if (!detach(s)) return;
+        deliverError(s, error);
+        onSubscribersChanged();
+    }
+
+    private void deliverError(Subscription s, String error) {
+        if (s == null) return;
+        try {
+            s.listener.onScanError(error);
+        } catch (Throwable t) {
+            Log.e(TAG, "subscriber onScanError failed", t);
+        }
+    }
+
+    private void notifyQueued(Subscription s, long delayMs) {
+        try {
+            s.listener.onScanQueued(delayMs);
+        } catch (Throwable t) {
+            Log.e(TAG, "subscriber onScanQueued failed", t);
+        }
+    }
+
+    /** Retire un abonnement ponctuel avant livraison ; false s'il a déjà été servi ou annulé. */
+    private boolean detach(Subscription s) {
+        if (!s.active) return false;
+        s.active = false;
+        subscribers.remove(s);
+        return true;
+    }
+
+    private void stopSourceSafely() {
+        if (sourceStarted.compareAndSet(true, false)) {
+            try {
+                source.stop();
+            } catch (Throwable t) {
+                Log.w(TAG, "scan source stop failed", t);
+            }
+        }
     }
 }
@@ -2,12 +2,12 @@ package com.derf.wifiscanner;
 
 import android.Manifest;
 import android.content.Context;
+import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.location.LocationManager;
 import android.net.wifi.ScanResult;
 import android.os.Build;
 import android.os.Handler;
-import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.getcapacitor.JSArray;
@@ -20,9 +20,17 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
 import com.getcapacitor.annotation.PermissionCallback;
 
-import java.util.HashSet;
+import androidx.core.content.ContextCompat;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @CapacitorPlugin(
@@ -42,13 +50,150 @@ public class WifiScannerPlugin extends Plugin {
     private WifiScanner scanner;
     private final AtomicBoolean inFlight = new AtomicBoolean(false);
 
+    private static final long DEFAULT_SCAN_DEADLINE_MS = 7_000;
+    // Politique à l'échéance ou sur échec du scan (option fallback de scan())
+    private static final int FALLBACK_REJECT = 0;
+    private static final int FALLBACK_CACHED = 1;
+    private static final int FALLBACK_PARTIAL = 2;
+    private static final String[] FALLBACK_NAMES = { "reject", "cached", "partialThenUpdate" };
+    // Attente max des résultats frais après une réponse partielle (partialThenUpdate)
+    private static final long SCAN_UPDATE_TIMEOUT_MS = 30_000;
+    // Watchdogs des appels, sur le thread worker du scanner (pas le main looper)
+    private Handler workerHandler;
+    // Appelants rattachés au scan en cours (garde : le verrou de la liste)
+    private final List<PendingScan> pendingScans = new ArrayList<>();
+    private long scanGeneration = 0L;
+    // Identifiant des appels, repris par l'événement scanUpdate (garde : le verrou de la liste)
+    private long nextScanId = 0L;
+    // Abonnement ponctuel du scan en cours auprès du hub du scanner (garde : le verrou de la liste)
+    private WifiScanner.Subscription activeScan;
+
+    private static final long DEFAULT_CONTINUOUS_INTERVAL_MS = 30_000;
+    // Intervalle demandé par JS (0 = pas de session continue), conservé pour la reprise au resume
+    private volatile long continuousIntervalMs = 0L;
+    private volatile int continuousMode = WifiScanner.MODE_ACTIVE;
+    private volatile ScanDeltaTracker deltaTracker;
+    private volatile ScanQuery continuousQuery = ScanSerializer.QUERY_FULL;
+    // Session continue de ce plugin auprès du hub (la collecte d'arrière-plan a la sienne)
+    private volatile WifiScanner.ContinuousSession continuousSession;
+
+    // Snapshots dédupliqués (tableaux primitifs réutilisés d'un scan à l'autre), un par chemin
+    private final SsidPool ssidPool = new SsidPool();
+    // Derniers résultats livrés (scan ponctuel ou continu) : sert aussi de cache pour maxAgeMs
+    private final ScanSnapshotStore scanStore = new ScanSnapshotStore(ssidPool);
+    private final ScanSnapshotStore lastResultsStore = new ScanSnapshotStore(ssidPool);
+    // Sous-ensemble filtré du mode delta (sous le verrou de scanStore)
+    private final ScanSnapshotStore filteredStore = new ScanSnapshotStore(ssidPool);
+
+    // Historique persistant (segments mappés), ouvert à la demande
+    private static final String HISTORY_DIR = "wifi-scan-history";
+    private static final long DEFAULT_HISTORY_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_HISTORY_SEGMENT_BYTES = 4L * 1024 * 1024;
+    private static final int DEFAULT_HISTORY_PAGE = 500;
+    private static final int MAX_HISTORY_PAGE = 5_000;
+    private volatile ScanHistoryStore history;
+    // Config demandée à l'ouverture de history (garde : le verrou du plugin)
+    private long historyMaxBytes, historySegmentBytes;
+    private volatile boolean historyRecording = false;
+    private long lastRecordedMicros = -1L;
+
+    // Sources simulées (config scanSource), pour la charge et le rejeu
+    private static final int DEFAULT_SIMULATED_LATENCY_MS = 1_000;
+    private static final int DEFAULT_SYNTHETIC_APS = 2_000;
+
+    // Collecte d'arrière-plan (service de premier plan), vidée par lots vers JS
+    private static final long DEFAULT_BACKGROUND_INTERVAL_MS = 60_000;
+    private static final int MAX_BUFFERED_SCANS = 100_000;
+    private static final int DEFAULT_BUFFER_BATCH = 50;
+    private static final int MAX_BUFFER_BATCH = 1_000;
+
+    // Séries RSSI lissées par BSSID, alimentées à chaque livraison
+    private final SignalTracker signalTracker = new SignalTracker();
+
+    // Empreintes de référence (k-NN), chargées par JS
+    private static final int DEFAULT_FINGERPRINT_MATCHES = 5;
+    private final FingerprintIndex fingerprintIndex = new FingerprintIndex();
+
+    // Fabricants par OUI (asset mappé au premier lookup)
+    private OuiIndex ouiIndex;
+
+    // Sérialisation vers JS (canaux, format binaire, k-NN, fabricants)
+    private ScanSerializer serializer;
+
+    // Latences par étape et compteurs du pipeline (ceux du scanner partagé)
+    private ScanMetrics metrics;
+
+    // Préconditions en cache (broadcasts Wi-Fi / localisation, permissions relues au besoin)
+    private PreconditionMonitor preconditions;
+    // Logs détaillés des permissions : config "debugLogging" du plugin
+    private boolean debugLogging = false;
+
     @Override
     public void load() {
         super.load();
-        scanner = new WifiScanner(getActivity()); // ApplicationContext inside
+        ouiIndex = new OuiIndex(getContext().getAssets());
+        serializer = new ScanSerializer(signalTracker, fingerprintIndex, ouiIndex);
+        // Hub du process, partagé avec la collecte d'arrière-plan (un seul budget OS par app)
+        scanner = WifiScanner.shared(getContext(), this::createScanSource);
+        metrics = scanner.getMetrics();
+        workerHandler = new Handler(scanner.getWorkerLooper());
+        debugLogging = getConfig().getBoolean("debugLogging", false);
+        // Moniteur du scanner partagé : le hub lit le même état Wi-Fi en cache
+        preconditions = scanner.getPreconditions();
+        // Le service de collecte démarre après la résolution de startBackgroundCollection
+        BackgroundCollector.get(getContext()).setListener(error -> {
+            JSObject ev = new JSObject();
+            ev.put("error", error);
+            notifyListeners("backgroundCollectionError", ev);
+        });
         Log.d(TAG, "WifiScanner loaded");
     }
 
+    /**
+     * Source des scans du hub (s'il n'existe pas encore), config {@code scanSource} :
+     * {@code "live"} (radio, défaut),
+     * {@code "synthetic"} ({@code syntheticAccessPoints}, {@code passiveIntervalMs}) ou
+     * {@code "replay"} (historique enregistré par enableHistory, {@code replaySpeed}).
+     * {@code scanLatencyMs} fixe le délai startScan → résultats des sources simulées.
+     */
+    private ScanSource createScanSource() {
+        String kind = getConfig().getString("scanSource", "live");
+        if ("live".equals(kind)) return new LiveScanSource(getActivity()); // ApplicationContext inside
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            Log.w(TAG, "scanSource " + kind + " requires Android 11+, using live scans");
+            return new LiveScanSource(getActivity());
+        }
+        long latencyMs = getConfig().getInt("scanLatencyMs", DEFAULT_SIMULATED_LATENCY_MS);
+        if ("synthetic".equals(kind)) {
+            Log.d(TAG, "scanSource → synthetic");
+            return new SyntheticScanSource(
+                getConfig().getInt("syntheticAccessPoints", DEFAULT_SYNTHETIC_APS),
+                latencyMs, getConfig().getInt("passiveIntervalMs", 0), 1L);
+        }
+        if ("replay".equals(kind)) {
+            try (ScanHistoryStore trace = new ScanHistoryStore(new File(getContext().getFilesDir(), HISTORY_DIR),
+                    DEFAULT_HISTORY_MAX_BYTES, DEFAULT_HISTORY_SEGMENT_BYTES)) {
+                ReplayScanSource.Trace t = ReplayScanSource.Trace.fromHistory(trace);
+                Log.d(TAG, "scanSource → replay scans=" + t.scans);
+                double speed = getConfig().getInt("replaySpeed", 0);
+                return new ReplayScanSource(t, latencyMs, speed);
+            } catch (IOException e) {
+                Log.e(TAG, "cannot load scan trace, using live scans", e);
+            }
+        } else {
+            Log.w(TAG, "unknown scanSource " + kind + ", using live scans");
+        }
+        return new LiveScanSource(getActivity());
+    }
+
+    /**
+     * Scanner partagé, pour les composants natifs qui veulent recevoir les mêmes scans que la
+     * WebView ({@link WifiScanner#subscribe}) sans consommer de budget supplémentaire.
+     */
+    public WifiScanner getScanner() {
+        return scanner;
+    }
+
     /* ---------------- Helpers LOGS & Permissions ---------------- */
 
     private boolean needsNearbyPermission() {
@@ -63,6 +208,7 @@ public class WifiScannerPlugin extends Plugin {
 
     /** Logge les états de TOUTES les permissions gérées par le plugin. */
     private void logAllPermStates(String context) {
+        if (!debugLogging) return;
         PermissionState pAccess   = getPermissionState("accessWifi");
         PermissionState pChange   = getPermissionState("changeWifi");
         PermissionState pLoc      = getPermissionState("location");
@@ -80,6 +226,7 @@ public class WifiScannerPlugin extends Plugin {
 
     /** Logge le résultat de checkSelfPermission (niveau Android) pour chaque permission. */
     private void logSelfPermissionChecks(String context) {
+        if (!debugLogging) return;
         boolean hasAccess   = getActivity().checkSelfPermission(Manifest.permission.ACCESS_WIFI_STATE) == PackageManager.PERMISSION_GRANTED;
         boolean hasChange   = getActivity().checkSelfPermission(Manifest.permission.CHANGE_WIFI_STATE) == PackageManager.PERMISSION_GRANTED;
         boolean hasFine     = getActivity().checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
@@ -93,34 +240,9 @@ public class WifiScannerPlugin extends Plugin {
         Log.d(TAG, "=========================================");
     }
 
+    /** Relit les permissions (et met à jour le cache des préconditions). */
     private boolean hasAllRequiredWifiPermissions() {
-        boolean ok =
-            getActivity().checkSelfPermission(Manifest.permission.ACCESS_WIFI_STATE) == PackageManager.PERMISSION_GRANTED &&
-            getActivity().checkSelfPermission(Manifest.permission.CHANGE_WIFI_STATE) == PackageManager.PERMISSION_GRANTED;
-
-        if (needsNearbyPermission()) {
-            ok = ok && (getActivity().checkSelfPermission(Manifest.permission.NEARBY_WIFI_DEVICES) == PackageManager.PERMISSION_GRANTED);
-        } else {
-            ok = ok && (getActivity().checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED);
-        }
-        return ok;
-    }
-
-    private boolean isLocationEnabled() {
-        try {
-            Context ctx = getContext();
-            LocationManager lm = (LocationManager) ctx.getSystemService(Context.LOCATION_SERVICE);
-            boolean enabled = lm != null && (
-                lm.isProviderEnabled(LocationManager.GPS_PROVIDER) ||
-                lm.isProviderEnabled(LocationManager.NETWORK_PROVIDER)
-            );
-            Log.d(TAG, "Location toggle (system) ON? " + enabled);
-            return enabled;
-        } catch (Throwable t) {
-            Log.w(TAG, "isLocationEnabled(): " + t.getMessage());
-            // En cas d’erreur, on ne bloque pas
-            return true;
-        }
+        return preconditions.refreshPermissions();
     }
 
     /* ---------------- Plugin API: Permissions ---------------- */
@@ -178,12 +300,26 @@ public class WifiScannerPlugin extends Plugin {
 
     /* ---------------- Utils ---------------- */
 
-    private int freqToChannel(int freqMhz) {
-        if (freqMhz >= 2412 && freqMhz <= 2472) return (freqMhz - 2407) / 5; // 2.4 GHz
-        if (freqMhz == 2484) return 14;
-        if (freqMhz >= 5000 && freqMhz <= 5900) return (freqMhz - 5000) / 5; // 5 GHz
-        if (freqMhz >= 5955 && freqMhz <= 7115) return (freqMhz - 5955) / 5 + 1; // 6 GHz approx
-        return -1;
+    /** Gardes communes aux scans (ponctuel ou continu) ; rejette l'appel et renvoie false si KO. */
+    private boolean checkScanPreconditions(PluginCall call, String context) {
+        // État en cache : aucun appel système sur le chemin du scan
+        String failure = preconditions.check();
+        if (failure == null) return true;
+        Log.w(TAG, context + " reject → " + failure);
+        call.reject(failure);
+        return false;
+    }
+
+    /** Options de requête de l'appel, ou null ; rejette l'appel si elles sont invalides. */
+    private boolean parseQuery(PluginCall call, int defaultFields, ScanQuery[] out) {
+        try {
+            out[0] = ScanQuery.fromCall(call, defaultFields);
+            return true;
+        } catch (Exception e) {
+            Log.w(TAG, "invalid query: " + e.getMessage());
+            call.reject("Invalid query: " + e.getMessage());
+            return false;
+        }
     }
 
     /* ---------------- Public API ---------------- */
@@ -206,23 +342,14 @@ public class WifiScannerPlugin extends Plugin {
                 call.reject("No scan results available");
                 return;
             }
-            JSArray arr = new JSArray();
-            Set<String> seen = new HashSet<>();
-
-            for (ScanResult r : results) {
-                if (r.BSSID == null || !seen.add(r.BSSID)) continue;
-                JSObject o = new JSObject();
-                o.put("ssid",  r.SSID  != null ? r.SSID  : "");
-                o.put("bssid", r.BSSID != null ? r.BSSID : "");
-                o.put("signalStrength", r.level);
-                o.put("frequency", r.frequency);
-                o.put("channel", freqToChannel(r.frequency));
-                arr.put(o);
+            ScanQuery[] query = new ScanQuery[1];
+            if (!parseQuery(call, ScanQuery.FIELDS_COMPACT, query)) return;
+            JSObject ret;
+            synchronized (lastResultsStore) {
+                lastResultsStore.ingest(results);
+                ret = serializer.buildScanPayload(lastResultsStore, false, query[0] != null ? query[0] : ScanSerializer.QUERY_COMPACT);
             }
-            JSObject ret = new JSObject();
-            ret.put("networks", arr);
-            ret.put("count", arr.length());
-            Log.d(TAG, "getLastScanResults → count=" + arr.length());
+            Log.d(TAG, "getLastScanResults → count=" + ret.getInteger("count"));
             call.resolve(ret);
         } catch (Throwable t) {
             Log.e(TAG, "getLastScanResults error: " + t.getMessage(), t);
@@ -232,107 +359,996 @@ public class WifiScannerPlugin extends Plugin {
 
     @PluginMethod
     public void scan(PluginCall call) {
-        // Log complet AVANT chaque garde
+        final long startNanos = System.nanoTime();
+        // Log complet AVANT chaque garde (debugLogging uniquement)
         logAllPermStates("scan/before");
         logSelfPermissionChecks("scan/before");
 
-        boolean hasAccess = getActivity().checkSelfPermission(Manifest.permission.ACCESS_WIFI_STATE) == PackageManager.PERMISSION_GRANTED;
-        boolean hasChange = getActivity().checkSelfPermission(Manifest.permission.CHANGE_WIFI_STATE) == PackageManager.PERMISSION_GRANTED;
-        boolean hasFine   = getActivity().checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
-        boolean hasNear   = !needsNearbyPermission() || (getActivity().checkSelfPermission(Manifest.permission.NEARBY_WIFI_DEVICES) == PackageManager.PERMISSION_GRANTED);
+        boolean ready = checkScanPreconditions(call, "scan");
+        metrics.recordStage(ScanMetrics.GUARDS, startNanos);
+        if (!ready) return;
+        ScanQuery[] query = new ScanQuery[1];
+        if (!parseQuery(call, ScanQuery.FIELDS_ALL, query)) return;
+
+        // Cache : résultats assez frais → réponse immédiate, sans toucher au radio ni au budget
+        Long maxAgeMs = call.getLong("maxAgeMs");
+        if (maxAgeMs != null && resolveFromCache(call, maxAgeMs, query[0])) return;
+
+        // Échéance de l'appelant et repli une fois dépassée
+        Long deadlineOption = call.getLong("deadlineMs");
+        final boolean explicitDeadline = deadlineOption != null;
+        final long deadlineMs = explicitDeadline ? Math.max(0L, deadlineOption) : DEFAULT_SCAN_DEADLINE_MS;
+        String fallbackName = call.getString("fallback", FALLBACK_NAMES[FALLBACK_REJECT]);
+        final int fallback = Arrays.asList(FALLBACK_NAMES).indexOf(fallbackName);
+        if (fallback < 0) {
+            call.reject("Unknown fallback: " + fallbackName);
+            return;
+        }
+
+        // Single-flight : tout appel arrivant pendant un scan s'y rattache au lieu d'être rejeté
+        final PendingScan pending = new PendingScan(call, explicitDeadline, deadlineMs, fallback, query[0], startNanos);
+        pending.timeout = () -> onPendingScanDeadline(pending);
+        final boolean leader;
+        final long generation;
+        final int waiters;
+        synchronized (pendingScans) {
+            pending.scanId = ++nextScanId;
+            pendingScans.add(pending);
+            leader = inFlight.compareAndSet(false, true);
+            if (leader) scanGeneration++;
+            generation = scanGeneration;
+            waiters = pendingScans.size();
+        }
+        // Watchdog propre à chaque appelant
+        workerHandler.postDelayed(pending.timeout, deadlineMs);
+
+        if (!leader) {
+            metrics.increment(ScanMetrics.COALESCED);
+            Log.d(TAG, "scan coalesced → attached to in-flight scan (waiters=" + waiters + ")");
+            return;
+        }
+
+        // startScan et la livraison des résultats passent par le thread worker du scanner ;
+        // resolve() repasse par le bridge
+        WifiScanner.Subscription subscription = scanner.startScan(new WifiScanner.ScanResultListener() {
+            @Override
+            public void onScanResults(List<ScanResult> results) {
+                List<PendingScan> settled = drainPendingScans(generation);
+                if (settled == null || settled.isEmpty()) return;
+                try {
+                    // Payload par défaut construit une seule fois, partagé par tous les appelants ;
+                    // seuls les appelants avec une requête (ou déjà servis en partiel) ont le leur
+                    long processStart = System.nanoTime();
+                    JSObject[] payloads = new JSObject[settled.size()];
+                    JSObject shared = null;
+                    synchronized (scanStore) {
+                        scanStore.ingest(results);
+                        onScanDelivered(scanStore);
+                        for (int i = 0; i < payloads.length; i++) {
+                            PendingScan p = settled.get(i);
+                            if (p.query != null || p.partial) {
+                                payloads[i] = serializer.buildScanPayload(scanStore, false, p.query);
+                            } else {
+                                if (shared == null) shared = serializer.buildScanPayload(scanStore, false, null);
+                                payloads[i] = shared;
+                            }
+                        }
+                    }
+                    metrics.recordStage(ScanMetrics.PROCESS, processStart);
+                    Log.d(TAG, "scan success → count=" + scanStore.size() + " callers=" + settled.size());
+                    for (int i = 0; i < payloads.length; i++) {
+                        PendingScan p = settled.get(i);
+                        long resolveStart = System.nanoTime();
+                        if (p.partial) {
+                            // Appel déjà résolu à l'échéance : les résultats frais suivent en événement
+                            payloads[i].put("scanId", p.scanId);
+                            notifyListeners("scanUpdate", payloads[i]);
+                            metrics.recordStage(ScanMetrics.RESOLVE, resolveStart);
+                            continue;
+                        }
+                        p.call.resolve(payloads[i]);
+                        metrics.recordStage(ScanMetrics.RESOLVE, resolveStart);
+                        metrics.recordStage(ScanMetrics.TOTAL, p.startNanos);
+                    }
+                } catch (Throwable t) {
+                    Log.e(TAG, "scan onScanResults error: " + t.getMessage(), t);
+                    for (PendingScan p : settled) {
+                        if (p.partial) notifyScanUpdateError(p, "Error processing scan results: " + t.getMessage());
+                        else p.call.reject("Error processing scan results: " + t.getMessage());
+                    }
+                }
+            }
+
+            @Override
+            public void onScanError(String error) {
+                List<PendingScan> settled = drainPendingScans(generation);
+                if (settled == null) return;
+                Log.e(TAG, "scan onScanError: " + error + " callers=" + settled.size());
+                for (PendingScan p : settled) settleFailedScan(p, error);
+            }
 
-        Log.d(TAG, "scan guards → hasAccess=" + hasAccess + " hasChange=" + hasChange + " hasFine=" + hasFine + " hasNearby=" + hasNear);
+            @Override
+            public void onScanQueued(long delayMs) {
+                synchronized (pendingScans) {
+                    for (PendingScan p : pendingScans) {
+                        if (p.partial) continue;
+                        if (!p.explicitDeadline) {
+                            // L'échéance par défaut part du départ effectif du scan
+                            workerHandler.removeCallbacks(p.timeout);
+                            workerHandler.postDelayed(p.timeout, delayMs + DEFAULT_SCAN_DEADLINE_MS);
+                        } else if (p.fallback != FALLBACK_REJECT
+                                && (System.nanoTime() - p.startNanos) / 1_000_000L + delayMs >= p.deadlineMs) {
+                            // Le scan ne partira pas avant l'échéance : repli tout de suite plutôt qu'attendre
+                            workerHandler.removeCallbacks(p.timeout);
+                            workerHandler.post(p.timeout);
+                        }
+                    }
+                }
+            }
+        });
+        // Publication sous le verrou : un détachement ne peut annuler que l'abonnement de sa génération
+        boolean current;
+        synchronized (pendingScans) {
+            current = generation == scanGeneration && inFlight.get();
+            if (current) activeScan = subscription;
+        }
+        // Scan déjà réglé ou abandonné pendant le démarrage : l'abonnement n'a plus d'appelant
+        if (!current) subscription.cancel();
+    }
+
+    private boolean resolveFromCache(PluginCall call, long maxAgeMs, ScanQuery query) {
+        JSObject ret;
+        synchronized (scanStore) {
+            long newest = scanStore.newestTimestampMicros() / 1000;
+            if (scanStore.size() == 0 || newest <= 0) return false;
+            long age = SystemClock.elapsedRealtime() - newest;
+            if (age > maxAgeMs) return false;
+            ret = serializer.buildScanPayload(scanStore, true, query);
+        }
+        metrics.increment(ScanMetrics.CACHE_HITS);
+        Log.d(TAG, "scan served from cache → count=" + ret.getInteger("count") + " ageMs=" + ret.getInteger("ageMs"));
+        call.resolve(ret);
+        return true;
+    }
+
+    /**
+     * Réponse de repli depuis le cache OS ({@code getScanResults()}), marquée {@code stale},
+     * avec l'âge de chaque AP.
+     * @return null si le cache OS est vide
+     */
+    private JSObject buildStalePayload(ScanQuery query) {
+        List<ScanResult> results = scanner.getLastScanResults();
+        if (results == null || results.isEmpty()) return null;
+        // Copie : la requête de l'appelant reste intacte (QUERY_FULL contient déjà ageMs)
+        if (query != null && !query.has(ScanQuery.F_AGE)) query = query.withFields(query.fields | ScanQuery.F_AGE);
+        JSObject ret;
+        synchronized (lastResultsStore) {
+            lastResultsStore.ingest(results);
+            ret = serializer.buildScanPayload(lastResultsStore, true, query);
+        }
+        ret.put("stale", true);
+        return ret;
+    }
 
-        if (!hasAllRequiredWifiPermissions()) {
-            Log.w(TAG, "scan reject → Missing required permissions for Wi-Fi scanning");
-            call.reject("Missing required permissions for Wi-Fi scanning");
+    /**
+     * Règle un appelant dont le scan a échoué ou a été abandonné : cache OS si sa politique
+     * l'accepte, sinon rejet (événement scanError s'il a déjà reçu une réponse partielle).
+     */
+    private void settleFailedScan(PendingScan p, String error) {
+        if (p.partial) {
+            notifyScanUpdateError(p, "Scan failed: " + error);
             return;
         }
-        if (!scanner.isWifiEnabled()) {
-            Log.w(TAG, "scan reject → Wi-Fi is disabled");
-            call.reject("Wi-Fi is disabled");
+        // Démarrage refusé ou scan échoué : le cache OS vaut mieux que rien si l'appelant l'accepte
+        JSObject stale = p.fallback != FALLBACK_REJECT ? buildStalePayload(p.query) : null;
+        if (stale == null) {
+            metrics.increment(ScanMetrics.FAILED);
+            p.call.reject("Scan failed: " + error);
             return;
         }
-        if (!isLocationEnabled()) {
-            Log.w(TAG, "scan reject → Device location must be turned ON to scan Wi-Fi");
-            call.reject("Device location must be turned ON to scan Wi-Fi");
+        stale.put("error", error);
+        resolveStale(p, stale);
+    }
+
+    private void resolveStale(PendingScan pending, JSObject stale) {
+        metrics.increment(ScanMetrics.STALE);
+        Log.d(TAG, "scan fallback → " + FALLBACK_NAMES[pending.fallback] + " count=" + stale.getInteger("count")
+            + " ageMs=" + stale.getInteger("ageMs"));
+        pending.call.resolve(stale);
+        metrics.recordStage(ScanMetrics.TOTAL, pending.startNanos);
+    }
+
+    /** Échec du scan après une réponse partielle : l'appel est déjà résolu, seul l'événement reste. */
+    private void notifyScanUpdateError(PendingScan pending, String error) {
+        Log.w(TAG, "scan update failed → scanId=" + pending.scanId + " " + error);
+        JSObject ev = new JSObject();
+        ev.put("error", error);
+        ev.put("scanId", pending.scanId);
+        notifyListeners("scanError", ev);
+    }
+
+    /**
+     * Détache tous les appelants du scan en cours et libère le single-flight.
+     * @return null si {@code generation} n'est plus le scan courant (livraison tardive)
+     */
+    private List<PendingScan> drainPendingScans(long generation) {
+        List<PendingScan> settled;
+        synchronized (pendingScans) {
+            if (generation != scanGeneration || !inFlight.get()) return null;
+            settled = new ArrayList<>(pendingScans);
+            pendingScans.clear();
+            inFlight.set(false);
+            activeScan = null;
+        }
+        for (PendingScan p : settled) workerHandler.removeCallbacks(p.timeout);
+        return settled;
+    }
+
+    /**
+     * Échéance d'un appelant : rejet, ou réponse depuis le cache OS selon sa politique. En
+     * {@code partialThenUpdate}, l'appelant reste rattaché au scan (événement {@code scanUpdate}) ;
+     * une seconde échéance le détache si les résultats frais n'arrivent jamais.
+     */
+    private void onPendingScanDeadline(PendingScan pending) {
+        if (pending.partial) {
+            if (detachPendingScan(pending)) notifyScanUpdateError(pending, "Wi-Fi scan timeout");
+            return;
+        }
+        JSObject stale = pending.fallback != FALLBACK_REJECT ? buildStalePayload(pending.query) : null;
+        boolean keep = stale != null && pending.fallback == FALLBACK_PARTIAL;
+        if (keep) {
+            synchronized (pendingScans) {
+                if (!pendingScans.contains(pending)) return;
+                pending.partial = true;
+            }
+            stale.put("scanId", pending.scanId);
+            stale.put("updatePending", true);
+            workerHandler.postDelayed(pending.timeout, SCAN_UPDATE_TIMEOUT_MS);
+        } else if (!detachPendingScan(pending)) {
             return;
         }
-        if (!inFlight.compareAndSet(false, true)) {
-            Log.w(TAG, "scan reject → A scan is already in progress");
-            call.reject("A scan is already in progress");
+        if (stale == null) {
+            metrics.increment(ScanMetrics.TIMED_OUT);
+            Log.w(TAG, "scan timeout (" + pending.deadlineMs + "ms deadline)");
+            pending.call.reject("Wi-Fi scan timeout");
             return;
         }
+        resolveStale(pending, stale);
+    }
 
-        final AtomicBoolean settled = new AtomicBoolean(false);
-        final Handler handler = new Handler(Looper.getMainLooper());
-        final Runnable timeout = () -> {
-            if (settled.compareAndSet(false, true)) {
-                scanner.cleanup();
+    /** Retire un appelant du scan en cours ; abandonne le scan radio s'il était le dernier. */
+    private boolean detachPendingScan(PendingScan pending) {
+        WifiScanner.Subscription cancelled = null;
+        synchronized (pendingScans) {
+            if (!pendingScans.remove(pending)) return false;
+            // Plus personne n'attend : on abandonne le scan radio, dans le même passage de verrou
+            // que la libération du single-flight (un nouveau meneur ne peut pas être annulé)
+            if (pendingScans.isEmpty()) {
                 inFlight.set(false);
-                Log.w(TAG, "scan timeout (7s watchdog)");
-                call.reject("Wi-Fi scan timeout");
+                cancelled = takeActiveScan();
             }
-        };
-
-        // Watchdog 7s
-        handler.postDelayed(timeout, 7000);
-
-        // Exécuter le startScan en main thread (par sécurité)
-        getBridge().executeOnMainThread(() ->
-            scanner.startScan(new WifiScanner.ScanResultListener() {
-                @Override
-                public void onScanResults(List<ScanResult> results) {
-                    if (!settled.compareAndSet(false, true)) return;
-                    handler.removeCallbacks(timeout);
-                    try {
-                        JSArray arr = new JSArray();
-                        Set<String> seen = new HashSet<>();
-                        for (ScanResult r : results) {
-                            if (r.BSSID == null || !seen.add(r.BSSID)) continue;
-                            JSObject o = new JSObject();
-                            o.put("ssid",  r.SSID  != null ? r.SSID  : "");
-                            o.put("bssid", r.BSSID != null ? r.BSSID : "");
-                            o.put("signalStrength", r.level);
-                            o.put("frequency", r.frequency);
-                            o.put("channel", freqToChannel(r.frequency));
-                            o.put("timestamp", System.currentTimeMillis());
-                            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                                o.put("centerFreq0", r.centerFreq0);
-                                o.put("centerFreq1", r.centerFreq1);
-                                o.put("channelWidth", r.channelWidth);
-                            }
-                            arr.put(o);
-                        }
-                        JSObject ret = new JSObject();
-                        ret.put("networks", arr);
-                        ret.put("count", arr.length());
-                        ret.put("timestamp", System.currentTimeMillis());
-                        Log.d(TAG, "scan success → count=" + arr.length());
-                        call.resolve(ret);
-                    } catch (Throwable t) {
-                        Log.e(TAG, "scan onScanResults error: " + t.getMessage(), t);
-                        call.reject("Error processing scan results: " + t.getMessage());
-                    } finally {
-                        scanner.cleanup();
-                        inFlight.set(false);
+        }
+        if (cancelled != null) cancelled.cancel();
+        return true;
+    }
+
+    /**
+     * Détache l'abonnement ponctuel du scan en cours (appelant : verrou de la liste). Son retrait
+     * du hub se fait hors verrou ; les autres abonnés ne sont pas touchés.
+     */
+    private WifiScanner.Subscription takeActiveScan() {
+        WifiScanner.Subscription s = activeScan;
+        activeScan = null;
+        return s;
+    }
+
+    /**
+     * Abandonne le scan en cours (pause / arrêt de l'activité) : ses appelants sont détachés et
+     * le single-flight libéré sous le verrou de la liste, puis chacun est réglé selon son
+     * fallback sur le thread worker. Un scan() suivant relance un scan radio au lieu de se
+     * rattacher à un abonnement retiré.
+     */
+    private void abandonActiveScan(String reason) {
+        List<PendingScan> settled;
+        WifiScanner.Subscription cancelled;
+        synchronized (pendingScans) {
+            settled = new ArrayList<>(pendingScans);
+            pendingScans.clear();
+            inFlight.set(false);
+            cancelled = takeActiveScan();
+        }
+        if (cancelled != null) cancelled.cancel();
+        if (settled.isEmpty()) return;
+        Log.d(TAG, "scan abandoned → " + reason + " callers=" + settled.size());
+        for (PendingScan p : settled) workerHandler.removeCallbacks(p.timeout);
+        workerHandler.post(() -> {
+            for (PendingScan p : settled) settleFailedScan(p, reason);
+        });
+    }
+
+    private static final class PendingScan {
+        final PluginCall call;
+        final boolean explicitDeadline;
+        final long deadlineMs;
+        final int fallback;
+        final ScanQuery query;
+        final long startNanos;
+        long scanId;
+        // Déjà résolu depuis le cache OS, attend les résultats frais (garde : le verrou de la liste)
+        boolean partial;
+        Runnable timeout;
+
+        PendingScan(PluginCall call, boolean explicitDeadline, long deadlineMs, int fallback, ScanQuery query,
+                    long startNanos) {
+            this.call = call;
+            this.explicitDeadline = explicitDeadline;
+            this.deadlineMs = deadlineMs;
+            this.fallback = fallback;
+            this.query = query;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /** Budget de scans restant selon le modèle du throttling OS (état premier plan / arrière-plan). */
+    @PluginMethod
+    public void getScanBudget(PluginCall call) {
+        ScanThrottle throttle = scanner.getThrottle();
+        long now = SystemClock.elapsedRealtime();
+        long delay = throttle.delayUntilAllowed(now);
+        JSObject ret = new JSObject();
+        ret.put("foreground", throttle.isForeground());
+        ret.put("throttleEnabled", throttle.isEnabled());
+        if (throttle.isEnabled()) {
+            ret.put("capacity", throttle.capacity());
+            ret.put("windowMs", throttle.windowMs());
+            ret.put("remaining", throttle.remaining(now));
+        }
+        ret.put("nextAllowedInMs", delay);
+        ret.put("nextAllowedAt", System.currentTimeMillis() + delay);
+        call.resolve(ret);
+    }
+
+    /**
+     * Percentiles de latence par étape (ms), compteurs et tailles des résultats depuis le
+     * dernier reset, pour la télémétrie et le réglage des timeouts.
+     */
+    @PluginMethod
+    public void getScanMetrics(PluginCall call) {
+        JSObject stages = new JSObject();
+        for (int i = 0; i < ScanMetrics.STAGE_NAMES.length; i++) {
+            ScanMetrics.Histogram h = metrics.stage(i);
+            JSObject stage = new JSObject();
+            stage.put("count", h.count());
+            stage.put("meanMs", h.mean() / 1000.0);
+            stage.put("p50Ms", h.percentile(0.50) / 1000.0);
+            stage.put("p90Ms", h.percentile(0.90) / 1000.0);
+            stage.put("p99Ms", h.percentile(0.99) / 1000.0);
+            stage.put("maxMs", h.max() / 1000.0);
+            stages.put(ScanMetrics.STAGE_NAMES[i], stage);
+        }
+        JSObject counters = new JSObject();
+        for (int i = 0; i < ScanMetrics.COUNTER_NAMES.length; i++) {
+            counters.put(ScanMetrics.COUNTER_NAMES[i], metrics.counter(i));
+        }
+        ScanMetrics.Histogram sizes = metrics.resultSizes();
+        JSObject resultSize = new JSObject();
+        resultSize.put("count", sizes.count());
+        resultSize.put("mean", sizes.mean());
+        resultSize.put("p50", sizes.percentile(0.50));
+        resultSize.put("p90", sizes.percentile(0.90));
+        resultSize.put("max", sizes.max());
+
+        JSObject ret = new JSObject();
+        ret.put("since", metrics.sinceMs());
+        ret.put("stages", stages);
+        ret.put("counters", counters);
+        ret.put("resultSize", resultSize);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void resetScanMetrics(PluginCall call) {
+        metrics.reset();
+        Log.d(TAG, "resetScanMetrics");
+        call.resolve();
+    }
+
+    /**
+     * Occupation et congestion par canal de 20 MHz sur les derniers résultats livrés (ou, à
+     * défaut, le cache OS), agrégations 40 à 320 MHz comprises.
+     */
+    @PluginMethod
+    public void getChannelAnalysis(PluginCall call) {
+        JSObject ret = new JSObject();
+        long now = SystemClock.elapsedRealtime();
+        long bootEpoch = System.currentTimeMillis() - now;
+        synchronized (scanStore) {
+            if (scanStore.size() > 0) {
+                ret.put("channels", serializer.buildChannelAnalysis(scanStore));
+                ret.put("count", scanStore.size());
+                ScanSerializer.putSnapshotAge(ret, scanStore, now, bootEpoch);
+            }
+        }
+        if (!ret.has("channels")) {
+            // Aucun scan livré : cache OS, lu hors du verrou de scanStore
+            List<ScanResult> results = scanner.getLastScanResults();
+            if (results == null) {
+                call.reject("Unable to read scan results");
+                return;
+            }
+            synchronized (lastResultsStore) {
+                lastResultsStore.ingest(results);
+                ret.put("channels", serializer.buildChannelAnalysis(lastResultsStore));
+                ret.put("count", lastResultsStore.size());
+                ScanSerializer.putSnapshotAge(ret, lastResultsStore, now, bootEpoch);
+            }
+        }
+        call.resolve(ret);
+    }
+
+    /* ---------------- Empreintes ---------------- */
+
+    /**
+     * Charge des empreintes de référence {@code [{id, rssi: {bssid: dBm}}]} dans l'index ;
+     * {@code replace} vide d'abord l'index.
+     */
+    @PluginMethod
+    public void loadFingerprints(PluginCall call) {
+        JSArray fingerprints = call.getArray("fingerprints");
+        if (fingerprints == null) {
+            call.reject("Missing fingerprints");
+            return;
+        }
+        try {
+            long[] bssids = new long[64];
+            int[] rssi = new int[64];
+            int loaded = 0;
+            synchronized (fingerprintIndex) {
+                if (call.getBoolean("replace", false)) fingerprintIndex.clear();
+                for (int i = 0; i < fingerprints.length(); i++) {
+                    JSONObject fp = fingerprints.getJSONObject(i);
+                    JSONObject aps = fp.optJSONObject("rssi");
+                    String id = fp.optString("id", null);
+                    if (id == null || aps == null) continue;
+                    if (bssids.length < aps.length()) {
+                        bssids = new long[aps.length()];
+                        rssi = new int[aps.length()];
+                    }
+                    int n = 0;
+                    for (Iterator<String> it = aps.keys(); it.hasNext(); ) {
+                        String bssid = it.next();
+                        long key = ScanSnapshotStore.parseBssid(bssid);
+                        if (key == ScanSnapshotStore.INVALID_BSSID) continue;
+                        bssids[n] = key;
+                        rssi[n++] = aps.getInt(bssid);
                     }
+                    if (n == 0) continue;
+                    fingerprintIndex.add(id, bssids, rssi, n);
+                    loaded++;
+                }
+            }
+            JSObject ret = new JSObject();
+            ret.put("loaded", loaded);
+            ret.put("count", fingerprintIndex.size());
+            ret.put("accessPoints", fingerprintIndex.accessPointCount());
+            Log.d(TAG, "loadFingerprints → loaded=" + loaded + " count=" + fingerprintIndex.size());
+            call.resolve(ret);
+        } catch (JSONException e) {
+            call.reject("Invalid fingerprints: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void clearFingerprints(PluginCall call) {
+        fingerprintIndex.clear();
+        call.resolve();
+    }
+
+    /**
+     * k plus proches empreintes d'un scan : {@code scan} ({bssid: dBm}) s'il est fourni, sinon les
+     * derniers résultats livrés (ou le cache OS).
+     */
+    @PluginMethod
+    public void matchFingerprints(PluginCall call) {
+        int k = Math.max(1, Math.min(call.getInt("k", DEFAULT_FINGERPRINT_MATCHES), ScanQuery.MAX_FINGERPRINT_MATCHES));
+        int minCommon = Math.max(1, call.getInt("minCommonAps", 1));
+        JSObject scan = call.getObject("scan");
+        JSObject ret = new JSObject();
+        if (scan != null) {
+            try {
+                long[] bssids = new long[scan.length()];
+                int[] rssi = new int[scan.length()];
+                int n = 0;
+                for (Iterator<String> it = scan.keys(); it.hasNext(); ) {
+                    String bssid = it.next();
+                    long key = ScanSnapshotStore.parseBssid(bssid);
+                    // Casse ou séparateurs différents, même MAC : première valeur gardée, comme add()
+                    if (key == ScanSnapshotStore.INVALID_BSSID || indexOf(bssids, n, key) >= 0) continue;
+                    bssids[n] = key;
+                    rssi[n++] = scan.getInt(bssid);
+                }
+                serializer.putFingerprintMatches(ret, bssids, rssi, n, k, minCommon);
+            } catch (JSONException e) {
+                call.reject("Invalid scan: " + e.getMessage());
+                return;
+            }
+        } else {
+            synchronized (scanStore) {
+                if (scanStore.size() > 0) serializer.putFingerprintMatches(ret, scanStore, k, minCommon);
+            }
+            if (!ret.has("matches")) {
+                // Aucun scan livré : cache OS, lu hors du verrou de scanStore
+                List<ScanResult> results = scanner.getLastScanResults();
+                if (results == null) {
+                    call.reject("Unable to read scan results");
+                    return;
                 }
+                synchronized (lastResultsStore) {
+                    lastResultsStore.ingest(results);
+                    serializer.putFingerprintMatches(ret, lastResultsStore, k, minCommon);
+                }
+            }
+        }
+        call.resolve(ret);
+    }
+
+    /** Recherche linéaire : un scan ne compte que quelques centaines d'AP. */
+    private static int indexOf(long[] keys, int n, long key) {
+        for (int i = 0; i < n; i++) if (keys[i] == key) return i;
+        return -1;
+    }
+
+    /* ---------------- Fabricants ---------------- */
 
-                @Override
-                public void onScanError(String error) {
-                    if (!settled.compareAndSet(false, true)) return;
-                    handler.removeCallbacks(timeout);
-                    try {
-                        Log.e(TAG, "scan onScanError: " + error);
-                        call.reject("Scan failed: " + error);
-                    } finally {
-                        scanner.cleanup();
-                        inFlight.set(false);
+    /** Fabricant de chaque BSSID ({@code bssids}) ; les BSSID inconnus ou randomisés sont omis. */
+    @PluginMethod
+    public void lookupVendors(PluginCall call) {
+        JSArray bssids = call.getArray("bssids");
+        if (bssids == null) {
+            call.reject("Missing bssids");
+            return;
+        }
+        try {
+            JSObject vendors = new JSObject();
+            for (int i = 0; i < bssids.length(); i++) {
+                String bssid = bssids.getString(i);
+                String vendor = ouiIndex.vendor(ScanSnapshotStore.parseBssid(bssid));
+                if (vendor != null) vendors.put(bssid, vendor);
+            }
+            JSObject ret = new JSObject();
+            ret.put("vendors", vendors);
+            call.resolve(ret);
+        } catch (JSONException e) {
+            call.reject("Invalid bssids: " + e.getMessage());
+        }
+    }
+
+    /* ---------------- Scan continu ---------------- */
+
+    @PluginMethod
+    public void startContinuousScan(PluginCall call) {
+        if (!checkScanPreconditions(call, "startContinuousScan")) return;
+        ScanQuery[] query = new ScanQuery[1];
+        if (!parseQuery(call, ScanQuery.FIELDS_ALL, query)) return;
+        // Les deltas ne sont sérialisés qu'en JSON : pas de repli silencieux sur du JSON
+        if (call.getBoolean("delta", false) && query[0] != null && query[0].binary) {
+            call.reject("format \"binary\" is not supported with delta");
+            return;
+        }
+        continuousQuery = query[0] != null ? query[0] : ScanSerializer.QUERY_FULL;
+
+        int mode = parseContinuousMode(call.getString("mode"));
+        if (mode < 0) {
+            call.reject("Invalid mode: " + call.getString("mode"));
+            return;
+        }
+        long requested = call.getLong("intervalMs", DEFAULT_CONTINUOUS_INTERVAL_MS);
+        // Hybride : l'intervalle devient la fenêtre de fraîcheur au-delà de laquelle on scanne
+        if (mode == WifiScanner.MODE_HYBRID) requested = call.getLong("stalenessMs", requested);
+        // Mode delta : seuls added/changed/removed sont émis (événement scanDelta)
+        deltaTracker = call.getBoolean("delta", false)
+            ? new ScanDeltaTracker(ssidPool, call.getInt("rssiThreshold", ScanDeltaTracker.DEFAULT_RSSI_THRESHOLD))
+            : null;
+        continuousMode = mode;
+        continuousIntervalMs = requested;
+        long effective = startContinuousSession(requested);
+
+        JSObject ret = new JSObject();
+        ret.put("intervalMs", effective);
+        ret.put("mode", call.getString("mode", "active"));
+        Log.d(TAG, "startContinuousScan → mode=" + mode + " intervalMs=" + effective);
+        call.resolve(ret);
+    }
+
+    /** @return le mode WifiScanner, ou -1 si inconnu */
+    private static int parseContinuousMode(String mode) {
+        if (mode == null || "active".equals(mode)) return WifiScanner.MODE_ACTIVE;
+        if ("passive".equals(mode)) return WifiScanner.MODE_PASSIVE;
+        if ("hybrid".equals(mode)) return WifiScanner.MODE_HYBRID;
+        return -1;
+    }
+
+    @PluginMethod
+    public void stopContinuousScan(PluginCall call) {
+        continuousIntervalMs = 0L;
+        deltaTracker = null;
+        scanner.stopContinuousScan(continuousSession);
+        continuousSession = null;
+        Log.d(TAG, "stopContinuousScan");
+        call.resolve();
+    }
+
+    /**
+     * Renvoie l'état de référence complet du mode delta et sa séquence : JS remplace son état
+     * par ce snapshot puis applique les deltas de séquence supérieure.
+     */
+    @PluginMethod
+    public void resyncScanDelta(PluginCall call) {
+        ScanDeltaTracker tracker = deltaTracker;
+        if (tracker == null) {
+            call.reject("Delta mode is not active");
+            return;
+        }
+        JSObject ret = new JSObject();
+        long now = SystemClock.elapsedRealtime();
+        long bootEpoch = System.currentTimeMillis() - now;
+        synchronized (tracker) {
+            ScanSnapshotStore snapshot = tracker.snapshot();
+            JSArray arr = new JSArray();
+            ScanQuery q = continuousQuery;
+            for (int slot = 0, n = snapshot.size(); slot < n; slot++) {
+                arr.put(serializer.toNetwork(snapshot, slot, q, now, bootEpoch));
+            }
+            ret.put("sequence", tracker.sequence());
+            ret.put("networks", arr);
+            ret.put("count", arr.length());
+            ScanSerializer.putSnapshotAge(ret, snapshot, now, bootEpoch);
+        }
+        Log.d(TAG, "resyncScanDelta → sequence=" + ret.getInteger("sequence"));
+        call.resolve(ret);
+    }
+
+    /** Remplace la session continue du plugin ; @return l'intervalle effectif */
+    private long startContinuousSession(long intervalMs) {
+        WifiScanner.ContinuousSession previous = continuousSession;
+        // Nouvelle session abonnée avant l'arrêt de l'ancienne : la source reste écoutée
+        continuousSession = scanner.startContinuousScan(intervalMs, continuousMode, new WifiScanner.ScanResultListener() {
+            @Override
+            public void onScanResults(List<ScanResult> results) {
+                try {
+                    ScanDeltaTracker tracker = deltaTracker;
+                    ScanQuery q = continuousQuery;
+                    long processStart = System.nanoTime();
+                    JSObject payload;
+                    synchronized (scanStore) {
+                        scanStore.ingest(results);
+                        onScanDelivered(scanStore);
+                        if (tracker == null) {
+                            payload = serializer.buildScanPayload(scanStore, false, q);
+                        } else {
+                            // Avec un filtre, le delta porte sur les AP sélectionnés : un AP qui
+                            // sort du filtre apparaît dans removed
+                            ScanSnapshotStore source = scanStore;
+                            if (q.hasFilter()) {
+                                int[] selected = new int[scanStore.size()];
+                                int n = q.select(scanStore, selected);
+                                filteredStore.clear();
+                                for (int i = 0; i < n; i++) filteredStore.copyFrom(scanStore, selected[i]);
+                                source = filteredStore;
+                            }
+                            ScanDeltaTracker.Delta delta = tracker.update(source);
+                            // Rien n'a bougé au-delà des seuils : rien à sérialiser ni à émettre
+                            if (!delta.full && delta.isEmpty()) return;
+                            payload = serializer.buildDeltaPayload(source, delta, q);
+                        }
                     }
+                    metrics.recordStage(ScanMetrics.PROCESS, processStart);
+                    long resolveStart = System.nanoTime();
+                    notifyListeners(tracker == null ? "scanResults" : "scanDelta", payload);
+                    metrics.recordStage(ScanMetrics.RESOLVE, resolveStart);
+                } catch (Throwable t) {
+                    Log.e(TAG, "continuous onScanResults error: " + t.getMessage(), t);
                 }
-            })
-        );
+            }
+
+            @Override
+            public void onScanError(String error) {
+                Log.w(TAG, "continuous onScanError: " + error);
+                JSObject ev = new JSObject();
+                ev.put("error", error);
+                notifyListeners("scanError", ev);
+            }
+        });
+        scanner.stopContinuousScan(previous);
+        return continuousSession.intervalMs();
+    }
+
+    /**
+     * Traitements natifs d'un snapshot fraîchement livré (thread worker, verrou du store détenu) :
+     * série RSSI puis historique.
+     */
+    private void onScanDelivered(ScanSnapshotStore store) {
+        metrics.recordResultSize(store.size());
+        signalTracker.update(store, System.currentTimeMillis() - SystemClock.elapsedRealtime());
+        recordHistory(store);
+    }
+
+    /* ---------------- Collecte d'arrière-plan ---------------- */
+
+    /**
+     * Démarre le service de premier plan qui collecte les scans application en arrière-plan ou
+     * écran éteint. Par défaut en mode hybride : passif, avec un scan si rien de frais depuis
+     * {@code intervalMs}.
+     */
+    @PluginMethod
+    public void startBackgroundCollection(PluginCall call) {
+        if (!checkScanPreconditions(call, "startBackgroundCollection")) return;
+        // Android 14+ : startForeground(type location) lève sans permission de localisation,
+        // que NEARBY_WIFI_DEVICES ne remplace pas
+        if (!hasLocationPermission()) {
+            call.reject("Location permission is required for background collection");
+            return;
+        }
+        String modeName = call.getString("mode", "hybrid");
+        int mode = parseContinuousMode(modeName);
+        if (mode < 0) {
+            call.reject("Invalid mode: " + modeName);
+            return;
+        }
+        int maxScans = Math.max(1, Math.min(MAX_BUFFERED_SCANS,
+            call.getInt("maxBufferedScans", BackgroundCollector.DEFAULT_MAX_SCANS)));
+        Intent intent = new Intent(getContext(), ScanCollectionService.class)
+            .putExtra(ScanCollectionService.EXTRA_INTERVAL_MS, call.getLong("intervalMs", DEFAULT_BACKGROUND_INTERVAL_MS))
+            .putExtra(ScanCollectionService.EXTRA_MODE, mode)
+            .putExtra(ScanCollectionService.EXTRA_MAX_SCANS, maxScans)
+            .putExtra(ScanCollectionService.EXTRA_TITLE, call.getString("notificationTitle"))
+            .putExtra(ScanCollectionService.EXTRA_TEXT, call.getString("notificationText"));
+        try {
+            ContextCompat.startForegroundService(getContext(), intent);
+        } catch (Throwable t) {
+            Log.e(TAG, "startBackgroundCollection failed", t);
+            call.reject("Unable to start background collection: " + t.getMessage());
+            return;
+        }
+        Log.d(TAG, "startBackgroundCollection → mode=" + modeName + " maxBufferedScans=" + maxScans);
+        call.resolve();
+    }
+
+    private boolean hasLocationPermission() {
+        Context ctx = getContext();
+        return ContextCompat.checkSelfPermission(ctx, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED
+            || ContextCompat.checkSelfPermission(ctx, Manifest.permission.ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    @PluginMethod
+    public void stopBackgroundCollection(PluginCall call) {
+        getContext().stopService(new Intent(getContext(), ScanCollectionService.class));
+        Log.d(TAG, "stopBackgroundCollection");
+        call.resolve();
+    }
+
+    /**
+     * Vide au plus {@code maxBatch} scans du buffer d'arrière-plan (plus anciens d'abord) en un
+     * seul appel bridge ; rappeler tant que {@code remaining > 0}.
+     */
+    @PluginMethod
+    public void getBufferedScans(PluginCall call) {
+        int maxBatch = Math.max(1, Math.min(MAX_BUFFER_BATCH, call.getInt("maxBatch", DEFAULT_BUFFER_BATCH)));
+        BackgroundCollector collector = BackgroundCollector.get(getContext());
+        ScanBuffer buffer = collector.buffer();
+        JSArray scans = new JSArray();
+        if (buffer != null) buffer.drain(maxBatch, new ScanBuffer.Visitor() {
+            private JSArray networks;
+
+            @Override
+            public void onScan(long epochMs, int count) {
+                networks = new JSArray();
+                JSObject scan = new JSObject();
+                scan.put("timestamp", epochMs);
+                scan.put("count", count);
+                scan.put("networks", networks);
+                scans.put(scan);
+            }
+
+            @Override
+            public void onEntry(long bssid, String ssid, int rssi, int frequency) {
+                JSObject o = new JSObject();
+                o.put("ssid", ssid);
+                o.put("bssid", ScanSnapshotStore.formatBssid(bssid));
+                o.put("signalStrength", rssi);
+                o.put("frequency", frequency);
+                o.put("channel", WifiChannels.channelOf(frequency));
+                String vendor = ouiIndex.vendor(bssid);
+                if (vendor != null) o.put("vendor", vendor);
+                networks.put(o);
+            }
+        });
+        JSObject ret = new JSObject();
+        ret.put("scans", scans);
+        ret.put("count", scans.length());
+        ret.put("remaining", buffer != null ? buffer.size() : 0);
+        ret.put("dropped", buffer != null ? buffer.dropped() : 0L);
+        ret.put("collecting", collector.isRunning());
+        String error = collector.lastError();
+        if (error != null) ret.put("error", error);
+        call.resolve(ret);
+    }
+
+    /* ---------------- Série RSSI ---------------- */
+
+    @PluginMethod
+    public void getSignalHistory(PluginCall call) {
+        String bssid = call.getString("bssid");
+        long key = ScanSnapshotStore.parseBssid(bssid);
+        if (key == ScanSnapshotStore.INVALID_BSSID) {
+            call.reject("Invalid bssid");
+            return;
+        }
+        JSObject ret = new JSObject();
+        JSArray samples = new JSArray();
+        synchronized (signalTracker) {
+            int slot = signalTracker.indexOf(key);
+            if (slot < 0) {
+                call.reject("No signal history for " + bssid);
+                return;
+            }
+            for (int k = 0, n = signalTracker.sampleCount(slot); k < n; k++) {
+                JSObject o = new JSObject();
+                o.put("timestamp", signalTracker.sampleTime(slot, k));
+                o.put("rssi", signalTracker.sample(slot, k));
+                samples.put(o);
+            }
+            serializer.putSignalStats(ret, slot);
+        }
+        ret.put("bssid", bssid);
+        ret.put("samples", samples);
+        call.resolve(ret);
+    }
+
+    /* ---------------- Historique ---------------- */
+
+    /** Active l'enregistrement de chaque scan livré dans l'historique persistant. */
+    @PluginMethod
+    public void enableHistory(PluginCall call) {
+        long maxBytes = call.getLong("maxBytes", DEFAULT_HISTORY_MAX_BYTES);
+        long segmentBytes = call.getLong("segmentBytes", DEFAULT_HISTORY_SEGMENT_BYTES);
+        String invalid = ScanHistoryStore.checkConfig(maxBytes, segmentBytes);
+        if (invalid != null) {
+            call.reject("Invalid history config: " + invalid);
+            return;
+        }
+        try {
+            ScanHistoryStore store = openHistory(maxBytes, segmentBytes);
+            historyRecording = true;
+            JSObject ret = new JSObject();
+            ret.put("sizeBytes", store.sizeBytes());
+            Log.d(TAG, "enableHistory → sizeBytes=" + store.sizeBytes());
+            call.resolve(ret);
+        } catch (Throwable t) {
+            Log.e(TAG, "enableHistory error: " + t.getMessage(), t);
+            call.reject("Error opening scan history: " + t.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void disableHistory(PluginCall call) {
+        historyRecording = false;
+        call.resolve();
+    }
+
+    /**
+     * Requête paginée sur l'historique : {@code from}/{@code to} (epoch ms), {@code bssids},
+     * {@code limit}, et {@code cursor} renvoyé par la page précédente.
+     */
+    @PluginMethod
+    public void queryHistory(PluginCall call) {
+        try {
+            ScanHistoryStore store = openHistory();
+            long from = call.getLong("from", 0L);
+            long to = call.getLong("to", Long.MAX_VALUE);
+            int limit = Math.max(1, Math.min(call.getInt("limit", DEFAULT_HISTORY_PAGE), MAX_HISTORY_PAGE));
+            long cursor = parseHistoryCursor(call.getString("cursor"));
+            long[] bssids = parseBssidFilter(call.getArray("bssids"));
+
+            final JSArray records = new JSArray();
+            long next = store.query(from, to, bssids, limit, cursor, (seg, off) -> {
+                JSObject o = new JSObject();
+                o.put("timestamp", ScanHistoryStore.scanTime(seg, off));
+                o.put("bssid", ScanSnapshotStore.formatBssid(ScanHistoryStore.bssid(seg, off)));
+                o.put("ssid", ScanHistoryStore.ssid(seg, off));
+                o.put("signalStrength", ScanHistoryStore.rssi(seg, off));
+                o.put("frequency", ScanHistoryStore.frequency(seg, off));
+                o.put("channel", WifiChannels.channelOf(ScanHistoryStore.frequency(seg, off)));
+                o.put("ageMs", ScanHistoryStore.ageMs(seg, off));
+                o.put("centerFreq0", ScanHistoryStore.centerFreq0(seg, off));
+                o.put("centerFreq1", ScanHistoryStore.centerFreq1(seg, off));
+                o.put("channelWidth", ScanHistoryStore.channelWidth(seg, off));
+                records.put(o);
+            });
+
+            JSObject ret = new JSObject();
+            ret.put("records", records);
+            ret.put("count", records.length());
+            if (next >= 0) ret.put("cursor", Long.toString(next, 36));
+            Log.d(TAG, "queryHistory → count=" + records.length() + " more=" + (next >= 0));
+            call.resolve(ret);
+        } catch (Throwable t) {
+            Log.e(TAG, "queryHistory error: " + t.getMessage(), t);
+            call.reject("Error querying scan history: " + t.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void clearHistory(PluginCall call) {
+        try {
+            openHistory().clear();
+            call.resolve();
+        } catch (Throwable t) {
+            Log.e(TAG, "clearHistory error: " + t.getMessage(), t);
+            call.reject("Error clearing scan history: " + t.getMessage());
+        }
+    }
+
+    /** Historique tel qu'ouvert, ou avec la config par défaut (requête avant enableHistory). */
+    private synchronized ScanHistoryStore openHistory() throws IOException {
+        if (history != null) return history;
+        return openHistory(DEFAULT_HISTORY_MAX_BYTES, DEFAULT_HISTORY_SEGMENT_BYTES);
+    }
+
+    /**
+     * Ouvre l'historique avec cette config (bornes vérifiées par l'appelant) ; s'il est déjà
+     * ouvert avec une autre, il est fermé puis rouvert, segments existants conservés.
+     */
+    private synchronized ScanHistoryStore openHistory(long maxBytes, long segmentBytes) throws IOException {
+        ScanHistoryStore h = history;
+        if (h != null && maxBytes == historyMaxBytes && segmentBytes == historySegmentBytes) return h;
+        if (h != null) {
+            Log.d(TAG, "history config changed → maxBytes=" + maxBytes + " segmentBytes=" + segmentBytes);
+            history = null;
+            h.close();
+        }
+        h = new ScanHistoryStore(new File(getContext().getFilesDir(), HISTORY_DIR), maxBytes, segmentBytes);
+        historyMaxBytes = maxBytes;
+        historySegmentBytes = segmentBytes;
+        history = h;
+        return h;
+    }
+
+    /** Appelé sur le thread worker, sous le verrou du store. */
+    private void recordHistory(ScanSnapshotStore store) {
+        ScanHistoryStore h = history;
+        if (!historyRecording || h == null || store.size() == 0) return;
+        // Même snapshot livré à plusieurs consommateurs (ponctuel + continu) : une seule écriture
+        if (store.newestTimestampMicros() == lastRecordedMicros) return;
+        lastRecordedMicros = store.newestTimestampMicros();
+        try {
+            h.append(store, System.currentTimeMillis(), SystemClock.elapsedRealtime());
+        } catch (Throwable t) {
+            Log.w(TAG, "history append failed: " + t.getMessage());
+        }
+    }
+
+    private static long parseHistoryCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) return -1L;
+        try {
+            return Long.parseLong(cursor, 36);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /** Liste de BSSID JS → tableau trié de MAC packées, null si pas de filtre. */
+    private static long[] parseBssidFilter(JSArray arr) throws JSONException {
+        if (arr == null || arr.length() == 0) return null;
+        long[] out = new long[arr.length()];
+        int n = 0;
+        for (int i = 0; i < arr.length(); i++) {
+            long key = ScanSnapshotStore.parseBssid(arr.getString(i));
+            if (key != ScanSnapshotStore.INVALID_BSSID) out[n++] = key;
+        }
+        out = Arrays.copyOf(out, n);
+        Arrays.sort(out);
+        return out;
     }
 
     /* ---------------- Lifecycle : nettoyage auto ---------------- */
@@ -340,18 +1356,52 @@ public class WifiScannerPlugin extends Plugin {
     @Override
     protected void handleOnPause() {
         super.handleOnPause();
-        if (scanner != null) scanner.cleanup();
+        if (scanner != null) {
+            scanner.setForeground(false);
+            abandonActiveScan("app paused");
+            // La session continue est suspendue, puis relancée au resume
+            scanner.stopContinuousScan(continuousSession);
+            continuousSession = null;
+        }
+    }
+
+    @Override
+    protected void handleOnResume() {
+        super.handleOnResume();
+        // Permissions éventuellement changées dans les réglages pendant la pause
+        if (preconditions != null) preconditions.refreshAll();
+        if (scanner != null) scanner.setForeground(true);
+        WifiScanner.ContinuousSession session = continuousSession;
+        if (scanner != null && continuousIntervalMs > 0 && (session == null || !session.isActive())) {
+            startContinuousSession(continuousIntervalMs);
+        }
+        // Un seul événement au resume : JS vide ensuite le buffer par lots via getBufferedScans()
+        int buffered = BackgroundCollector.get(getContext()).bufferedCount();
+        if (buffered > 0) {
+            JSObject ev = new JSObject();
+            ev.put("count", buffered);
+            notifyListeners("bufferedScansAvailable", ev);
+        }
     }
 
     @Override
     protected void handleOnStop() {
         super.handleOnStop();
-        if (scanner != null) scanner.cleanup();
+        abandonActiveScan("app stopped");
     }
 
     @Override
     protected void handleOnDestroy() {
-        if (scanner != null) scanner.cleanup();
+        continuousIntervalMs = 0L;
+        if (scanner != null) {
+            // Hub partagé : seuls les abonnements de ce plugin sont retirés, le scanner reste vivant
+            scanner.stopContinuousScan(continuousSession);
+            continuousSession = null;
+            abandonActiveScan("plugin destroyed");
+        }
+        BackgroundCollector.get(getContext()).setListener(null);
+        ScanHistoryStore h = history;
+        if (h != null) h.close();
         super.handleOnDestroy();
     }
 }
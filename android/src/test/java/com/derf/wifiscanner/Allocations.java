@@ -0,0 +1,23 @@
+package com.derf.wifiscanner;
+
+import java.lang.management.ManagementFactory;
+
+/** Octets alloués par le thread courant (JVM HotSpot), pour les budgets d'allocation des tests. */
+final class Allocations {
+
+    private Allocations() {
+    }
+
+    /** Cumul des octets alloués par le thread courant. */
+    static long current() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /** Chauffe ({@code warmup} passes : JIT, caches), puis octets alloués par {@code passes} passes. */
+    static long measure(int warmup, int passes, Runnable pass) {
+        for (int i = 0; i < warmup; i++) pass.run();
+        long bytes0 = current();
+        for (int i = 0; i < passes; i++) pass.run();
+        return current() - bytes0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.derf.wifiscanner;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latence d'une requête k-NN de {@link FingerprintIndex} selon la taille de la base, sur la base
+ * synthétique de {@link FingerprintIndexBenchmarkTest} (densité de relevés constante). Lancé par
+ * {@link ScanPipelineJmhTest} ({@code ./gradlew testDebugUnitTest -Pjmh}) ; en mode
+ * {@code SampleTime}, JMH rapporte aussi p50 et p99.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FingerprintIndexBenchmark {
+
+    @Param({ "1000", "10000", "50000" })
+    public int fingerprints;
+
+    private FingerprintIndex index;
+    private FingerprintIndexBenchmarkTest.Scan[] scans;
+    private final FingerprintIndex.Matches matches = new FingerprintIndex.Matches();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        FingerprintIndexBenchmarkTest.Synthetic db = new FingerprintIndexBenchmarkTest.Synthetic(fingerprints, 5);
+        index = db.build();
+        scans = db.observeRandom(500, 6);
+    }
+
+    /** Une requête par opération, en parcourant des scans bruités pris au hasard sur la zone. */
+    @Benchmark
+    public int query() {
+        FingerprintIndexBenchmarkTest.Scan s = scans[next];
+        next = (next + 1) % scans.length;
+        index.query(s.bssids, s.rssi, s.n, 5, 1, matches);
+        return matches.size;
+    }
+}
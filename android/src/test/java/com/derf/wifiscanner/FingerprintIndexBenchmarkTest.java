@@ -0,0 +1,232 @@
+package com.derf.wifiscanner;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Exactitude du k-NN de {@link FingerprintIndex} contre une recherche exhaustive, et croissance
+ * sous-linéaire des candidats comparés avec la taille de la base. La latence par taille de base
+ * relève de {@code FingerprintIndexBenchmark} ({@code -Pjmh}).
+ * <p>
+ * Modèle synthétique : AP répartis sur un plan, empreintes relevées en des points aléatoires,
+ * RSSI en affaiblissement log-distance ; seuls les AP au-dessus de -90 dBm sont entendus.
+ */
+public class FingerprintIndexBenchmarkTest {
+
+    private static final int AP_PER_HECTARE = 30;
+    private static final double HEARING_DBM = -90;
+    // Portée à HEARING_DBM (-40 - 30·log10(d)), marge de bruit comprise
+    private static final double RANGE_M = 60;
+
+    @Test
+    public void matchesBruteForce() {
+        Synthetic db = new Synthetic(2_000, 1);
+        FingerprintIndex index = db.build();
+        FingerprintIndex.Matches m = new FingerprintIndex.Matches();
+        Random rnd = new Random(2);
+        for (int q = 0; q < 50; q++) {
+            Scan scan = db.observe(rnd.nextDouble() * db.side, rnd.nextDouble() * db.side, rnd);
+            index.query(scan.bssids, scan.rssi, scan.n, 5, 1, m);
+            assertTrue(m.size > 0);
+            double[] brute = db.bruteForce(scan);
+            for (int i = 0; i < m.size; i++) {
+                int fp = Integer.parseInt(m.ids[i]);
+                assertEquals(brute[fp], m.distances[i], 1e-6);
+                if (i > 0) assertTrue(m.distances[i] >= m.distances[i - 1]);
+            }
+            // Aucune empreinte candidate n'est plus proche que le 1er résultat
+            for (int fp = 0; fp < brute.length; fp++) {
+                if (db.sharesAp(fp, scan)) assertTrue(brute[fp] >= m.distances[0] - 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void nearestFingerprintOfItsOwnScan() {
+        Synthetic db = new Synthetic(1_000, 3);
+        FingerprintIndex index = db.build();
+        FingerprintIndex.Matches m = new FingerprintIndex.Matches();
+        for (int fp = 0; fp < 100; fp++) {
+            index.query(db.bssids[fp], db.rssi[fp], db.bssids[fp].length, 1, 1, m);
+            assertEquals(String.valueOf(fp), m.ids[0]);
+            assertEquals(0, m.distances[0], 1e-9);
+        }
+    }
+
+    @Test
+    public void clearEmptiesIndex() {
+        FingerprintIndex index = new Synthetic(100, 4).build();
+        index.clear();
+        FingerprintIndex.Matches m = new FingerprintIndex.Matches();
+        index.query(new long[] {1L}, new int[] {-50}, 1, 3, 1, m);
+        assertEquals(0, index.size());
+        assertEquals(0, m.size);
+    }
+
+    /**
+     * Densité de relevés constante : une base 50x plus grande couvre une surface 50x plus grande,
+     * mais un scan n'entend que les AP de son voisinage. Les candidats comparés par requête
+     * doivent donc rester à peu près constants, et non suivre la taille de la base.
+     */
+    @Test
+    public void candidatesGrowSublinearlyWithDatabaseSize() {
+        int[] sizes = {1_000, 10_000, 50_000};
+        double[] candidates = new double[sizes.length];
+        StringBuilder stats = new StringBuilder();
+        for (int k = 0; k < sizes.length; k++) {
+            Synthetic db = new Synthetic(sizes[k], 5);
+            FingerprintIndex index = db.build();
+            assertEquals(sizes[k], index.size());
+            candidates[k] = db.meanCandidates(index, 500, 6);
+            stats.append(String.format("%d fingerprints: %.0f candidates/scan; ", sizes[k], candidates[k]));
+        }
+        // 50x plus d'empreintes : au plus 3x plus de candidats (~1,7x mesuré, effets de bord de la
+        // petite base compris)
+        assertTrue(stats.toString(), candidates[2] < 3 * candidates[0]);
+    }
+
+    /* ---------------- Base synthétique ---------------- */
+
+    static final class Scan {
+        long[] bssids;
+        int[] rssi;
+        int n;
+    }
+
+    /** Base synthétique, partagée avec {@code FingerprintIndexBenchmark}. */
+    static final class Synthetic {
+        final double side;
+        final double[] apX, apY;
+        // Grille de cellules RANGE_M × RANGE_M → AP, pour ne tester que le voisinage
+        final int cells;
+        final int[][] grid;
+        final long[][] bssids;
+        final int[][] rssi;
+
+        /** Surface proportionnelle au nombre d'empreintes (densité de relevés constante). */
+        Synthetic(int fingerprints, long seed) {
+            Random rnd = new Random(seed);
+            side = Math.sqrt(fingerprints * 25.0);
+            int aps = (int) (side * side * AP_PER_HECTARE / 10_000);
+            apX = new double[aps];
+            apY = new double[aps];
+            cells = (int) Math.ceil(side / RANGE_M);
+            int[] cellSize = new int[cells * cells];
+            for (int a = 0; a < aps; a++) {
+                apX[a] = rnd.nextDouble() * side;
+                apY[a] = rnd.nextDouble() * side;
+                cellSize[cellOf(apX[a], apY[a])]++;
+            }
+            grid = new int[cells * cells][];
+            for (int c = 0; c < grid.length; c++) grid[c] = new int[cellSize[c]];
+            Arrays.fill(cellSize, 0);
+            for (int a = 0; a < aps; a++) {
+                int c = cellOf(apX[a], apY[a]);
+                grid[c][cellSize[c]++] = a;
+            }
+            bssids = new long[fingerprints][];
+            rssi = new int[fingerprints][];
+            for (int fp = 0; fp < fingerprints; fp++) {
+                Scan s = observe(rnd.nextDouble() * side, rnd.nextDouble() * side, rnd);
+                bssids[fp] = Arrays.copyOf(s.bssids, s.n);
+                rssi[fp] = Arrays.copyOf(s.rssi, s.n);
+            }
+        }
+
+        /** Scans bruités en des points aléatoires, reproductibles pour une graine donnée. */
+        Scan[] observeRandom(int count, long seed) {
+            Random rnd = new Random(seed);
+            Scan[] scans = new Scan[count];
+            for (int i = 0; i < count; i++) scans[i] = observe(rnd.nextDouble() * side, rnd.nextDouble() * side, rnd);
+            return scans;
+        }
+
+        /** Moyenne des empreintes comparées par requête (5 plus proches). */
+        double meanCandidates(FingerprintIndex index, int count, long seed) {
+            FingerprintIndex.Matches m = new FingerprintIndex.Matches();
+            long candidates = 0;
+            Scan[] scans = observeRandom(count, seed);
+            for (Scan s : scans) {
+                index.query(s.bssids, s.rssi, s.n, 5, 1, m);
+                candidates += m.candidates;
+            }
+            return candidates / (double) count;
+        }
+
+        FingerprintIndex build() {
+            FingerprintIndex index = new FingerprintIndex();
+            for (int fp = 0; fp < bssids.length; fp++) {
+                index.add(String.valueOf(fp), bssids[fp], rssi[fp], bssids[fp].length);
+            }
+            return index;
+        }
+
+        /** Scan bruité au point (x, y) : AP des 9 cellules voisines, audibles seulement. */
+        Scan observe(double x, double y, Random rnd) {
+            Scan s = new Scan();
+            s.bssids = new long[64];
+            s.rssi = new int[64];
+            int cx = Math.min(cells - 1, (int) (x / RANGE_M));
+            int cy = Math.min(cells - 1, (int) (y / RANGE_M));
+            for (int gx = Math.max(0, cx - 1); gx <= Math.min(cells - 1, cx + 1); gx++) {
+                for (int gy = Math.max(0, cy - 1); gy <= Math.min(cells - 1, cy + 1); gy++) {
+                    for (int a : grid[gx * cells + gy]) {
+                        double dx = apX[a] - x, dy = apY[a] - y;
+                        double d2 = dx * dx + dy * dy;
+                        if (d2 > RANGE_M * RANGE_M) continue;
+                        double dbm = -40 - 30 * Math.log10(Math.max(1, Math.sqrt(d2))) + rnd.nextGaussian() * 3;
+                        if (dbm < HEARING_DBM) continue;
+                        if (s.n == s.bssids.length) {
+                            s.bssids = Arrays.copyOf(s.bssids, s.n * 2);
+                            s.rssi = Arrays.copyOf(s.rssi, s.n * 2);
+                        }
+                        s.bssids[s.n] = 0x02_00_00_00_00_00L | a;
+                        s.rssi[s.n++] = (int) Math.round(dbm);
+                    }
+                }
+            }
+            return s;
+        }
+
+        private int cellOf(double x, double y) {
+            int cx = Math.min(cells - 1, (int) (x / RANGE_M));
+            int cy = Math.min(cells - 1, (int) (y / RANGE_M));
+            return cx * cells + cy;
+        }
+
+        double[] bruteForce(Scan scan) {
+            double[] out = new double[bssids.length];
+            for (int fp = 0; fp < bssids.length; fp++) {
+                double sum = 0;
+                for (int i = 0; i < bssids[fp].length; i++) {
+                    int q = find(scan.bssids, scan.n, bssids[fp][i]);
+                    double d = (q >= 0 ? scan.rssi[q] : FingerprintIndex.MISSING_RSSI) - rssi[fp][i];
+                    sum += d * d;
+                }
+                for (int q = 0; q < scan.n; q++) {
+                    if (find(bssids[fp], bssids[fp].length, scan.bssids[q]) >= 0) continue;
+                    double d = scan.rssi[q] - FingerprintIndex.MISSING_RSSI;
+                    sum += d * d;
+                }
+                out[fp] = Math.sqrt(sum);
+            }
+            return out;
+        }
+
+        boolean sharesAp(int fp, Scan scan) {
+            for (int q = 0; q < scan.n; q++) {
+                if (find(bssids[fp], bssids[fp].length, scan.bssids[q]) >= 0) return true;
+            }
+            return false;
+        }
+
+        private static int find(long[] keys, int n, long key) {
+            for (int i = 0; i < n; i++) if (keys[i] == key) return i;
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.derf.wifiscanner;
+
+import static org.junit.Assert.*;
+
+import android.net.wifi.ScanResult;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Décodage des éléments 802.11 par {@link InformationElements} sur des trames construites à la
+ * main : suites RSN / WPA, génération, BSS Load, pays, éléments fabricant, et cache par BSSID.
+ */
+public class InformationElementsTest {
+
+    private static final long BSSID = 0x001122334455L;
+
+    // RSN : CCMP en groupe et par paire, AKM PSK + SAE (transition WPA3), MFPC
+    private static final byte[] RSN_WPA3_TRANSITION = bytes(
+        0x01, 0x00, 0x00, 0x0F, 0xAC, 0x04,
+        0x01, 0x00, 0x00, 0x0F, 0xAC, 0x04,
+        0x02, 0x00, 0x00, 0x0F, 0xAC, 0x02, 0x00, 0x0F, 0xAC, 0x08,
+        0x80, 0x00);
+    // WPA1 (00-50-F2 type 1) : TKIP, PSK
+    private static final byte[] WPA1 = bytes(
+        0x00, 0x50, 0xF2, 0x01, 0x01, 0x00, 0x00, 0x50, 0xF2, 0x02,
+        0x01, 0x00, 0x00, 0x50, 0xF2, 0x02,
+        0x01, 0x00, 0x00, 0x50, 0xF2, 0x02);
+    private static final byte[] WMM = bytes(0x00, 0x50, 0xF2, 0x02, 0x01, 0x01);
+    private static final byte[] COUNTRY_FR = bytes('F', 'R', ' ', 0x01, 0x0D, 0x14);
+
+    @Test
+    public void decodesWpa3TransitionAndCapabilities() {
+        InformationElements ie = new InformationElements();
+        Frame f = new Frame()
+            .add(0, 0, bytes('h', 'o', 'm', 'e'))
+            .add(7, 0, COUNTRY_FR)
+            .add(11, 0, bssLoad(12, 128))
+            .add(45, 0, new byte[26])
+            .add(48, 0, RSN_WPA3_TRANSITION)
+            .add(191, 0, new byte[12])
+            .add(255, 35, new byte[20])
+            .add(221, 0, WMM);
+        int e = f.resolve(ie, 5180, InformationElements.SECURITY | InformationElements.STANDARD
+            | InformationElements.BSS_LOAD | InformationElements.COUNTRY | InformationElements.VENDOR);
+
+        assertEquals("wpa3", ie.protocol(e));
+        assertEquals("capable", ie.pmf(e));
+        assertFalse(ie.enterprise(e));
+        String[] names = new String[32];
+        assertEquals(2, InformationElements.suiteNames(ie.akms(e), false, names));
+        assertEquals("psk", names[0]);
+        assertEquals("sae", names[1]);
+        assertEquals(1, InformationElements.suiteNames(ie.pairwiseCiphers(e), true, names));
+        assertEquals("ccmp", names[0]);
+
+        assertEquals(ScanResult.WIFI_STANDARD_11AX, ie.wifiStandard(e));
+        assertEquals(6, InformationElements.generation(ie.wifiStandard(e)));
+        assertEquals(12, ie.stationCount(e));
+        assertEquals(128, ie.channelUtilization(e));
+        assertEquals("FR", ie.countryCode(e));
+        assertEquals(1, ie.vendorElementCount(e));
+        assertEquals(0x0050F2 << 8 | 2, ie.vendorElement(e, 0));
+    }
+
+    @Test
+    public void wpa1AndLegacyStandard() {
+        InformationElements ie = new InformationElements();
+        int e = new Frame().add(221, 0, WPA1).resolve(ie, 2412, InformationElements.SECURITY | InformationElements.STANDARD);
+        assertEquals("wpa", ie.protocol(e));
+        String[] names = new String[32];
+        assertEquals(1, InformationElements.suiteNames(ie.pairwiseCiphers(e), true, names));
+        assertEquals("tkip", names[0]);
+        assertEquals(ScanResult.WIFI_STANDARD_LEGACY, ie.wifiStandard(e));
+    }
+
+    @Test
+    public void vhtOn24GhzIsNot11ac() {
+        InformationElements ie = new InformationElements();
+        Frame f = new Frame().add(45, 0, new byte[26]).add(191, 0, new byte[12]);
+        assertEquals(ScanResult.WIFI_STANDARD_11N, ie.wifiStandard(f.resolve(ie, 2437, InformationElements.STANDARD)));
+    }
+
+    @Test
+    public void capabilitiesFallbackWithoutElements() {
+        InformationElements ie = new InformationElements();
+        int e = ie.resolve(BSSID, "[RSN-EAP-CCMP][ESS][MFPR]", 5180, 0, new int[0], new int[0], new ByteBuffer[0], 0,
+            InformationElements.SECURITY);
+        assertEquals("wpa2", ie.protocol(e));
+        assertTrue(ie.enterprise(e));
+        assertEquals("required", ie.pmf(e));
+        assertEquals("open", ie.protocol(ie.resolve(BSSID + 1, "[ESS]", 2412, 0, new int[0], new int[0],
+            new ByteBuffer[0], 0, InformationElements.SECURITY)));
+    }
+
+    @Test
+    public void truncatedElementsDoNotThrow() {
+        InformationElements ie = new InformationElements();
+        Frame f = new Frame()
+            .add(48, 0, bytes(0x01, 0x00, 0x00, 0x0F, 0xAC, 0x04, 0x02, 0x00, 0x00, 0x0F))
+            .add(11, 0, bytes(0x01))
+            .add(7, 0, bytes('F'))
+            .add(221, 0, bytes(0x00, 0x50));
+        int e = f.resolve(ie, 5180, InformationElements.SECURITY | InformationElements.BSS_LOAD
+            | InformationElements.COUNTRY | InformationElements.VENDOR);
+        assertEquals("wpa2", ie.protocol(e));
+        assertEquals(-1, ie.stationCount(e));
+        assertNull(ie.countryCode(e));
+        assertEquals(0, ie.vendorElementCount(e));
+    }
+
+    /** Mêmes octets : rien n'est redécodé ; BSS Load modifié : le cache est invalidé. */
+    @Test
+    public void cacheFollowsElementBytes() {
+        InformationElements ie = new InformationElements();
+        Frame f = new Frame().add(11, 0, bssLoad(3, 50)).add(7, 0, COUNTRY_FR);
+        int e = f.resolve(ie, 5180, InformationElements.BSS_LOAD);
+        assertEquals(3, ie.stationCount(e));
+        // Pays non demandé : non décodé
+        assertNull(ie.countryCode(e));
+        assertEquals("FR", ie.countryCode(f.resolve(ie, 5180, InformationElements.COUNTRY)));
+
+        Frame changed = new Frame().add(11, 0, bssLoad(9, 200)).add(7, 0, COUNTRY_FR);
+        e = changed.resolve(ie, 5180, InformationElements.BSS_LOAD);
+        assertEquals(9, ie.stationCount(e));
+        assertEquals(200, ie.channelUtilization(e));
+        // Signature changée : le pays doit être redécodé
+        assertNull(ie.countryCode(e));
+        assertEquals(1, ie.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyResolved() {
+        InformationElements ie = new InformationElements();
+        Frame f = new Frame().add(7, 0, COUNTRY_FR);
+        for (int i = 0; i < InformationElements.MAX_APS * 3; i++) f.resolve(ie, BSSID + i, 5180, InformationElements.COUNTRY);
+        assertTrue(ie.size() <= InformationElements.MAX_APS);
+        assertTrue(ie.size() > InformationElements.MAX_APS / 2);
+    }
+
+    /** Résolution en cache : une passe de signature, sans allocation ni décodage. */
+    @Test
+    public void cachedResolveIsAllocationFree() {
+        InformationElements ie = new InformationElements();
+        Frame f = new Frame()
+            .add(0, 0, bytes('h', 'o', 'm', 'e'))
+            .add(7, 0, COUNTRY_FR)
+            .add(11, 0, bssLoad(12, 128))
+            .add(45, 0, new byte[26])
+            .add(48, 0, RSN_WPA3_TRANSITION)
+            .add(191, 0, new byte[12])
+            .add(255, 35, new byte[20])
+            .add(221, 0, WMM);
+        int all = InformationElements.SECURITY | InformationElements.STANDARD | InformationElements.BSS_LOAD
+            | InformationElements.COUNTRY | InformationElements.VENDOR;
+        long bytes = Allocations.measure(50, 100, () -> {
+            for (int i = 0; i < 1_000; i++) f.resolve(ie, BSSID + i, 5180, all);
+        });
+        assertTrue("cached resolve allocates " + bytes + " B", bytes < 4_096);
+    }
+
+    /* ---------------- Trames de test ---------------- */
+
+    private static final class Frame {
+        int[] ids = new int[16];
+        int[] idExts = new int[16];
+        ByteBuffer[] bodies = new ByteBuffer[16];
+        int n;
+
+        Frame add(int id, int idExt, byte[] body) {
+            ids[n] = id;
+            idExts[n] = idExt;
+            // Comme InformationElement.getBytes() : vue en lecture seule
+            bodies[n++] = ByteBuffer.wrap(body).asReadOnlyBuffer();
+            return this;
+        }
+
+        int resolve(InformationElements ie, int frequency, int fields) {
+            return resolve(ie, BSSID, frequency, fields);
+        }
+
+        int resolve(InformationElements ie, long bssid, int frequency, int fields) {
+            return ie.resolve(bssid, "[ESS]", frequency, 0, ids, idExts, bodies, n, fields);
+        }
+    }
+
+    private static byte[] bssLoad(int stations, int utilization) {
+        return bytes(stations & 0xFF, stations >>> 8, utilization, 0x00, 0x00);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] out = new byte[values.length];
+        for (int i = 0; i < values.length; i++) out[i] = (byte) values[i];
+        return out;
+    }
+}
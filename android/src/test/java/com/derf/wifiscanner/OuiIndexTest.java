@@ -0,0 +1,133 @@
+package com.derf.wifiscanner;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Lookups de {@link OuiIndex} sur un index construit au format de
+ * {@code scripts/build-oui-index.mjs} : préfixe le plus long, adresses locales, et absence
+ * d'allocation par lookup.
+ */
+public class OuiIndexTest {
+
+    @Test
+    public void longestPrefixWins() {
+        OuiIndex index = new Builder()
+            .add("70B3D5", "IEEE Registration Authority")
+            .add("70B3D51", "Acme GmbH")
+            .add("70B3D5123", "Tiny Co")
+            .add("F0D1A9", "Apple, Inc.")
+            .build();
+        assertEquals("Tiny Co", index.vendor(mac("70:B3:D5:12:3F:FF")));
+        assertEquals("Acme GmbH", index.vendor(mac("70:B3:D5:1A:00:01")));
+        assertEquals("IEEE Registration Authority", index.vendor(mac("70:B3:D5:20:00:00")));
+        assertEquals("Apple, Inc.", index.vendor(mac("f0:d1:a9:00:00:01")));
+        assertNull(index.vendor(mac("00:11:22:33:44:55")));
+        assertEquals(4, index.prefixCount());
+        assertEquals(4, index.vendorCount());
+    }
+
+    @Test
+    public void locallyAdministeredAndMulticastHaveNoVendor() {
+        OuiIndex index = new Builder().add("F2D1A9", "Random").add("01005E", "Multicast").build();
+        assertEquals(-1, index.lookup(mac("f2:d1:a9:00:00:01")));
+        assertEquals(-1, index.lookup(mac("01:00:5e:00:00:01")));
+        assertEquals(-1, index.lookup(ScanSnapshotStore.INVALID_BSSID));
+    }
+
+    @Test
+    public void emptyIndexFindsNothing() {
+        assertNull(OuiIndex.EMPTY.vendor(mac("f0:d1:a9:00:00:01")));
+        assertEquals(0, OuiIndex.EMPTY.prefixCount());
+    }
+
+    @Test
+    public void rejectsForeignBuffer() {
+        try {
+            new OuiIndex(ByteBuffer.allocate(64));
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // magic invalide
+        }
+    }
+
+    /** Registre de taille réelle (~40k préfixes) : lookups sans allocation une fois les noms décodés. */
+    @Test
+    public void lookupIsAllocationFree() {
+        Builder b = new Builder();
+        Random rnd = new Random(1);
+        long[] macs = new long[4_096];
+        for (int i = 0; i < 36_000; i++) b.add(String.format("%06X", rnd.nextInt(1 << 24) & 0xFCFFFF), "Vendor " + (i % 30_000));
+        for (int i = 0; i < 5_000; i++) b.add(String.format("%07X", rnd.nextInt(1 << 28) & 0xFCFFFFF), "Vendor M" + i);
+        for (int i = 0; i < 5_000; i++) b.add(String.format("%09X", rnd.nextLong() & 0xFCFFFFFFFL), "Vendor S" + i);
+        OuiIndex index = b.build();
+        for (int i = 0; i < macs.length; i++) macs[i] = rnd.nextLong() & 0xFCFFFFFFFFFFL;
+        // La chauffe décode aussi les noms
+        long bytes = Allocations.measure(50, 100, () -> {
+            for (long m : macs) index.vendor(m);
+        });
+        // ~400k lookups : quelques centaines d'octets relèvent du bruit de mesure
+        assertTrue("lookup allocates " + bytes + " B over " + index.prefixCount() + " prefixes", bytes < 4_096);
+    }
+
+    /* ---------------- Index de test ---------------- */
+
+    private static long mac(String s) {
+        return ScanSnapshotStore.parseBssid(s);
+    }
+
+    /** Même layout que build-oui-index.mjs. */
+    private static final class Builder {
+        private final TreeMap<Long, String> maL = new TreeMap<>(), maM = new TreeMap<>(), maS = new TreeMap<>();
+
+        Builder add(String hex, String vendor) {
+            long key = Long.parseLong(hex, 16);
+            (hex.length() == 6 ? maL : hex.length() == 7 ? maM : maS).putIfAbsent(key, vendor);
+            return this;
+        }
+
+        OuiIndex build() {
+            TreeMap<String, Integer> ids = new TreeMap<>();
+            for (TreeMap<Long, String> reg : List.of(maS, maL, maM)) for (String v : reg.values()) ids.put(v, 0);
+            List<byte[]> names = new ArrayList<>();
+            int stringBytes = 0;
+            for (String v : ids.keySet()) {
+                ids.put(v, names.size());
+                byte[] utf8 = v.getBytes(StandardCharsets.UTF_8);
+                names.add(utf8);
+                stringBytes += utf8.length;
+            }
+            int buckets = 1 << OuiIndex.BUCKET_BITS;
+            int idsEnd = OuiIndex.HEADER_SIZE + 8 * maS.size() + 4 * (buckets + 1) + 4 * (maL.size() + maM.size())
+                + 2 * (maS.size() + maL.size() + maM.size());
+            int offsets = (idsEnd + 3) & ~3;
+            ByteBuffer buf = ByteBuffer.allocate(offsets + 4 * (names.size() + 1) + stringBytes);
+            buf.putInt(OuiIndex.MAGIC).putShort((short) OuiIndex.VERSION).putShort((short) 0);
+            buf.putInt(maL.size()).putInt(maM.size()).putInt(maS.size()).putInt(names.size()).putInt(stringBytes).putInt(0);
+            for (long k : maS.keySet()) buf.putLong(k);
+            // Premier index MA-L de chaque seau, plus la borne de fin
+            for (int bucket = 0; bucket <= buckets; bucket++) {
+                buf.putInt(maL.headMap((long) bucket << (24 - OuiIndex.BUCKET_BITS)).size());
+            }
+            for (long k : maL.keySet()) buf.putInt((int) k);
+            for (long k : maM.keySet()) buf.putInt((int) k);
+            for (TreeMap<Long, String> reg : List.of(maS, maL, maM)) {
+                for (String v : reg.values()) buf.putShort((short) (int) ids.get(v));
+            }
+            buf.position(offsets);
+            int off = 0;
+            buf.putInt(0);
+            for (byte[] n : names) buf.putInt(off += n.length);
+            for (byte[] n : names) buf.put(n);
+            return new OuiIndex(buf);
+        }
+    }
+}
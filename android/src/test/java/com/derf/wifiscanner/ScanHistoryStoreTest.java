@@ -0,0 +1,51 @@
+package com.derf.wifiscanner;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+/** Requêtes de {@link ScanHistoryStore} quand l'horloge murale recule entre deux scans. */
+public class ScanHistoryStoreTest {
+
+    @Test
+    public void queriesFindScansWrittenAfterClockWentBack() throws Exception {
+        File dir = Files.createTempDirectory("wifi-history").toFile();
+        SyntheticScanSource source = new SyntheticScanSource(300, 0, 0, 11);
+        ScanSnapshotStore store = new ScanSnapshotStore(new SsidPool());
+        // Segments minimaux : ~3 scans par segment, le recul traverse plusieurs segments
+        try (ScanHistoryStore history = new ScanHistoryStore(dir, 16L << 20, ScanHistoryStore.MIN_SEGMENT_BYTES)) {
+            int perScan = store.ingest(source.nextScan());
+            for (long t = 1_000; t <= 10_000; t += 1_000) history.append(store, t, 0L);
+            // Correction NTP : l'heure murale repart en arrière, dans le segment courant puis au-delà
+            long[] rewound = {500, 1_500, 9_500, 700, 800, 900, 950};
+            for (long t : rewound) history.append(store, t, 0L);
+
+            assertEquals(perScan, count(history, 400, 600, Integer.MAX_VALUE));
+            assertEquals(2 * perScan, count(history, 1_000, 1_500, Integer.MAX_VALUE));
+            assertEquals(3 * perScan, count(history, 9_000, 10_000, Integer.MAX_VALUE));
+            assertEquals(4 * perScan, count(history, 700, 999, Integer.MAX_VALUE));
+            // Pagination : mêmes totaux par petites pages
+            assertEquals(4 * perScan, count(history, 700, 999, 97));
+            assertEquals(17 * perScan, count(history, Long.MIN_VALUE, Long.MAX_VALUE, 1_000));
+        } finally {
+            for (File f : dir.listFiles()) f.delete();
+            dir.delete();
+        }
+    }
+
+    private static int count(ScanHistoryStore history, long from, long to, int limit) throws Exception {
+        int[] n = new int[1];
+        long cursor = -1L;
+        do {
+            cursor = history.query(from, to, null, limit, cursor, (seg, off) -> {
+                long t = ScanHistoryStore.scanTime(seg, off);
+                assertTrue(t >= from && t <= to);
+                n[0]++;
+            });
+        } while (cursor >= 0);
+        return n[0];
+    }
+}
@@ -0,0 +1,81 @@
+package com.derf.wifiscanner;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks JMH du pipeline de scan sur {@link SyntheticScanSource}, un scan par opération.
+ * Lancés par {@link ScanPipelineJmhTest} ({@code ./gradlew testDebugUnitTest -Pjmh}) ; avec le
+ * profiler GC, {@code gc.alloc.rate.norm} donne les octets alloués par scan.
+ * {@link #generate()} mesure la source seule, à retrancher des autres.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanPipelineBenchmark {
+
+    @Param({ "100", "1000", "5000" })
+    public int apCount;
+
+    private SyntheticScanSource source;
+    private ScanSnapshotStore store;
+    private SignalTracker signal;
+    private ScanSerializer serializer;
+    private ScanBinaryEncoder encoder;
+    private int[] selected;
+
+    @Setup
+    public void setUp() {
+        source = new SyntheticScanSource(apCount, 0, 0, 1);
+        store = new ScanSnapshotStore(new SsidPool());
+        signal = new SignalTracker();
+        serializer = new ScanSerializer(signal, new FingerprintIndex(), OuiIndex.EMPTY);
+        encoder = new ScanBinaryEncoder();
+        selected = new int[apCount];
+        store.ingest(source.nextScan());
+    }
+
+    @Benchmark
+    public Object generate() {
+        return source.nextScan();
+    }
+
+    @Benchmark
+    public int dedup() {
+        return store.ingest(source.nextScan());
+    }
+
+    @Benchmark
+    public int encodeBinary() {
+        ScanQuery q = ScanSerializer.QUERY_FULL;
+        int n = q.select(store, selected);
+        return encoder.encode(store, selected, n, q, false, 0L, 0L, null, null);
+    }
+
+    @Benchmark
+    public String serializeJson() {
+        return serializer.buildScanPayload(store, false, ScanSerializer.QUERY_FULL).toString();
+    }
+
+    /** Livraison complète : dédup, séries RSSI, payload compact sérialisé comme au resolve. */
+    @Benchmark
+    public String scanToResolve() {
+        store.ingest(source.nextScan());
+        signal.update(store, 0L);
+        return serializer.buildScanPayload(store, false, ScanSerializer.QUERY_COMPACT).toString();
+    }
+}
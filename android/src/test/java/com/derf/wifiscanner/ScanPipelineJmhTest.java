@@ -0,0 +1,35 @@
+package com.derf.wifiscanner;
+
+import java.io.File;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lance {@link ScanPipelineBenchmark} et {@link FingerprintIndexBenchmark} sous JMH. Ignoré par
+ * défaut (plusieurs minutes) : {@code ./gradlew testDebugUnitTest -Pjmh}. Résultats JSON dans
+ * {@code build/reports/jmh/}.
+ */
+public class ScanPipelineJmhTest {
+
+    @Test
+    public void runBenchmarks() throws Exception {
+        Assume.assumeTrue("JMH disabled, run with -Pjmh", Boolean.getBoolean("jmh"));
+        File reports = new File("build/reports/jmh");
+        reports.mkdirs();
+        Options options = new OptionsBuilder()
+            .include(ScanPipelineBenchmark.class.getName())
+            .include(FingerprintIndexBenchmark.class.getName())
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(new File(reports, "benchmarks.json").getPath())
+            .shouldFailOnError(true)
+            .build();
+        new Runner(options).run();
+    }
+}
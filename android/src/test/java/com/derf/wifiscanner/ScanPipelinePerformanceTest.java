@@ -0,0 +1,220 @@
+package com.derf.wifiscanner;
+
+import static org.junit.Assert.*;
+
+import android.net.wifi.ScanResult;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Pipeline de scan hors appareil, sur {@link SyntheticScanSource} et {@link ReplayScanSource} :
+ * exactitude des sources, puis allocation de la dédup, de la sérialisation et du parcours
+ * complet scan → payload résolu. Les budgets d'allocation (déterministes) suivent les valeurs
+ * mesurées avec une marge d'environ 2x ; le débit n'est vérifié qu'en relatif (binaire contre
+ * JSON), seul rapport stable d'une machine de CI à l'autre. Les mesures accompagnent les messages
+ * d'échec ; le débit absolu relève de {@code ScanPipelineBenchmark} ({@code -Pjmh}).
+ */
+public class ScanPipelinePerformanceTest {
+
+    private static final int APS = 2_000;
+    private static final int WARMUP_SCANS = 200;
+    private static final int MEASURED_SCANS = 500;
+
+    /* ---------------- Sources ---------------- */
+
+    @Test
+    public void syntheticSourceIsDeterministic() {
+        List<ScanResult> a = new SyntheticScanSource(APS, 0, 0, 42).nextScan();
+        List<ScanResult> b = new SyntheticScanSource(APS, 0, 0, 42).nextScan();
+        assertTrue(a.size() > APS * 9 / 10);
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.get(i).BSSID, b.get(i).BSSID);
+            assertEquals(a.get(i).level, b.get(i).level);
+            assertEquals(a.get(i).frequency, b.get(i).frequency);
+        }
+    }
+
+    /** Chaque scan est une nouvelle observation, même avec l'horloge figée d'android.jar. */
+    @Test
+    public void syntheticTimestampsAdvance() {
+        SyntheticScanSource source = new SyntheticScanSource(200, 0, 0, 1);
+        ScanSnapshotStore first = new ScanSnapshotStore(new SsidPool());
+        first.ingest(source.nextScan());
+        int compared = 0;
+        for (ScanResult r : source.nextScan()) {
+            int slot = first.indexOf(ScanSnapshotStore.parseBssid(r.BSSID));
+            if (slot < 0) continue;
+            assertTrue(r.timestamp > first.timestampMicros(slot));
+            compared++;
+        }
+        assertTrue(compared > 0);
+    }
+
+    @Test
+    public void replayReproducesRecordedHistory() throws Exception {
+        File dir = Files.createTempDirectory("wifi-trace").toFile();
+        SyntheticScanSource synthetic = new SyntheticScanSource(300, 0, 0, 7);
+        SsidPool pool = new SsidPool();
+        ScanSnapshotStore store = new ScanSnapshotStore(pool);
+        int[] recorded = new int[5];
+        try (ScanHistoryStore history = new ScanHistoryStore(dir, 16L << 20, 1L << 20)) {
+            for (int scan = 0; scan < recorded.length; scan++) {
+                recorded[scan] = store.ingest(synthetic.nextScan());
+                history.append(store, 1_000L * (scan + 1), 0L);
+            }
+            ReplayScanSource.Trace trace = ReplayScanSource.Trace.fromHistory(history);
+            assertEquals(recorded.length, trace.scans);
+            assertEquals(1_000L, trace.scanTime[1] - trace.scanTime[0]);
+
+            ReplayScanSource replay = new ReplayScanSource(trace, 0, 0);
+            for (int scan = 0; scan < recorded.length; scan++) {
+                assertEquals(recorded[scan], replay.nextScan().size());
+            }
+            // En boucle : le dernier scan enregistré est encore dans store
+            for (int scan = 0; scan < recorded.length - 1; scan++) replay.nextScan();
+            List<ScanResult> last = replay.nextScan();
+            assertEquals(store.size(), last.size());
+            for (ScanResult r : last) {
+                int slot = store.indexOf(ScanSnapshotStore.parseBssid(r.BSSID));
+                assertTrue(slot >= 0);
+                assertEquals(store.rssi(slot), r.level);
+                assertEquals(store.frequency(slot), r.frequency);
+                assertEquals(store.ssid(slot), r.SSID);
+            }
+        } finally {
+            for (File f : dir.listFiles()) f.delete();
+            dir.delete();
+        }
+    }
+
+    /* ---------------- Allocation ---------------- */
+
+    @Test
+    public void dedupIsAllocationFree() {
+        SyntheticScanSource source = new SyntheticScanSource(APS, 0, 0, 3);
+        ScanSnapshotStore store = new ScanSnapshotStore(new SsidPool());
+        // Scans générés d'avance (la source alloue ses ScanResult à chaque scan), rejoués en boucle
+        List<List<ScanResult>> scans = new ArrayList<>();
+        for (int i = 0; i < 4; i++) scans.add(new ArrayList<>(source.nextScan()));
+        int[] next = new int[1];
+        Measure m = measure(() -> store.ingest(scans.get(next[0]++ & 3)), () -> store.size());
+        // La dédup réutilise ses tableaux : rien par scan hors bruit de mesure
+        assertTrue("dedup: " + m, m.bytesPerScan < 1_024);
+    }
+
+    @Test
+    public void binaryEncodingAllocatesLittle() {
+        SyntheticScanSource source = new SyntheticScanSource(APS, 0, 0, 4);
+        ScanSnapshotStore store = new ScanSnapshotStore(new SsidPool());
+        ScanBinaryEncoder encoder = new ScanBinaryEncoder();
+        ScanQuery q = ScanQuery.all(ScanQuery.FIELDS_ALL);
+        int[] selected = new int[APS];
+        store.ingest(source.nextScan());
+        Measure m = measure(() -> {
+            int n = q.select(store, selected);
+            encoder.encode(store, selected, n, q, false, 0L, 0L, null, null);
+        }, () -> store.size());
+        // Seuls les octets UTF-8 des SSID distincts sont alloués à chaque encodage
+        assertTrue("binary encode: " + m, m.bytesPerAp < 64);
+    }
+
+    @Test
+    public void jsonSerializationStaysWithinBudget() {
+        SyntheticScanSource source = new SyntheticScanSource(APS, 0, 0, 5);
+        ScanSnapshotStore store = new ScanSnapshotStore(new SsidPool());
+        ScanSerializer serializer = new ScanSerializer(new SignalTracker(), new FingerprintIndex(), OuiIndex.EMPTY);
+        store.ingest(source.nextScan());
+        Measure m = measure(() -> serializer.buildScanPayload(store, false, null).toString(), () -> store.size());
+        // ~1,1 Ko/AP mesuré (objet org.json par AP, puis texte)
+        assertTrue("json payload: " + m, m.bytesPerAp < 2_048);
+    }
+
+    /** Même enchaînement que WifiScannerPlugin à la livraison d'un scan, jusqu'au JSON résolu. */
+    @Test
+    public void scanToResolveStaysWithinBudget() {
+        SyntheticScanSource source = new SyntheticScanSource(APS, 0, 0, 6);
+        ScanSnapshotStore store = new ScanSnapshotStore(new SsidPool());
+        SignalTracker signal = new SignalTracker();
+        ScanSerializer serializer = new ScanSerializer(signal, new FingerprintIndex(), OuiIndex.EMPTY);
+        ScanQuery q = ScanQuery.all(ScanQuery.FIELDS_COMPACT);
+        Measure m = measure(() -> {
+            store.ingest(source.nextScan());
+            signal.update(store, 0L);
+            serializer.buildScanPayload(store, false, q).toString();
+        }, () -> store.size());
+        // ~1 Ko/AP mesuré en projection compacte, ScanResult neufs de la source compris
+        assertTrue("scan → resolve: " + m, m.bytesPerAp < 1_792);
+    }
+
+    /** Même projection des deux côtés, mesures alternées, meilleur de trois. */
+    @Test
+    public void binaryEncodingOutpacesJson() {
+        SyntheticScanSource source = new SyntheticScanSource(APS, 0, 0, 8);
+        ScanSnapshotStore store = new ScanSnapshotStore(new SsidPool());
+        ScanSerializer serializer = new ScanSerializer(new SignalTracker(), new FingerprintIndex(), OuiIndex.EMPTY);
+        ScanBinaryEncoder encoder = new ScanBinaryEncoder();
+        ScanQuery q = ScanQuery.all(ScanQuery.FIELDS_ALL);
+        int[] selected = new int[APS];
+        store.ingest(source.nextScan());
+        double binary = 0;
+        double json = 0;
+        for (int round = 0; round < 3; round++) {
+            binary = Math.max(binary, measure(() -> {
+                int n = q.select(store, selected);
+                encoder.encode(store, selected, n, q, false, 0L, 0L, null, null);
+            }, () -> store.size()).apsPerSecond);
+            json = Math.max(json, measure(() -> serializer.buildScanPayload(store, false, q).toString(),
+                () -> store.size()).apsPerSecond);
+        }
+        // ~15x mesuré : l'encodeur colonnaire n'alloue ni objet ni texte par AP
+        assertTrue(String.format("binary %.0f AP/s vs json %.0f AP/s", binary, json), binary > 4 * json);
+    }
+
+    /* ---------------- Mesure ---------------- */
+
+    private static final class Measure {
+        double apsPerSecond;
+        long bytesPerScan;
+        long bytesPerAp;
+        double microsPerScan;
+
+        @Override
+        public String toString() {
+            return String.format("%.0f AP/s, %.1f µs/scan, %d B/scan, %d B/AP",
+                apsPerSecond, microsPerScan, bytesPerScan, bytesPerAp);
+        }
+    }
+
+    private interface Step {
+        void run();
+    }
+
+    private interface Size {
+        int get();
+    }
+
+    private static Measure measure(Step step, Size aps) {
+        for (int i = 0; i < WARMUP_SCANS; i++) step.run();
+        long totalAps = 0;
+        long bytes0 = Allocations.current();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < MEASURED_SCANS; i++) {
+            step.run();
+            totalAps += aps.get();
+        }
+        long elapsed = System.nanoTime() - t0;
+        long bytes = Allocations.current() - bytes0;
+        Measure m = new Measure();
+        m.apsPerSecond = totalAps * 1e9 / elapsed;
+        m.microsPerScan = elapsed / 1e3 / MEASURED_SCANS;
+        m.bytesPerScan = bytes / MEASURED_SCANS;
+        m.bytesPerAp = totalAps > 0 ? bytes / totalAps : 0;
+        return m;
+    }
+}
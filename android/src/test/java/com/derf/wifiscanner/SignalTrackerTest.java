@@ -0,0 +1,30 @@
+package com.derf.wifiscanner;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/** Éviction LRU de {@link SignalTracker} au-delà de {@link SignalTracker#MAX_APS}. */
+public class SignalTrackerTest {
+
+    @Test
+    public void evictsLeastRecentlyUpdated() {
+        int aps = SignalTracker.MAX_APS * 2;
+        ScanSnapshotStore store = new ScanSnapshotStore(new SsidPool());
+        store.ingest(new SyntheticScanSource(aps, 0, 0, 3).nextScan());
+        SignalTracker tracker = new SignalTracker();
+        tracker.update(store, 0L);
+
+        // Mis à jour dans l'ordre du snapshot : seuls les MAX_APS derniers restent
+        int n = store.size();
+        assertEquals(-1, tracker.indexOf(store.bssid(0)));
+        assertEquals(-1, tracker.indexOf(store.bssid(n - SignalTracker.MAX_APS - 1)));
+        assertTrue(tracker.indexOf(store.bssid(n - SignalTracker.MAX_APS)) >= 0);
+        assertTrue(tracker.indexOf(store.bssid(n - 1)) >= 0);
+
+        // Les séries conservées restent cohérentes après les évictions
+        int slot = tracker.indexOf(store.bssid(n - 1));
+        assertEquals(1, tracker.sampleCount(slot));
+        assertEquals(store.rssi(n - 1), tracker.sample(slot, 0));
+    }
+}
@@ -0,0 +1,152 @@
+#!/usr/bin/env node
+/**
+ * Génère l'index OUI natif (`android/src/main/assets/oui.bin`) lu par `OuiIndex.java`.
+ *
+ * Entrées, combinables :
+ *   - CSV IEEE (https://standards-oui.ieee.org/) : oui.csv (MA-L), mam.csv (MA-M), oui36.csv (MA-S) ;
+ *   - JSON `{ "<préfixe hex>": "<fabricant>" }` (6, 7 ou 9 chiffres hex, séparateurs ignorés).
+ *
+ * Usage : node scripts/build-oui-index.mjs oui.csv mam.csv oui36.csv [-o android/src/main/assets/oui.bin]
+ *
+ * L'asset versionné est généré par `npm run build:oui` depuis `scripts/oui-seed.json`, une
+ * sélection de préfixes MA-L courants (hors ligne). Pour l'index complet, ajouter les CSV IEEE :
+ * `npm run build:oui -- oui.csv mam.csv oui36.csv` (premier vu gagne : le seed reste prioritaire).
+ */
+import { readFileSync, writeFileSync, mkdirSync } from 'node:fs';
+import { dirname } from 'node:path';
+
+const MAGIC = 0x574f4931; // "WOI1"
+const VERSION = 1;
+const HEADER_SIZE = 32;
+// Seaux MA-L par bits de poids fort (OuiIndex.BUCKET_BITS)
+const BUCKET_BITS = 12;
+const BUCKETS = 1 << BUCKET_BITS;
+const MAX_VENDORS = 0xffff;
+
+const args = process.argv.slice(2);
+let output = 'android/src/main/assets/oui.bin';
+const inputs = [];
+for (let i = 0; i < args.length; i++) {
+  if (args[i] === '-o') output = args[++i];
+  else inputs.push(args[i]);
+}
+if (inputs.length === 0) {
+  console.error('usage: build-oui-index.mjs <oui.csv|mam.csv|oui36.csv|prefixes.json>... [-o out.bin]');
+  process.exit(1);
+}
+
+// Préfixe hex → fabricant, par longueur (6 = MA-L, 7 = MA-M, 9 = MA-S)
+const registries = { 6: new Map(), 7: new Map(), 9: new Map() };
+
+function addPrefix(raw, vendor) {
+  const hex = String(raw).replace(/[^0-9a-fA-F]/g, '').toUpperCase();
+  const name = String(vendor ?? '').trim().replace(/\s+/g, ' ');
+  const registry = registries[hex.length];
+  if (!registry || !name) return false;
+  // Premier vu gagne : les registres IEEE n'ont pas de doublon, les JSON hérités parfois
+  if (!registry.has(hex)) registry.set(hex, name);
+  return true;
+}
+
+/** Découpe une ligne CSV (champs entre guillemets, "" échappé). */
+function splitCsvLine(line) {
+  const fields = [];
+  let cur = '';
+  let quoted = false;
+  for (let i = 0; i < line.length; i++) {
+    const c = line[i];
+    if (quoted) {
+      if (c === '"' && line[i + 1] === '"') {
+        cur += '"';
+        i++;
+      } else if (c === '"') quoted = false;
+      else cur += c;
+    } else if (c === '"') quoted = true;
+    else if (c === ',') {
+      fields.push(cur);
+      cur = '';
+    } else cur += c;
+  }
+  fields.push(cur);
+  return fields;
+}
+
+/** Lignes CSV logiques (une adresse entre guillemets peut contenir des retours à la ligne). */
+function* csvRecords(text) {
+  let pending = '';
+  for (const line of text.split(/\r?\n/)) {
+    pending = pending ? pending + '\n' + line : line;
+    if ((pending.match(/"/g) || []).length % 2 === 0) {
+      if (pending.trim()) yield splitCsvLine(pending);
+      pending = '';
+    }
+  }
+}
+
+for (const file of inputs) {
+  const text = readFileSync(file, 'utf8');
+  let added = 0;
+  if (file.endsWith('.json')) {
+    for (const [prefix, vendor] of Object.entries(JSON.parse(text))) if (addPrefix(prefix, vendor)) added++;
+  } else {
+    // Registry,Assignment,Organization Name,Organization Address
+    for (const [registry, assignment, name] of csvRecords(text)) {
+      if (registry === 'Registry') continue;
+      if (addPrefix(assignment, name)) added++;
+    }
+  }
+  console.log(`${file}: ${added} prefixes`);
+}
+
+// Table de chaînes dédupliquée, ids par ordre alphabétique (sortie reproductible)
+const vendorNames = [...new Set([...registries[6].values(), ...registries[7].values(), ...registries[9].values()])].sort();
+if (vendorNames.length > MAX_VENDORS) throw new Error(`too many vendors: ${vendorNames.length}`);
+const vendorId = new Map(vendorNames.map((name, i) => [name, i]));
+const encoded = vendorNames.map((name) => Buffer.from(name, 'utf8'));
+const stringBytes = encoded.reduce((sum, b) => sum + b.length, 0);
+
+const sorted = (registry) =>
+  [...registry.entries()].map(([hex, name]) => [BigInt('0x' + hex), vendorId.get(name)]).sort((a, b) => (a[0] < b[0] ? -1 : a[0] > b[0] ? 1 : 0));
+const maL = sorted(registries[6]);
+const maM = sorted(registries[7]);
+const maS = sorted(registries[9]);
+
+const idsEnd = HEADER_SIZE + 8 * maS.length + 4 * (BUCKETS + 1) + 4 * maL.length + 4 * maM.length + 2 * (maS.length + maL.length + maM.length);
+const offsetsStart = (idsEnd + 3) & ~3;
+const size = offsetsStart + 4 * (vendorNames.length + 1) + stringBytes;
+const buf = Buffer.alloc(size);
+
+buf.writeInt32BE(MAGIC, 0);
+buf.writeInt16BE(VERSION, 4);
+buf.writeInt32BE(maL.length, 8);
+buf.writeInt32BE(maM.length, 12);
+buf.writeInt32BE(maS.length, 16);
+buf.writeInt32BE(vendorNames.length, 20);
+buf.writeInt32BE(stringBytes, 24);
+
+let off = HEADER_SIZE;
+for (const [key] of maS) off = buf.writeBigInt64BE(key, off);
+// Premier index MA-L de chaque seau, plus la borne de fin
+let entry = 0;
+for (let bucket = 0; bucket <= BUCKETS; bucket++) {
+  while (entry < maL.length && Number(maL[entry][0]) >>> (24 - BUCKET_BITS) < bucket) entry++;
+  off = buf.writeInt32BE(entry, off);
+}
+for (const [key] of maL) off = buf.writeInt32BE(Number(key), off);
+for (const [key] of maM) off = buf.writeInt32BE(Number(key), off);
+for (const [, id] of [...maS, ...maL, ...maM]) off = buf.writeUInt16BE(id, off);
+
+off = offsetsStart;
+let strOff = 0;
+off = buf.writeInt32BE(0, off);
+for (const b of encoded) {
+  strOff += b.length;
+  off = buf.writeInt32BE(strOff, off);
+}
+for (const b of encoded) off += b.copy(buf, off);
+
+mkdirSync(dirname(output), { recursive: true });
+writeFileSync(output, buf);
+console.log(
+  `${output}: MA-L=${maL.length} MA-M=${maM.length} MA-S=${maS.length} vendors=${vendorNames.length} bytes=${size}`,
+);
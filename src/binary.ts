@@ -0,0 +1,268 @@
+import type { ScanResponse, WifiNetwork } from './definitions';
+
+/**
+ * Décodeur du format binaire colonnaire (`format: "binary"`), miroir de `ScanBinaryEncoder.java`.
+ * Les colonnes sont exposées en typed arrays (vues sur le buffer décodé, sans copie) ;
+ * les `WifiNetwork` ne sont construits qu'à l'accès.
+ */
+
+const MAGIC = 0x31425357; // "WSB1"
+const VERSION = 1;
+const HEADER_BYTES = 32;
+
+const FLAG_CACHED = 1;
+const FLAG_AGES = 1 << 1;
+const FLAG_SIGNAL = 1 << 2;
+const FLAG_WIDTH = 1 << 3;
+const FLAG_FILTERED = 1 << 4;
+const FLAG_VENDOR = 1 << 5;
+const NO_VENDOR = 0xffff;
+// Index u16 du dictionnaire, NO_VENDOR exclu
+const MAX_DICTIONARY = NO_VENDOR;
+
+export interface BinaryScanColumns {
+  /** 6 octets par AP. */
+  bssid: Uint8Array;
+  rssi: Int8Array;
+  frequency: Uint16Array;
+  /** -1 si la fréquence est hors grille. */
+  channel: Int16Array;
+  /** Index dans `ssids`. */
+  ssidIndex: Uint16Array;
+  /** Dictionnaire des chaînes : SSID et noms de fabricant. */
+  ssids: string[];
+  ageMs?: Uint32Array;
+  /** NaN si l'AP n'a pas encore d'échantillon. */
+  smoothedRssi?: Float32Array;
+  rssiVariance?: Float32Array;
+  rssiTrend?: Float32Array;
+  centerFreq0?: Uint16Array;
+  centerFreq1?: Uint16Array;
+  channelWidth?: Uint8Array;
+  /** Index du fabricant dans `ssids`, 0xFFFF si inconnu. */
+  vendorIndex?: Uint16Array;
+}
+
+export class BinaryScanResults {
+  readonly count: number;
+  /** Nombre d'AP avant filtrage, présent si un filtre ou `limit` est appliqué. */
+  readonly total?: number;
+  /** Epoch ms de l'observation la plus récente du snapshot. */
+  readonly timestamp: number;
+  readonly ageMs: number;
+  readonly cached: boolean;
+  readonly columns: BinaryScanColumns;
+
+  private cache: (WifiNetwork | undefined)[] = [];
+
+  constructor(bytes: Uint8Array) {
+    const buffer = bytes.buffer;
+    const base = bytes.byteOffset;
+    if (base % 8 !== 0) throw new Error('Binary scan buffer must be 8-byte aligned');
+    const view = new DataView(buffer, base, bytes.byteLength);
+    if (bytes.byteLength < HEADER_BYTES || view.getUint32(0, true) !== MAGIC) {
+      throw new Error('Not a binary scan payload');
+    }
+    const version = view.getUint16(4, true);
+    if (version !== VERSION) throw new Error('Unsupported binary scan version: ' + version);
+    const flags = view.getUint16(6, true);
+    const n = view.getUint32(8, true);
+    const ssidCount = view.getUint32(28, true);
+    if (ssidCount > MAX_DICTIONARY) throw new Error('Binary scan dictionary too large: ' + ssidCount);
+
+    this.count = n;
+    if (flags & FLAG_FILTERED) this.total = view.getUint32(12, true);
+    this.timestamp = view.getFloat64(16, true);
+    this.ageMs = view.getUint32(24, true);
+    this.cached = (flags & FLAG_CACHED) !== 0;
+
+    let off = base + HEADER_BYTES;
+    let ageMs: Uint32Array | undefined;
+    let smoothedRssi: Float32Array | undefined;
+    let rssiVariance: Float32Array | undefined;
+    let rssiTrend: Float32Array | undefined;
+    if (flags & FLAG_AGES) {
+      ageMs = new Uint32Array(buffer, off, n);
+      off += 4 * n;
+    }
+    if (flags & FLAG_SIGNAL) {
+      smoothedRssi = new Float32Array(buffer, off, n);
+      rssiVariance = new Float32Array(buffer, off + 4 * n, n);
+      rssiTrend = new Float32Array(buffer, off + 8 * n, n);
+      off += 12 * n;
+    }
+    const frequency = new Uint16Array(buffer, off, n);
+    const channel = new Int16Array(buffer, off + 2 * n, n);
+    const ssidIndex = new Uint16Array(buffer, off + 4 * n, n);
+    off += 6 * n;
+    let centerFreq0: Uint16Array | undefined;
+    let centerFreq1: Uint16Array | undefined;
+    const width = (flags & FLAG_WIDTH) !== 0;
+    if (width) {
+      centerFreq0 = new Uint16Array(buffer, off, n);
+      centerFreq1 = new Uint16Array(buffer, off + 2 * n, n);
+      off += 4 * n;
+    }
+    const rssi = new Int8Array(buffer, off, n);
+    off += n;
+    let channelWidth: Uint8Array | undefined;
+    if (width) {
+      channelWidth = new Uint8Array(buffer, off, n);
+      off += n;
+    }
+    const bssid = new Uint8Array(buffer, off, 6 * n);
+    off += 6 * n;
+    off = base + ((off - base + 3) & ~3);
+
+    const offsets = new Uint32Array(buffer, off, ssidCount + 1);
+    off += 4 * (ssidCount + 1);
+    const decoder = new TextDecoder();
+    const ssids: string[] = new Array(ssidCount);
+    for (let i = 0; i < ssidCount; i++) {
+      ssids[i] = decoder.decode(new Uint8Array(buffer, off + offsets[i], offsets[i + 1] - offsets[i]));
+    }
+    off += offsets[ssidCount];
+    let vendorIndex: Uint16Array | undefined;
+    if (flags & FLAG_VENDOR) {
+      off = base + ((off - base + 1) & ~1);
+      vendorIndex = new Uint16Array(buffer, off, n);
+    }
+
+    this.columns = {
+      bssid,
+      rssi,
+      frequency,
+      channel,
+      ssidIndex,
+      ssids,
+      ageMs,
+      smoothedRssi,
+      rssiVariance,
+      rssiTrend,
+      centerFreq0,
+      centerFreq1,
+      channelWidth,
+      vendorIndex,
+    };
+  }
+
+  /** AP `i`, construit au premier accès puis mis en cache. */
+  network(i: number): WifiNetwork {
+    let net = this.cache[i];
+    if (!net) {
+      net = new LazyWifiNetwork(this, i);
+      this.cache[i] = net;
+    }
+    return net;
+  }
+
+  /** Tous les AP (objets paresseux : les champs sont lus dans les colonnes à l'accès). */
+  get networks(): WifiNetwork[] {
+    const out: WifiNetwork[] = new Array(this.count);
+    for (let i = 0; i < this.count; i++) out[i] = this.network(i);
+    return out;
+  }
+
+  bssidAt(i: number): string {
+    const b = this.columns.bssid;
+    let s = '';
+    for (let k = 0; k < 6; k++) {
+      const v = b[6 * i + k];
+      s += (v < 16 ? '0' : '') + v.toString(16) + (k < 5 ? ':' : '');
+    }
+    return s;
+  }
+}
+
+class LazyWifiNetwork implements WifiNetwork {
+  constructor(private readonly r: BinaryScanResults, private readonly i: number) {}
+
+  get ssid(): string {
+    return this.r.columns.ssids[this.r.columns.ssidIndex[this.i]];
+  }
+  get bssid(): string {
+    return this.r.bssidAt(this.i);
+  }
+  get signalStrength(): number {
+    return this.r.columns.rssi[this.i];
+  }
+  get frequency(): number {
+    return this.r.columns.frequency[this.i];
+  }
+  get channel(): number {
+    return this.r.columns.channel[this.i];
+  }
+  get ageMs(): number | undefined {
+    const ages = this.r.columns.ageMs;
+    return ages ? ages[this.i] : undefined;
+  }
+  get timestamp(): number | undefined {
+    // Même base que le snapshot : timestamp + ageMs = instant de l'encodage
+    const age = this.ageMs;
+    return age === undefined ? undefined : this.r.timestamp + this.r.ageMs - age;
+  }
+  get smoothedRssi(): number | undefined {
+    return stat(this.r.columns.smoothedRssi, this.i);
+  }
+  get rssiVariance(): number | undefined {
+    return stat(this.r.columns.rssiVariance, this.i);
+  }
+  get rssiTrend(): number | undefined {
+    return stat(this.r.columns.rssiTrend, this.i);
+  }
+  get centerFreq0(): number | undefined {
+    const c = this.r.columns.centerFreq0;
+    return c ? c[this.i] : undefined;
+  }
+  get centerFreq1(): number | undefined {
+    const c = this.r.columns.centerFreq1;
+    return c ? c[this.i] : undefined;
+  }
+  get channelWidth(): number | undefined {
+    const c = this.r.columns.channelWidth;
+    return c ? c[this.i] : undefined;
+  }
+  get vendor(): string | undefined {
+    const c = this.r.columns.vendorIndex;
+    if (!c || c[this.i] === NO_VENDOR) return undefined;
+    return this.r.columns.ssids[c[this.i]];
+  }
+
+  toJSON(): WifiNetwork {
+    return {
+      ssid: this.ssid,
+      bssid: this.bssid,
+      signalStrength: this.signalStrength,
+      frequency: this.frequency,
+      channel: this.channel,
+      timestamp: this.timestamp,
+      ageMs: this.ageMs,
+      smoothedRssi: this.smoothedRssi,
+      rssiVariance: this.rssiVariance,
+      rssiTrend: this.rssiTrend,
+      centerFreq0: this.centerFreq0,
+      centerFreq1: this.centerFreq1,
+      channelWidth: this.channelWidth,
+      vendor: this.vendor,
+    };
+  }
+}
+
+function stat(column: Float32Array | undefined, i: number): number | undefined {
+  if (!column) return undefined;
+  const v = column[i];
+  return Number.isNaN(v) ? undefined : Math.round(v * 1000) / 1000;
+}
+
+/** Décode la chaîne base64 `data` d'une réponse `format: "binary"`. */
+export function decodeScanBinary(data: string): BinaryScanResults {
+  const raw = atob(data);
+  const bytes = new Uint8Array(raw.length);
+  for (let i = 0; i < raw.length; i++) bytes[i] = raw.charCodeAt(i);
+  return new BinaryScanResults(bytes);
+}
+
+/** AP d'une réponse, quel que soit son format. */
+export function scanNetworks(response: ScanResponse): WifiNetwork[] {
+  return response.format === 'binary' && response.data ? decodeScanBinary(response.data).networks : response.networks;
+}
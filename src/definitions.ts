@@ -1,13 +1,478 @@
+import type { PluginListenerHandle } from '@capacitor/core';
+
 export interface WifiScannerPlugin {
   echo(options: { value: string }): Promise<{ value: string }>;
   checkPermissions(): Promise<{ granted: boolean }>;
   requestPermissions(): Promise<{ granted: boolean }>;
   isWiFiEnabled(): Promise<{ enabled: boolean }>;
-  scan(): Promise<{ networks: WifiNetwork[] }>;
+  /**
+   * Lance un scan. Les appels concurrents sont regroupés sur le même scan radio
+   * et résolus avec le même résultat. Voir `deadlineMs` / `fallback` pour borner l'attente.
+   */
+  scan(options?: ScanOptions): Promise<ScanResponse>;
+  /** Derniers résultats en cache côté OS, sans lancer de scan. */
+  getLastScanResults(options?: ScanQueryOptions): Promise<ScanResponse>;
+  /** Budget de scans restant selon le modèle du throttling Android (4 / 2 min, 1 / 30 min en arrière-plan). */
+  getScanBudget(): Promise<ScanBudget>;
+  /**
+   * Occupation et congestion par canal de 20 MHz (agrégations 40 à 320 MHz comprises)
+   * sur les derniers résultats livrés.
+   */
+  getChannelAnalysis(): Promise<ChannelAnalysis>;
+  /** Charge des empreintes de référence dans l'index natif (k-NN) ; `replace` vide d'abord l'index. */
+  loadFingerprints(options: {
+    fingerprints: Fingerprint[];
+    replace?: boolean;
+  }): Promise<{ loaded: number; count: number; accessPoints: number }>;
+  clearFingerprints(): Promise<void>;
+  /**
+   * k plus proches empreintes de `scan`, ou à défaut des derniers résultats livrés.
+   * Seules les empreintes partageant au moins `minCommonAps` AP (défaut 1) sont évaluées.
+   */
+  matchFingerprints(options?: {
+    k?: number;
+    minCommonAps?: number;
+    scan?: Record<string, number>;
+  }): Promise<FingerprintMatches>;
+  /**
+   * Fabricant de chaque BSSID d'après l'index OUI natif ; les BSSID inconnus ou randomisés
+   * sont absents de `vendors`.
+   */
+  lookupVendors(options: { bssids: string[] }): Promise<{ vendors: Record<string, string> }>;
+  /** Latences par étape du pipeline de scan (percentiles), compteurs et tailles des résultats. */
+  getScanMetrics(): Promise<ScanMetrics>;
+  resetScanMetrics(): Promise<void>;
+  /**
+   * Démarre un scan continu côté natif : les résultats sont poussés via l'événement `scanResults`.
+   * L'intervalle effectif (borné par l'anti-rafale natif) est renvoyé.
+   */
+  startContinuousScan(options?: ContinuousScanOptions): Promise<{ intervalMs: number; mode: ContinuousScanMode }>;
+  stopContinuousScan(): Promise<void>;
+  /**
+   * Mode delta uniquement : renvoie l'état de référence complet et sa séquence,
+   * à utiliser quand un trou de séquence est détecté sur `scanDelta`.
+   */
+  resyncScanDelta(): Promise<ScanDeltaSnapshot>;
+  /**
+   * Démarre la collecte en arrière-plan (service de premier plan, notification persistante) :
+   * les scans sont mis en buffer natif, y compris écran éteint. À appeler application au premier plan.
+   * Requiert la localisation (fine ou approximative), même sur Android 13+. Un échec du service
+   * après la résolution est signalé par `backgroundCollectionError`.
+   */
+  startBackgroundCollection(options?: BackgroundCollectionOptions): Promise<void>;
+  stopBackgroundCollection(): Promise<void>;
+  /** Vide au plus `maxBatch` scans du buffer (plus anciens d'abord) ; rappeler tant que `remaining > 0`. */
+  getBufferedScans(options?: { maxBatch?: number }): Promise<BufferedScans>;
+  /** Fenêtre des derniers échantillons RSSI d'un AP et ses estimations lissées. */
+  getSignalHistory(options: { bssid: string }): Promise<SignalHistory>;
+  /** Active l'enregistrement de chaque scan livré dans l'historique natif persistant. */
+  enableHistory(options?: HistoryOptions): Promise<{ sizeBytes: number }>;
+  disableHistory(): Promise<void>;
+  /** Requête paginée sur l'historique ; repasser `cursor` pour obtenir la page suivante. */
+  queryHistory(options?: HistoryQuery): Promise<HistoryPage>;
+  clearHistory(): Promise<void>;
+  addListener(eventName: 'scanResults', listenerFunc: (event: ScanResultsEvent) => void): Promise<PluginListenerHandle>;
+  addListener(eventName: 'scanDelta', listenerFunc: (event: ScanDeltaEvent) => void): Promise<PluginListenerHandle>;
+  /** Émis au resume quand des scans d'arrière-plan attendent dans le buffer. */
+  addListener(eventName: 'bufferedScansAvailable', listenerFunc: (event: { count: number }) => void): Promise<PluginListenerHandle>;
+  /** Résultats frais d'un `scan()` déjà résolu en `partialThenUpdate` (même `scanId`). */
+  addListener(eventName: 'scanUpdate', listenerFunc: (event: ScanUpdateEvent) => void): Promise<PluginListenerHandle>;
+  /** Le service de collecte d'arrière-plan n'a pas pu démarrer (aussi dans `BufferedScans.error`). */
+  addListener(
+    eventName: 'backgroundCollectionError',
+    listenerFunc: (event: { error: string }) => void,
+  ): Promise<PluginListenerHandle>;
+  /** Erreur du scan continu, ou d'un `scan()` en `partialThenUpdate` (avec son `scanId`). */
+  addListener(eventName: 'scanError', listenerFunc: (event: { error: string; scanId?: number }) => void): Promise<PluginListenerHandle>;
+  removeAllListeners(): Promise<void>;
 }
 
 export interface WifiNetwork {
+  /** Les champs peuvent être absents si une projection `fields` est demandée. */
   ssid: string;
   bssid: string;
   signalStrength: number;
+  frequency?: number;
+  channel?: number;
+  /** Epoch ms de la dernière observation de l'AP (dérivé de `ScanResult.timestamp`). */
+  timestamp?: number;
+  /** Ancienneté de l'observation (ms). */
+  ageMs?: number;
+  /** Moyenne exponentielle du RSSI sur les observations successives (dBm). */
+  smoothedRssi?: number;
+  rssiVariance?: number;
+  /** Tendance lissée du RSSI (dBm/s). */
+  rssiTrend?: number;
+  centerFreq0?: number;
+  centerFreq1?: number;
+  channelWidth?: number;
+  /** Fabricant d'après l'OUI du BSSID ; absent si inconnu ou adresse randomisée. */
+  vendor?: string;
+  /*
+   * Champs issus des éléments 802.11 (Android 11+, `capabilities` en repli pour `security`) :
+   * jamais renvoyés par défaut, uniquement via `fields`, et absents du format binaire.
+   */
+  security?: WifiSecurity;
+  /** Norme annoncée (HT / VHT / HE / EHT). */
+  wifiStandard?: 'legacy' | '11n' | '11ac' | '11ax' | '11ad' | '11be';
+  /** Génération Wi-Fi (4 à 7) ; demandée avec `wifiStandard`. */
+  wifiGeneration?: number;
+  /** Élément BSS Load, si l'AP le diffuse. */
+  bssLoad?: BssLoad;
+  /** Code pays ISO de l'élément Country. */
+  countryCode?: string;
+  vendorElements?: VendorElement[];
+}
+
+export interface WifiSecurity {
+  protocol: 'open' | 'wep' | 'wpa' | 'wpa2' | 'wpa3' | 'owe';
+  /** Suites d'authentification (`psk`, `sae`, `eap`…). */
+  akms: string[];
+  /** Chiffrements par paire (`ccmp`, `gcmp-256`, `tkip`…). */
+  pairwiseCiphers: string[];
+  groupCipher?: string;
+  /** Protected Management Frames (RSN capabilities). */
+  pmf: 'disabled' | 'capable' | 'required';
+  /** Authentification 802.1X. */
+  enterprise: boolean;
+}
+
+export interface BssLoad {
+  stationCount: number;
+  /** Occupation du canal mesurée par l'AP (0 à 1). */
+  channelUtilization: number;
+}
+
+export interface VendorElement {
+  /** OUI de l'élément (`00:50:f2`). */
+  oui: string;
+  /** Type d'élément propre au fabricant. */
+  type: number;
+  /** Fabricant de l'OUI, si connu. */
+  vendor?: string;
+}
+
+export interface ScanResponse {
+  /** Vide avec `format: "binary"` : décoder `data` via `decodeScanBinary()` / `scanNetworks()`. */
+  networks: WifiNetwork[];
+  format?: 'json' | 'binary';
+  /** Buffer colonnaire en base64 (`format: "binary"`). */
+  data?: string;
+  count: number;
+  /** Nombre d'AP avant filtrage, présent si un filtre ou `limit` est appliqué. */
+  total?: number;
+  /** Epoch ms de l'observation la plus récente du snapshot. */
+  timestamp: number;
+  /** Ancienneté du snapshot (ms). */
+  ageMs: number;
+  /** true si la réponse vient du cache (`maxAgeMs`, ou repli `fallback`). */
+  cached: boolean;
+  /**
+   * Présent sur un repli `fallback` : résultats du cache OS, pas d'un scan frais ;
+   * `ageMs` est alors renseigné pour chaque AP.
+   */
+  stale?: boolean;
+  /** Erreur du scan à l'origine du repli (démarrage refusé, scan échoué). */
+  error?: string;
+  /** `partialThenUpdate` : identifiant repris par l'événement `scanUpdate`. */
+  scanId?: number;
+  /** `partialThenUpdate` : des résultats frais suivront via `scanUpdate` (ou `scanError`). */
+  updatePending?: boolean;
+  /** Présent si `channelAnalysis: true` ; calculé sur tous les AP, avant filtrage. */
+  channelAnalysis?: ChannelOccupancy[];
+  /** Présent si `fingerprintMatches` est demandé ; calculé sur tous les AP, avant filtrage. */
+  fingerprintMatches?: FingerprintMatch[];
+}
+
+export interface ChannelOccupancy {
+  /** Canal de 20 MHz. */
+  channel: number;
+  band: '2.4' | '5' | '6';
+  /** Fréquence centrale (MHz). */
+  frequency: number;
+  /** AP dont c'est le canal primaire. */
+  apCount: number;
+  /** AP dont le bloc (largeur agrégée comprise) recouvre ce canal. */
+  overlapCount: number;
+  /**
+   * Somme des recouvrements pondérés par le RSSI (-95 dBm → 0, -30 dBm → 1) :
+   * nombre équivalent d'AP forts sur le canal.
+   */
+  score: number;
+  /** Puissance cumulée reçue sur le canal (dBm). */
+  interferenceDbm: number;
+}
+
+export interface ChannelAnalysis {
+  /** Seuls les canaux recouverts par au moins un AP ; les autres ont un score nul. */
+  channels: ChannelOccupancy[];
+  /** Nombre d'AP analysés. */
+  count: number;
+  timestamp: number;
+  ageMs: number;
+}
+
+export interface Fingerprint {
+  /** Identifiant libre (point de relevé, pièce…), renvoyé tel quel dans les correspondances. */
+  id: string;
+  /** RSSI de référence (dBm) par BSSID. */
+  rssi: Record<string, number>;
+}
+
+export interface FingerprintMatch {
+  id: string;
+  /** Distance euclidienne (dB) sur l'union des AP, un AP absent valant -100 dBm. */
+  distance: number;
+  /** AP communs au scan et à l'empreinte. */
+  commonAps: number;
+}
+
+export interface FingerprintMatches {
+  /** Du plus proche au plus éloigné. */
+  matches: FingerprintMatch[];
+  /** Empreintes partageant au moins un AP avec le scan. */
+  candidates: number;
+}
+
+export type ScanResultsEvent = ScanResponse;
+
+export interface ScanUpdateEvent extends ScanResponse {
+  scanId: number;
+}
+
+/**
+ * Filtre, projection et top-K évalués côté natif avant sérialisation :
+ * seuls les AP et champs demandés traversent le bridge.
+ */
+export interface ScanQueryOptions {
+  minRssi?: number;
+  bands?: ('2.4' | '5' | '6')[];
+  ssidPrefix?: string;
+  ssidRegex?: string;
+  bssids?: string[];
+  /**
+   * Champs à renvoyer. `smoothedRssi` inclut `rssiVariance`/`rssiTrend`,
+   * `channelWidth` inclut `centerFreq0`/`centerFreq1`. `security`, `wifiStandard`, `bssLoad`,
+   * `countryCode` et `vendorElements` ne sont décodés que s'ils sont listés ici.
+   */
+  fields?: (keyof WifiNetwork)[];
+  /** Ne garde que les `limit` AP les plus forts, du plus fort au plus faible. */
+  limit?: number;
+  /** Ajoute `channelAnalysis` à la réponse. */
+  channelAnalysis?: boolean;
+  /**
+   * `binary` : AP packés en colonnes dans `data` (base64), sans un objet JSON par AP.
+   * SSID, BSSID, RSSI, fréquence et canal sont toujours présents ; les autres champs suivent `fields`.
+   * Au plus 65535 SSID et fabricants distincts par réponse.
+   */
+  format?: 'json' | 'binary';
+  /** Ajoute les k plus proches empreintes chargées (`loadFingerprints`) à la réponse (max 100). */
+  fingerprintMatches?: number;
+}
+
+/**
+ * Comportement d'un `scan()` à son échéance ou si le scan ne peut pas démarrer / échoue :
+ * - `reject` : l'appel est rejeté (défaut) ;
+ * - `cached` : résolu avec le cache OS (`stale: true`), rejeté seulement s'il est vide ;
+ * - `partialThenUpdate` : comme `cached`, puis les résultats frais sont émis via `scanUpdate`
+ *   (ou `scanError`) une fois le scan terminé.
+ */
+export type ScanFallback = 'reject' | 'cached' | 'partialThenUpdate';
+
+export interface ScanOptions extends ScanQueryOptions {
+  /**
+   * Échéance de cet appelant (ms). Défaut : 7000, compté à partir du départ effectif du scan
+   * quand celui-ci est mis en file faute de budget. Explicite, elle part de l'appel ; avec un
+   * `fallback` autre que `reject`, le repli est immédiat si le scan ne peut partir avant.
+   */
+  deadlineMs?: number;
+  fallback?: ScanFallback;
+  /**
+   * Âge max accepté (ms) : si les derniers résultats livrés sont plus récents,
+   * la réponse vient du cache natif sans lancer de scan.
+   */
+  maxAgeMs?: number;
+}
+
+export interface ScanBudget {
+  foreground: boolean;
+  /** false si le throttling est désactivé dans les options développeur. */
+  throttleEnabled: boolean;
+  capacity?: number;
+  windowMs?: number;
+  remaining?: number;
+  nextAllowedInMs: number;
+  /** Epoch ms. */
+  nextAllowedAt: number;
+}
+
+export interface StageMetrics {
+  count: number;
+  meanMs: number;
+  p50Ms: number;
+  p90Ms: number;
+  p99Ms: number;
+  maxMs: number;
+}
+
+export interface ScanMetrics {
+  /** Epoch ms du début de la mesure (chargement du plugin ou dernier reset). */
+  since: number;
+  stages: {
+    /** Gardes permissions / Wi-Fi / localisation. */
+    guards: StageMetrics;
+    /** startScan() accepté → broadcast des résultats. */
+    broadcast: StageMetrics;
+    /** getScanResults(). */
+    fetch: StageMetrics;
+    /** Dédup, traitements natifs et sérialisation. */
+    process: StageMetrics;
+    /** Passage du résultat au bridge. */
+    resolve: StageMetrics;
+    /** Appel scan() → résolution. */
+    total: StageMetrics;
+  };
+  counters: {
+    scans: number;
+    throttled: number;
+    rejected: number;
+    failed: number;
+    timedOut: number;
+    coalesced: number;
+    cacheHits: number;
+    /** Résultats frais issus de scans du système ou d'autres apps. */
+    passiveUpdates: number;
+    /** Appels servis par le cache OS (`fallback`) à l'échéance ou sur erreur de scan. */
+    staleFallbacks: number;
+  };
+  /** Nombre d'AP par scan livré. */
+  resultSize: { count: number; mean: number; p50: number; p90: number; max: number };
+}
+
+/**
+ * - `active` : un scan radio à chaque intervalle.
+ * - `passive` : aucun scan, seuls les résultats des scans du système ou d'autres apps sont relayés (coût radio nul).
+ * - `hybrid` : passif, plus un scan si aucun résultat frais n'est arrivé dans `stalenessMs`.
+ */
+export type ContinuousScanMode = 'active' | 'passive' | 'hybrid';
+
+export interface ContinuousScanOptions extends ScanQueryOptions {
+  intervalMs?: number;
+  /** Défaut : `active`. */
+  mode?: ContinuousScanMode;
+  /** Mode `hybrid` : fenêtre de fraîcheur (ms). Défaut : `intervalMs`. */
+  stalenessMs?: number;
+  /** Émet `scanDelta` (added/changed/removed par BSSID) au lieu de `scanResults` ; JSON uniquement (`format: "binary"` rejeté). */
+  delta?: boolean;
+  /** Variation RSSI minimale (dBm, au moins 1) pour qu'une entrée soit "changed". Défaut : 5. */
+  rssiThreshold?: number;
+}
+
+export interface BackgroundCollectionOptions {
+  /** Intervalle (mode `active`) ou fenêtre de fraîcheur (mode `hybrid`). Défaut : 60000. */
+  intervalMs?: number;
+  /** Défaut : `hybrid`. */
+  mode?: ContinuousScanMode;
+  /**
+   * Capacité du buffer ; les scans les plus anciens sont évincés au-delà. Défaut : 1000.
+   * La changer en cours de collecte garde les scans non vidés les plus récents.
+   */
+  maxBufferedScans?: number;
+  notificationTitle?: string;
+  notificationText?: string;
+}
+
+export interface BufferedScan {
+  /** Epoch ms de la livraison du scan. */
+  timestamp: number;
+  count: number;
+  networks: Required<Pick<WifiNetwork, 'ssid' | 'bssid' | 'signalStrength' | 'frequency' | 'channel'>>[];
+}
+
+export interface BufferedScans {
+  scans: BufferedScan[];
+  count: number;
+  /** Scans restant dans le buffer après ce lot. */
+  remaining: number;
+  /** Scans évincés faute de place. */
+  dropped: number;
+  /** true si la collecte est toujours active. */
+  collecting: boolean;
+  /** Échec du dernier démarrage du service de collecte, le cas échéant. */
+  error?: string;
+}
+
+export interface ScanDeltaEvent {
+  /** Incrémenté de 1 à chaque événement émis ; un trou impose un `resyncScanDelta()`. */
+  sequence: number;
+  /** true pour le premier delta d'une session : `added` contient tout l'état. */
+  full: boolean;
+  added: WifiNetwork[];
+  changed: WifiNetwork[];
+  removed: string[];
+  count: number;
+  timestamp: number;
+  ageMs: number;
+}
+
+export interface ScanDeltaSnapshot {
+  sequence: number;
+  networks: WifiNetwork[];
+  count: number;
+  timestamp: number;
+  ageMs: number;
+}
+
+export interface SignalHistory {
+  bssid: string;
+  /** Du plus ancien au plus récent (32 max). `timestamp` en epoch ms. */
+  samples: { timestamp: number; rssi: number }[];
+  smoothedRssi: number;
+  rssiVariance: number;
+  rssiTrend: number;
+}
+
+export interface HistoryOptions {
+  /**
+   * Taille max sur disque, les segments les plus anciens sont supprimés au-delà. Défaut : 64 Mo,
+   * de `segmentBytes` à 4 Gio. Une config différente de celle en cours rouvre l'historique
+   * (données conservées).
+   */
+  maxBytes?: number;
+  /** Taille d'un segment. Défaut : 4 Mo, de 64 Kio à 256 Mio. */
+  segmentBytes?: number;
+}
+
+export interface HistoryQuery {
+  /** Epoch ms, inclus. */
+  from?: number;
+  /** Epoch ms, inclus. */
+  to?: number;
+  bssids?: string[];
+  /** Taille de page. Défaut : 500, max : 5000. */
+  limit?: number;
+  cursor?: string;
+}
+
+export interface HistoryRecord {
+  /** Epoch ms du scan. */
+  timestamp: number;
+  bssid: string;
+  ssid: string;
+  signalStrength: number;
+  frequency: number;
+  channel: number;
+  /** Ancienneté de l'observation au moment du scan (ms). */
+  ageMs: number;
+  centerFreq0: number;
+  centerFreq1: number;
+  channelWidth: number;
+}
+
+export interface HistoryPage {
+  /** Dans l'ordre d'enregistrement (croissant sauf si l'horloge de l'appareil a reculé). */
+  records: HistoryRecord[];
+  count: number;
+  /** Absent quand la requête est épuisée. */
+  cursor?: string;
 }
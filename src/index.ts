@@ -7,4 +7,5 @@ const WifiScanner = registerPlugin<WifiScannerPlugin>('WifiScanner', {
 });
 
 export * from './definitions';
+export * from './binary';
 export { WifiScanner };
@@ -1,6 +1,25 @@
 import { WebPlugin } from '@capacitor/core';
 
-import type { WifiScannerPlugin, WifiNetwork } from './definitions';
+import type {
+  BackgroundCollectionOptions,
+  BufferedScans,
+  ChannelAnalysis,
+  ContinuousScanMode,
+  ContinuousScanOptions,
+  Fingerprint,
+  FingerprintMatches,
+  HistoryOptions,
+  HistoryPage,
+  HistoryQuery,
+  ScanBudget,
+  ScanDeltaSnapshot,
+  ScanMetrics,
+  ScanOptions,
+  ScanQueryOptions,
+  ScanResponse,
+  SignalHistory,
+  WifiScannerPlugin,
+} from './definitions';
 
 export class WifiScannerWeb extends WebPlugin implements WifiScannerPlugin {
   async echo(options: { value: string }): Promise<{ value: string }> {
@@ -23,9 +42,96 @@ export class WifiScannerWeb extends WebPlugin implements WifiScannerPlugin {
     return { enabled: true };
   }
 
-  async scan(): Promise<{ networks: WifiNetwork[] }> {
+  async scan(_options?: ScanOptions): Promise<ScanResponse> {
     // Sur le web, retournez des données simulées ou un tableau vide
     console.warn('WiFi scanning is not available in web environment');
-    return { networks: [] };
+    return { networks: [], count: 0, timestamp: Date.now(), ageMs: 0, cached: false };
+  }
+
+  async getScanBudget(): Promise<ScanBudget> {
+    throw this.unavailable('WiFi scanning is not available in web environment');
+  }
+
+  async getScanMetrics(): Promise<ScanMetrics> {
+    throw this.unavailable('WiFi scanning is not available in web environment');
+  }
+
+  async resetScanMetrics(): Promise<void> {
+    return;
+  }
+
+  async getChannelAnalysis(): Promise<ChannelAnalysis> {
+    throw this.unavailable('WiFi scanning is not available in web environment');
+  }
+
+  async loadFingerprints(_options: {
+    fingerprints: Fingerprint[];
+    replace?: boolean;
+  }): Promise<{ loaded: number; count: number; accessPoints: number }> {
+    throw this.unavailable('WiFi scanning is not available in web environment');
+  }
+
+  async clearFingerprints(): Promise<void> {
+    throw this.unavailable('WiFi scanning is not available in web environment');
+  }
+
+  async matchFingerprints(_options?: {
+    k?: number;
+    minCommonAps?: number;
+    scan?: Record<string, number>;
+  }): Promise<FingerprintMatches> {
+    throw this.unavailable('WiFi scanning is not available in web environment');
+  }
+
+  async lookupVendors(_options: { bssids: string[] }): Promise<{ vendors: Record<string, string> }> {
+    throw this.unavailable('Vendor lookup is not available in web environment');
+  }
+
+  async getLastScanResults(_options?: ScanQueryOptions): Promise<ScanResponse> {
+    return { networks: [], count: 0, timestamp: Date.now(), ageMs: 0, cached: false };
+  }
+
+  async startContinuousScan(_options?: ContinuousScanOptions): Promise<{ intervalMs: number; mode: ContinuousScanMode }> {
+    throw this.unavailable('Continuous WiFi scanning is not available in web environment');
+  }
+
+  async stopContinuousScan(): Promise<void> {
+    return;
+  }
+
+  async resyncScanDelta(): Promise<ScanDeltaSnapshot> {
+    throw this.unavailable('Continuous WiFi scanning is not available in web environment');
+  }
+
+  async startBackgroundCollection(_options?: BackgroundCollectionOptions): Promise<void> {
+    throw this.unavailable('Background WiFi scanning is not available in web environment');
+  }
+
+  async stopBackgroundCollection(): Promise<void> {
+    return;
+  }
+
+  async getBufferedScans(_options?: { maxBatch?: number }): Promise<BufferedScans> {
+    return { scans: [], count: 0, remaining: 0, dropped: 0, collecting: false };
+  }
+
+  async getSignalHistory(_options: { bssid: string }): Promise<SignalHistory> {
+    throw this.unavailable('WiFi scanning is not available in web environment');
+  }
+
+  async enableHistory(_options?: HistoryOptions): Promise<{ sizeBytes: number }> {
+    throw this.unavailable('Scan history is not available in web environment');
+  }
+
+  async disableHistory(): Promise<void> {
+    return;
+  }
+
+  async queryHistory(_options?: HistoryQuery): Promise<HistoryPage> {
+    return { records: [], count: 0 };
+  }
+
+  async clearHistory(): Promise<void> {
+    return;
   }
 }